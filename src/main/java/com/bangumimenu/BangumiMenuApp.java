@@ -1,14 +1,26 @@
 package com.bangumimenu;
 
 import com.bangumimenu.gui.MainWindow;
+import com.bangumimenu.utils.CatalogExport;
+import com.bangumimenu.utils.Catalogs;
 
 import javax.swing.*;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 /**
  * Bangumi Menu 主应用程序类
  */
 public class BangumiMenuApp {
     public static void main(String[] args) {
+        // 命令行导出：export <csv|md|jsonl|report> <输出文件> [目录名]
+        if (args.length > 0 && "export".equals(args[0])) {
+            System.exit(export(args));
+        }
+
         // 设置系统外观
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -19,4 +31,30 @@ public class BangumiMenuApp {
         // 在事件调度线程中启动GUI
         SwingUtilities.invokeLater(() -> new MainWindow().setVisible(true));
     }
-}
\ No newline at end of file
+
+    /**
+     * 不启动界面，直接把目录导出到文件
+     * @return 进程退出码
+     */
+    private static int export(String[] args) {
+        CatalogExport.Format format = args.length >= 3 ? CatalogExport.Format.parse(args[1]) : null;
+        if (format == null) {
+            System.err.println("用法: export <csv|md|jsonl|report> <输出文件> [目录名]");
+            return 2;
+        }
+        Catalogs.Catalog catalog = args.length >= 4 ? Catalogs.find(args[3]) : Catalogs.active();
+        if (catalog == null) {
+            System.err.println("目录不存在: " + args[3]);
+            return 2;
+        }
+        return Catalogs.callIn(catalog, () -> {
+            try (Writer out = Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8)) {
+                CatalogExport.export(format, out);
+                return 0;
+            } catch (IOException e) {
+                System.err.println("导出失败: " + e.getMessage());
+                return 1;
+            }
+        });
+    }
+}
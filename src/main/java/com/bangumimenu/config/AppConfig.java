@@ -1,25 +1,87 @@
 package com.bangumimenu.config;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * 应用程序配置类
  * 用于加载和访问 application.properties 文件中的配置
+ * 配置按优先级从低到高分三层：类路径中的 application.properties、用户配置目录
+ * （$XDG_CONFIG_HOME/bangumi-menu，默认 ~/.config/bangumi-menu）中的 application.properties（覆盖文件）、
+ * 同名的系统属性。覆盖文件可能包含认证信息，放在Git数据目录之外，只有当前用户可读写。解析后的值会被缓存，
+ * 调用 {@link #reload()} 重新加载后缓存失效并通知监听器，无需重启即可生效
  */
 public class AppConfig {
     private static final String CONFIG_FILE = "/application.properties";
-    private static Properties properties = new Properties();
+    private static final File USER_CONFIG_FILE = new File(userConfigDir(), "application.properties");
+    // 早期版本放在默认数据目录（Git仓库）中的覆盖文件，启动时迁移到用户配置目录
+    private static final File LEGACY_USER_CONFIG_FILE =
+            new File(System.getProperty("user.home") + "/.bangumi-menu/application.properties");
+    // 可以由系统属性覆盖的配置前缀（类路径和覆盖文件中未出现的键）
+    private static final String[] SYSTEM_PROPERTY_PREFIXES = {"app.", "git.", "data.", "instance.", "catalog."};
+
+    private static volatile Properties properties = new Properties();
+    // 解析后的配置值缓存（整数、布尔、列表、Git配置），重新加载时清空
+    private static volatile Map<String, Object> parsedCache = new ConcurrentHashMap<>();
+    private static final List<Consumer<Set<String>>> listeners = new CopyOnWriteArrayList<>();
 
     static {
-        loadConfig();
+        migrateLegacyUserConfig();
+        properties = loadConfig();
+    }
+
+    private static File userConfigDir() {
+        String configHome = System.getenv("XDG_CONFIG_HOME");
+        if (configHome == null || configHome.isEmpty()) {
+            configHome = System.getProperty("user.home") + "/.config";
+        }
+        return new File(configHome, "bangumi-menu");
+    }
+
+    private static void migrateLegacyUserConfig() {
+        if (USER_CONFIG_FILE.exists() || !LEGACY_USER_CONFIG_FILE.exists()) {
+            return;
+        }
+        try {
+            Files.createDirectories(USER_CONFIG_FILE.getParentFile().toPath());
+            Files.move(LEGACY_USER_CONFIG_FILE.toPath(), USER_CONFIG_FILE.toPath());
+            restrictToOwner(USER_CONFIG_FILE);
+            System.out.println("用户配置文件已从数据目录迁移到: " + USER_CONFIG_FILE);
+        } catch (IOException e) {
+            System.err.println("迁移用户配置文件失败: " + e.getMessage());
+        }
     }
 
-    private static void loadConfig() {
+    // 支持POSIX权限时只允许所有者读写
+    private static void restrictToOwner(File file) {
+        try {
+            Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException | IOException e) {
+            file.setReadable(false, false);
+            file.setReadable(true, true);
+        }
+    }
+
+    private static Properties loadConfig() {
+        Properties merged = new Properties();
         try (InputStream inputStream = AppConfig.class.getResourceAsStream(CONFIG_FILE)) {
             if (inputStream != null) {
-                properties.load(inputStream);
+                merged.load(inputStream);
             } else {
                 throw new RuntimeException("无法找到配置文件: " + CONFIG_FILE);
             }
@@ -27,6 +89,158 @@ public class AppConfig {
             e.printStackTrace();
             throw new RuntimeException("加载配置文件失败", e);
         }
+
+        // 用户覆盖文件
+        File userConfig = USER_CONFIG_FILE;
+        if (userConfig.exists()) {
+            try (InputStream inputStream = Files.newInputStream(userConfig.toPath())) {
+                merged.load(inputStream);
+            } catch (IOException e) {
+                System.err.println("加载用户配置文件失败: " + e.getMessage());
+            }
+        }
+
+        // 系统属性
+        Properties system = System.getProperties();
+        for (String key : system.stringPropertyNames()) {
+            if (merged.containsKey(key) || hasAppPrefix(key)) {
+                merged.setProperty(key, system.getProperty(key));
+            }
+        }
+        return merged;
+    }
+
+    private static boolean hasAppPrefix(String key) {
+        for (String prefix : SYSTEM_PROPERTY_PREFIXES) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 重新加载全部配置层，有配置发生变化时清空解析缓存并通知监听器
+     *
+     * @return 发生变化的配置键
+     */
+    public static synchronized Set<String> reload() {
+        Properties previous = properties;
+        Properties current = loadConfig();
+        Set<String> changed = new HashSet<>();
+        for (String key : current.stringPropertyNames()) {
+            if (!Objects.equals(current.getProperty(key), previous.getProperty(key))) {
+                changed.add(key);
+            }
+        }
+        for (String key : previous.stringPropertyNames()) {
+            if (!current.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+        if (changed.isEmpty()) {
+            return changed;
+        }
+        properties = current;
+        parsedCache = new ConcurrentHashMap<>();
+        System.out.println("配置已重新加载，变化的配置项: " + changed);
+        Set<String> unmodifiable = Collections.unmodifiableSet(changed);
+        for (Consumer<Set<String>> listener : listeners) {
+            try {
+                listener.accept(unmodifiable);
+            } catch (Exception e) {
+                System.err.println("配置监听器执行失败: " + e.getMessage());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 将配置写入用户覆盖文件并立即重新加载
+     *
+     * @param overrides 需要覆盖的配置
+     */
+    public static synchronized void saveUserOverrides(Map<String, String> overrides) throws IOException {
+        File userConfig = USER_CONFIG_FILE;
+        Properties saved = new Properties();
+        if (userConfig.exists()) {
+            try (InputStream inputStream = Files.newInputStream(userConfig.toPath())) {
+                saved.load(inputStream);
+            }
+        }
+        saved.putAll(overrides);
+        if (!userConfig.getParentFile().exists()) {
+            userConfig.getParentFile().mkdirs();
+        }
+        try (OutputStream outputStream = Files.newOutputStream(userConfig.toPath())) {
+            saved.store(outputStream, "Bangumi Menu user configuration");
+        }
+        restrictToOwner(userConfig);
+        reload();
+    }
+
+    /**
+     * 用户覆盖文件（位于用户配置目录中，不在任何数据目录内）
+     */
+    public static File getUserConfigFile() {
+        return USER_CONFIG_FILE;
+    }
+
+    /**
+     * 订阅配置变化，参数为发生变化的配置键
+     */
+    public static void addChangeListener(Consumer<Set<String>> listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeChangeListener(Consumer<Set<String>> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 获取已解析并缓存的Git同步配置
+     */
+    public static GitSettings getGitSettings() {
+        return getGitSettings(null);
+    }
+
+    /**
+     * 获取指定前缀下已解析并缓存的Git同步配置（用于多目录，如 catalog.club-a.git.remote.url），
+     * 前缀下未配置的项沿用全局配置
+     *
+     * @param prefix 配置键前缀，为null时使用全局配置
+     */
+    public static GitSettings getGitSettings(String prefix) {
+        Map<String, Object> cache = parsedCache;
+        String cacheKey = "git-settings:" + (prefix != null ? prefix : "");
+        GitSettings settings = (GitSettings) cache.get(cacheKey);
+        if (settings == null) {
+            // 构造时会读取其他缓存项，不能放在computeIfAbsent中执行
+            settings = new GitSettings(prefix != null ? prefix : "");
+            cache.putIfAbsent(cacheKey, settings);
+        }
+        return settings;
+    }
+
+    /**
+     * 获取逗号分隔的列表配置（去除空白和空项），结果被缓存
+     *
+     * @param key          配置键
+     * @param defaultValue 默认值（逗号分隔）
+     * @return 不可修改的列表
+     */
+    @SuppressWarnings("unchecked")
+    public static List<String> getListProperty(String key, String defaultValue) {
+        return (List<String>) parsedCache.computeIfAbsent("list:" + key + "=" + defaultValue, cacheKey -> {
+            List<String> values = new ArrayList<>();
+            for (String value : getProperty(key, defaultValue).split(",")) {
+                value = value.trim();
+                if (!value.isEmpty()) {
+                    values.add(value);
+                }
+            }
+            return Collections.unmodifiableList(values);
+        });
     }
 
     /**
@@ -57,12 +271,7 @@ public class AppConfig {
      * @return 配置值，如果不存在或解析失败则返回 -1
      */
     public static int getIntProperty(String key) {
-        try {
-            String value = properties.getProperty(key);
-            return value != null ? Integer.parseInt(value) : -1;
-        } catch (NumberFormatException e) {
-            return -1;
-        }
+        return getIntProperty(key, -1);
     }
 
     /**
@@ -73,12 +282,14 @@ public class AppConfig {
      * @return 配置值，如果不存在或解析失败则返回默认值
      */
     public static int getIntProperty(String key, int defaultValue) {
-        try {
-            String value = properties.getProperty(key);
-            return value != null ? Integer.parseInt(value) : defaultValue;
-        } catch (NumberFormatException e) {
-            return defaultValue;
-        }
+        return (Integer) parsedCache.computeIfAbsent("int:" + key + "=" + defaultValue, cacheKey -> {
+            try {
+                String value = properties.getProperty(key);
+                return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        });
     }
 
     /**
@@ -88,8 +299,7 @@ public class AppConfig {
      * @return 配置值，如果不存在则返回 false
      */
     public static boolean getBooleanProperty(String key) {
-        String value = properties.getProperty(key);
-        return value != null && Boolean.parseBoolean(value);
+        return getBooleanProperty(key, false);
     }
 
     /**
@@ -100,7 +310,9 @@ public class AppConfig {
      * @return 配置值，如果不存在则返回默认值
      */
     public static boolean getBooleanProperty(String key, boolean defaultValue) {
-        String value = properties.getProperty(key);
-        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+        return (Boolean) parsedCache.computeIfAbsent("boolean:" + key + "=" + defaultValue, cacheKey -> {
+            String value = properties.getProperty(key);
+            return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+        });
     }
 }
\ No newline at end of file
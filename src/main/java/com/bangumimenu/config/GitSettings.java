@@ -0,0 +1,88 @@
+package com.bangumimenu.config;
+
+import java.util.List;
+
+/**
+ * Git同步配置
+ * 由 {@link AppConfig} 在首次使用时解析并缓存，配置重新加载后重新生成，调用方每次操作时获取即可拿到最新值
+ */
+public final class GitSettings {
+    private final boolean enabled;
+    private final String remoteUrl;
+    private final String username;
+    private final String password;
+    private final List<String> dataFiles;
+    private final int timeoutSeconds;
+    private final int httpTimeoutSeconds;
+    private final int postBufferBytes;
+
+    GitSettings(String prefix) {
+        this.enabled = AppConfig.getBooleanProperty(prefix + "git.enabled", AppConfig.getBooleanProperty("git.enabled", true));
+        this.remoteUrl = property(prefix, "git.remote.url", "").trim();
+        this.username = property(prefix, "git.username", "");
+        this.password = property(prefix, "git.password", "");
+        this.dataFiles = AppConfig.getListProperty(prefix + "git.data.files",
+                AppConfig.getProperty("git.data.files", "bangumi.json,current_bangumi.json"));
+        this.timeoutSeconds = AppConfig.getIntProperty(prefix + "git.timeout.seconds", AppConfig.getIntProperty("git.timeout.seconds", 120));
+        this.httpTimeoutSeconds = AppConfig.getIntProperty(prefix + "git.http.timeout.seconds",
+                AppConfig.getIntProperty("git.http.timeout.seconds", 60));
+        this.postBufferBytes = AppConfig.getIntProperty(prefix + "git.http.post.buffer",
+                AppConfig.getIntProperty("git.http.post.buffer", 524288000));
+    }
+
+    // 前缀下的配置优先，未配置时使用全局配置
+    private static String property(String prefix, String key, String defaultValue) {
+        return AppConfig.getProperty(prefix + key, AppConfig.getProperty(key, defaultValue));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getRemoteUrl() {
+        return remoteUrl;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * 是否已配置认证信息
+     */
+    public boolean hasCredentials() {
+        return !username.isEmpty() && !password.isEmpty();
+    }
+
+    /**
+     * git.data.files中配置的条目（文件名、目录或通配符）
+     */
+    public List<String> getDataFiles() {
+        return dataFiles;
+    }
+
+    /**
+     * fetch、pull、push操作的超时时间（秒）
+     */
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    /**
+     * HTTP连接超时时间（秒）
+     */
+    public int getHttpTimeoutSeconds() {
+        return httpTimeoutSeconds;
+    }
+
+    /**
+     * HTTP POST缓冲区大小（字节）
+     */
+    public int getPostBufferBytes() {
+        return postBufferBytes;
+    }
+}
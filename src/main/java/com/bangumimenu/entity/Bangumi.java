@@ -1,6 +1,11 @@
 package com.bangumimenu.entity;
 
+import com.bangumimenu.utils.UserDictionary;
+
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Supplier;
 
 /**
  * 番剧实体类
@@ -8,6 +13,8 @@ import java.time.LocalDateTime;
 public class Bangumi {
     private String title;
     private String description;
+    // 延迟加载模式下简介保存在磁盘上，需要时通过该加载器读取
+    private transient Supplier<String> descriptionLoader;
     private String writer;
     private String original;
     private String director;
@@ -15,7 +22,15 @@ public class Bangumi {
     private boolean watched;
     private int votes;
     private LocalDateTime watchTime;
-    private String watcher;
+    private String watcher; // JSON中以逗号分隔的用户名保存，保持向后兼容
+    private LocalDateTime proposeTime; // 提议（加入目录）的时间，早期数据中没有
+    // 想要观看人的ID（按加入顺序）和成员位图，首次访问时用当前目录的用户字典由watcher解析；
+    // 这些字段与watcher一起由条目自身的锁保护，界面线程之外的复制和序列化也能看到一致的状态
+    private transient UserDictionary dictionary;
+    private transient int[] watcherIds;
+    private transient int watcherCount;
+    private transient BitSet watcherSet;
+    private transient boolean watcherDirty;
 
     // 构造函数
     public Bangumi() {}
@@ -48,6 +63,14 @@ public class Bangumi {
         this.watcher = watcher;
     }
 
+    // 复制构造函数
+    public Bangumi(Bangumi other) {
+        this(other.title, other.description, other.writer, other.original, other.director,
+                other.proposer, other.watched, other.votes, other.watchTime, other.getWatcher());
+        this.proposeTime = other.proposeTime;
+        this.descriptionLoader = other.descriptionLoader;
+    }
+
     // Getter 和 Setter 方法
     public String getTitle() {
         return title;
@@ -58,11 +81,27 @@ public class Bangumi {
     }
 
     public String getDescription() {
+        if (description == null && descriptionLoader != null) {
+            return descriptionLoader.get();
+        }
         return description;
     }
 
     public void setDescription(String description) {
         this.description = description;
+        this.descriptionLoader = null;
+    }
+
+    public Supplier<String> getDescriptionLoader() {
+        return description == null ? descriptionLoader : null;
+    }
+
+    /**
+     * 设置简介的延迟加载器，内存中不再保留简介内容
+     */
+    public void setDescriptionLoader(Supplier<String> descriptionLoader) {
+        this.description = null;
+        this.descriptionLoader = descriptionLoader;
     }
 
     public String getWriter() {
@@ -121,11 +160,98 @@ public class Bangumi {
         this.watchTime = watchTime;
     }
 
-    public String getWatcher() {
+    public LocalDateTime getProposeTime() {
+        return proposeTime;
+    }
+
+    public void setProposeTime(LocalDateTime proposeTime) {
+        this.proposeTime = proposeTime;
+    }
+
+    public synchronized String getWatcher() {
+        if (watcherDirty) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < watcherCount; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(dictionary.nameOf(watcherIds[i]));
+            }
+            watcher = sb.toString();
+            watcherDirty = false;
+        }
         return watcher;
     }
 
-    public void setWatcher(String watcher) {
+    public synchronized void setWatcher(String watcher) {
         this.watcher = watcher;
+        this.dictionary = null;
+        this.watcherIds = null;
+        this.watcherSet = null;
+        this.watcherCount = 0;
+        this.watcherDirty = false;
+    }
+
+    /**
+     * 判断用户是否已在想要观看人中（按完整用户名匹配）
+     */
+    public synchronized boolean hasWatcher(String userName) {
+        BitSet set = watcherSet(); // 先解析，确保已有观看人登记到字典中
+        int id = dictionary.lookup(userName);
+        return id != -1 && set.get(id);
+    }
+
+    /**
+     * 添加想要观看人
+     * @return 添加成功返回true，用户已存在返回false
+     */
+    public synchronized boolean addWatcher(String userName) {
+        BitSet set = watcherSet();
+        int id = dictionary.idOf(userName);
+        if (set.get(id)) {
+            return false;
+        }
+        set.set(id);
+        if (watcherCount == watcherIds.length) {
+            watcherIds = Arrays.copyOf(watcherIds, Math.max(4, watcherCount * 2));
+        }
+        watcherIds[watcherCount++] = id;
+        watcherDirty = true;
+        return true;
+    }
+
+    /**
+     * 想要观看人数
+     */
+    public synchronized int getWatcherCount() {
+        watcherSet();
+        return watcherCount;
+    }
+
+    // 调用方持有this的锁
+    private BitSet watcherSet() {
+        if (watcherSet == null) {
+            dictionary = UserDictionary.current();
+            watcherSet = new BitSet();
+            watcherIds = new int[4];
+            watcherCount = 0;
+            if (watcher != null && !watcher.isEmpty()) {
+                for (String name : watcher.split(",")) {
+                    name = name.trim();
+                    if (name.isEmpty()) {
+                        continue;
+                    }
+                    int id = dictionary.idOf(name);
+                    if (!watcherSet.get(id)) {
+                        watcherSet.set(id);
+                        if (watcherCount == watcherIds.length) {
+                            watcherIds = Arrays.copyOf(watcherIds, watcherCount * 2);
+                        }
+                        watcherIds[watcherCount++] = id;
+                    }
+                }
+            }
+        }
+        return watcherSet;
     }
 }
\ No newline at end of file
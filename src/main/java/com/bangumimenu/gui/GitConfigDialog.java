@@ -6,6 +6,9 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Git配置对话框
@@ -94,9 +97,15 @@ public class GitConfigDialog extends JDialog {
     }
     
     private void saveConfig() {
-        // 保存配置到系统属性或配置文件（这里简化处理，实际应用中应保存到配置文件）
-        System.setProperty("git.remote.url", remoteUrlField.getText());
-        System.setProperty("git.auto.sync.on.startup", String.valueOf(autoSyncOnStartupCheckbox.isSelected()));
-        System.setProperty("git.auto.sync.on.exit", String.valueOf(autoSyncOnExitCheckbox.isSelected()));
+        // 保存到用户配置目录中的配置覆盖文件，重新加载后立即生效
+        Map<String, String> overrides = new LinkedHashMap<>();
+        overrides.put("git.remote.url", remoteUrlField.getText().trim());
+        overrides.put("git.auto.sync.on.startup", String.valueOf(autoSyncOnStartupCheckbox.isSelected()));
+        overrides.put("git.auto.sync.on.exit", String.valueOf(autoSyncOnExitCheckbox.isSelected()));
+        try {
+            AppConfig.saveUserOverrides(overrides);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "保存配置失败: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+        }
     }
 }
\ No newline at end of file
@@ -2,14 +2,36 @@ package com.bangumimenu.gui;
 
 import com.bangumimenu.config.AppConfig;
 import com.bangumimenu.entity.Bangumi;
+import com.bangumimenu.service.CatalogAnalytics;
+import com.bangumimenu.service.CatalogDiff;
+import com.bangumimenu.service.CatalogSnapshot;
+import com.bangumimenu.service.CatalogStore;
+import com.bangumimenu.service.ChangeFeed;
+import com.bangumimenu.service.ColumnarCatalog;
+import com.bangumimenu.service.MutationEngine;
+import com.bangumimenu.service.VoteLeaderboard;
+import com.bangumimenu.utils.CatalogExport;
+import com.bangumimenu.utils.CatalogImport;
+import com.bangumimenu.utils.Catalogs;
+import com.bangumimenu.utils.DataFileWatcher;
+import com.bangumimenu.utils.GitOutbox;
+import com.bangumimenu.utils.GitPushLoop;
+import com.bangumimenu.utils.GitRemoteGuard;
 import com.bangumimenu.utils.JsonUtils;
 import com.bangumimenu.utils.GitUtils;
+import com.bangumimenu.utils.InstanceCoordinator;
+import com.bangumimenu.utils.SyncProgress;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.Random;
+import java.util.Set;
 
 import static com.bangumimenu.utils.UserDataSync.USER_NAME;
 
@@ -22,13 +44,19 @@ public class MainWindow extends JFrame {
     private JButton syncDataButton;
     private JButton wantWatchButton;
     private JButton addBangumiButton;
+    private JButton importCatalogButton;
     private JButton changeBangumiButton;
     private JButton deleteBangumiButton;
     private JButton randomSelectButton;
     private JButton selectButton;
     private JButton markAsWatchedButton;
     private JButton markAsNotWatchedButton;
+    private JButton markSelectedWatchedButton;
+    private JButton changeProposerButton;
     private JButton loginButton;
+    private JButton leaderboardButton;
+    private JButton exportButton;
+    private JButton analyticsButton;
     private JList<String> unwatchedList;
     private JList<String> watchedList;
     private JTextArea currentBangumiDisplay;
@@ -37,10 +65,21 @@ public class MainWindow extends JFrame {
     private JSplitPane topBottomSplitPane;
     private List<Bangumi> allBangumis;
     private List<Bangumi> currentBangumiList;
+    private JComboBox<Catalogs.Catalog> catalogSelector;
+    private DataFileWatcher dataFileWatcher;
+    // 切换目录时保留各目录已加载的列表及其快照、排行榜和统计，切回时无需重新读取和重建；后台同步完成后移除对应目录
+    private final Map<String, LoadedCatalog> loadedCatalogs = new ConcurrentHashMap<>();
     private boolean isLoggedIn = false; // 登录状态标志
 
     // 创建等待对话框
     private JDialog progressDialog;
+    private JLabel progressLabel;
+    private JProgressBar progressBar;
+    // 当前正在进行的同步，进度对话框的取消按钮作用于它
+    private volatile SyncProgress activeProgress;
+    private static final String PENDING_WRITE_SUFFIX = " [有未保存的修改]";
+    // 转发失败、等待保存的修改数量（跟随实例）
+    private int pendingWriteCount;
 
 
     public MainWindow() {
@@ -50,21 +89,161 @@ public class MainWindow extends JFrame {
         setupEventHandlers();
         setupWindow();
 
+        // 同一台机器上的多个实例中只有一个负责写入数据目录和Git同步，其余实例转发请求
+        InstanceCoordinator.start(this::reloadExternallyChangedFile);
+        InstanceCoordinator.addPendingWriteListener(count -> SwingUtilities.invokeLater(() -> updatePendingWrites(count)));
+        // 推送前整合了远程提交（变基或按条目合并）后，逐条合并到内存中的列表，避免之后的保存覆盖合并结果
+        GitPushLoop.setIntegrationListener(this::reloadExternallyChangedFile);
+
+        // 后台推送离线时保存在本地的提交，同步按钮显示待推送数量
+        GitOutbox.addListener(count -> SwingUtilities.invokeLater(() -> updatePendingBadge(count)));
+        GitOutbox.refresh();
+        GitOutbox.start();
+
         // 启动时立即初始化用户数据并强制从远程仓库拉取最新内容进行覆盖
         initializeUserDataAndForcePull();
+
+        // 监视数据文件的外部修改（其他进程、手动git pull、另一个应用实例）
+        startDataFileWatcher();
+    }
+
+    private void startDataFileWatcher() {
+        if (dataFileWatcher != null) {
+            dataFileWatcher.stop();
+            dataFileWatcher = null;
+        }
+        if (AppConfig.getBooleanProperty("data.watch.enabled", true)) {
+            dataFileWatcher = DataFileWatcher.start(this::reloadExternallyChangedFile);
+        }
+    }
+
+    /**
+     * 切换出去的目录保留在内存中的状态
+     */
+    private static final class LoadedCatalog {
+        final List<Bangumi> allBangumis;
+        final List<Bangumi> currentBangumiList;
+        final CatalogSnapshot snapshot;
+        final VoteLeaderboard leaderboard;
+        final CatalogAnalytics analytics;
+
+        LoadedCatalog(List<Bangumi> allBangumis, List<Bangumi> currentBangumiList, CatalogSnapshot snapshot,
+                      VoteLeaderboard leaderboard, CatalogAnalytics analytics) {
+            this.allBangumis = allBangumis;
+            this.currentBangumiList = currentBangumiList;
+            this.snapshot = snapshot;
+            this.leaderboard = leaderboard;
+            this.analytics = analytics;
+        }
+    }
+
+    /**
+     * 切换界面显示的目录，其他目录的列表、快照、排行榜和统计保留在内存中，切回时直接换入
+     */
+    private void switchCatalog(Catalogs.Catalog catalog) {
+        if (catalog == null || catalog.getName().equals(Catalogs.active().getName())) {
+            return;
+        }
+        loadedCatalogs.put(Catalogs.active().getName(), new LoadedCatalog(allBangumis, currentBangumiList,
+                CatalogStore.getInstance().snapshot(), VoteLeaderboard.getInstance(), CatalogAnalytics.getInstance()));
+
+        Catalogs.setActive(catalog.getName());
+        LoadedCatalog loaded = loadedCatalogs.remove(catalog.getName());
+        if (loaded != null) {
+            allBangumis = loaded.allBangumis;
+            currentBangumiList = loaded.currentBangumiList;
+            CatalogStore.getInstance().restore(loaded.snapshot);
+            VoteLeaderboard.setInstance(loaded.leaderboard);
+            CatalogAnalytics.setInstance(loaded.analytics);
+        } else {
+            com.bangumimenu.utils.UserDataSync.initializeUserData();
+            allBangumis = JsonUtils.readBangumiList("/bangumi.json");
+            currentBangumiList = JsonUtils.readBangumiList("/current_bangumi.json");
+            VoteLeaderboard.setInstance(new VoteLeaderboard(null));
+            CatalogAnalytics.setInstance(new CatalogAnalytics(null));
+            publishCatalog();
+        }
+        updateBangumiLists();
+        titleLabel.setText(catalog.getDisplayName());
+        updatePendingBadge(GitOutbox.refresh());
+        startDataFileWatcher();
+        System.out.println("已切换到目录: " + catalog.getName());
+    }
+
+    /**
+     * 转发给写入实例失败的修改进入待写入队列时提示一次，全部保存后在标题中清除提示
+     */
+    private void updatePendingWrites(int count) {
+        boolean first = count > 0 && pendingWriteCount == 0;
+        pendingWriteCount = count;
+        String title = getTitle().replace(PENDING_WRITE_SUFFIX, "");
+        setTitle(count > 0 ? title + PENDING_WRITE_SUFFIX : title);
+        if (first) {
+            JOptionPane.showMessageDialog(this, "无法连接负责写入的实例，修改暂未保存到磁盘\n"
+                    + "将在写入实例恢复或本实例接替写入后自动保存，请勿在此之前关闭程序", "警告", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /**
+     * 在同步按钮上显示活动目录的待推送提交数
+     */
+    private void updatePendingBadge(int pendingCount) {
+        syncDataButton.setText(pendingCount > 0 ? "同步数据 (待推送 " + pendingCount + ")" : "同步数据");
+    }
+
+    /**
+     * 在后台并发同步活动目录以外的其他目录
+     */
+    private void syncOtherCatalogs() {
+        List<Catalogs.Catalog> others = new ArrayList<>();
+        for (Catalogs.Catalog catalog : Catalogs.all()) {
+            if (!catalog.getName().equals(Catalogs.active().getName())) {
+                others.add(catalog);
+            }
+        }
+        Catalogs.syncAll(others, (catalog, success) -> {
+            if (success) {
+                // 已保留的列表可能已过期，切换到该目录时重新读取
+                loadedCatalogs.remove(catalog.getName());
+            }
+        });
+    }
+
+    /**
+     * 数据文件被外部修改或整合了远程提交后重新读取该文件，并逐条合并到内存中的列表（在监视、协调或推送线程中调用）
+     */
+    private void reloadExternallyChangedFile(String fileName) {
+        List<Bangumi> fresh = JsonUtils.reloadBangumiList("/" + fileName);
+        if (fresh == null) {
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            if ("bangumi.json".equals(fileName)) {
+                CatalogDiff.Result result = CatalogDiff.apply(allBangumis, fresh, ChangeFeed.getInstance());
+                System.out.println("已重新加载外部修改的目录: " + result);
+                if (!result.isEmpty()) {
+                    updateBangumiLists();
+                }
+            } else if ("current_bangumi.json".equals(fileName)) {
+                currentBangumiList = fresh;
+                updateCurrentBangumiDisplay();
+            }
+        });
     }
 
     private void initializeUserDataAndForcePull() {
         // 首先初始化用户数据
         com.bangumimenu.utils.UserDataSync.initializeUserData();
 
-        if (AppConfig.getBooleanProperty("git.enabled", true)) {
+        // 跟随实例直接读取写入实例已同步的数据，不再各自拉取
+        if (AppConfig.getBooleanProperty("git.enabled", true) && InstanceCoordinator.isWriter()) {
             // 初始化Git仓库
             SwingUtilities.invokeLater(() -> {
                 if (GitUtils.initRepo()) {
                     // 立即强制从远程仓库拉取最新内容进行覆盖，无论是否有更新
                     forcePullFromRemote();
                 }
+                syncOtherCatalogs();
             });
         }
     }
@@ -80,22 +259,28 @@ public class MainWindow extends JFrame {
         // 在后台线程中执行强制拉取
         SwingUtilities.invokeLater(() -> {
 
+            SyncProgress progress = beginProgress("强制拉取", "正在强制从远程仓库拉取最新内容进行覆盖...");
             Thread syncThread = new Thread(() -> {
                 System.out.println("正在强制从远程仓库拉取最新内容进行覆盖...");
-                boolean success = GitUtils.forcePullChanges();
+                boolean success = progress.run(GitUtils::forcePullChanges);
+                // 拉取成功后磁盘上已是远程内容，即使之后点了取消也要应用，否则之后的保存会覆盖拉取结果；
+                // 在同步线程中与拉取前的快照逐条比较，界面线程只应用变化的条目
+                CatalogDiff.ChangeSet changes = success
+                        ? GitUtils.diffPulledCatalog("bangumi.json", CatalogStore.getInstance().snapshot()) : null;
+                List<Bangumi> freshCurrent = success ? JsonUtils.reloadBangumiList("/current_bangumi.json") : null;
 
                 // 同步完成后关闭进度对话框
                 SwingUtilities.invokeLater(() -> {
                     progressDialog.dispose(); // 关闭进度对话框
                     if (success) {
-                        // 重新加载数据
-                        allBangumis = JsonUtils.readBangumiList("/bangumi.json");
-                        currentBangumiList = JsonUtils.readBangumiList("/current_bangumi.json");
-                        updateBangumiLists(); // 刷新列表显示
-                        updateCurrentBangumiDisplay(); // 刷新当前观看显示
+                        applyPulledChanges(changes, freshCurrent);
                         System.out.println("强制拉取和数据更新成功！");
+                    } else if (progress.isCancelled()) {
+                        System.out.println("已取消强制拉取");
                     } else {
                         System.err.println("强制拉取失败，请检查网络连接和远程仓库设置");
+                        System.err.println(GitRemoteGuard.getStats());
+                        System.err.println(GitPushLoop.getStats());
                     }
                 });
             });
@@ -111,21 +296,32 @@ public class MainWindow extends JFrame {
 
         // 在后台线程中执行同步
         SwingUtilities.invokeLater(() -> {
+            SyncProgress progress = beginProgress("同步", "正在从远程仓库同步数据...");
             Thread syncThread = new Thread(() -> {
-                boolean success = GitUtils.pullChanges();
+                boolean success = progress.run(GitUtils::pullChanges);
+                // 取消只在拉取完成前有效：拉取成功后磁盘上已是远程内容，必须应用到内存中的列表
+                CatalogDiff.ChangeSet changes = success
+                        ? GitUtils.diffPulledCatalog("bangumi.json", CatalogStore.getInstance().snapshot()) : null;
+                List<Bangumi> freshCurrent = success ? JsonUtils.reloadBangumiList("/current_bangumi.json") : null;
                 if (success) {
-                    // 重新加载数据
+                    // 只应用拉取带来的变化
                     SwingUtilities.invokeLater(() -> {
-                        allBangumis = JsonUtils.readBangumiList("/bangumi.json");
-                        currentBangumiList = JsonUtils.readBangumiList("/current_bangumi.json");
-                        updateBangumiLists(); // 刷新列表显示
-                        updateCurrentBangumiDisplay(); // 刷新当前观看显示
+                        applyPulledChanges(changes, freshCurrent);
+                        System.out.println(GitPushLoop.getStats());
                         JOptionPane.showMessageDialog(this, "数据同步成功！", "信息", JOptionPane.INFORMATION_MESSAGE);
                         progressDialog.dispose(); // 关闭进度对话框
                     });
+                } else if (progress.isCancelled()) {
+                    SwingUtilities.invokeLater(() -> {
+                        progressDialog.dispose(); // 关闭进度对话框
+                        JOptionPane.showMessageDialog(this, "同步已取消", "信息", JOptionPane.INFORMATION_MESSAGE);
+                    });
                 } else {
                     SwingUtilities.invokeLater(() -> {
-                        JOptionPane.showMessageDialog(this, "数据同步失败，请检查网络连接和远程仓库设置", "警告", JOptionPane.WARNING_MESSAGE);
+                        System.err.println(GitRemoteGuard.getStats());
+                        System.err.println(GitPushLoop.getStats());
+                        JOptionPane.showMessageDialog(this, "数据同步失败，请检查网络连接和远程仓库设置\n远程仓库状态: "
+                                + GitRemoteGuard.describeState(), "警告", JOptionPane.WARNING_MESSAGE);
                         progressDialog.dispose(); // 关闭进度对话框
                     });
                 }
@@ -136,19 +332,42 @@ public class MainWindow extends JFrame {
     }
 
     private void pushToRemote() {
+        pushToRemote("数据更新");
+    }
+
+    /**
+     * 提交并推送当前修改
+     * @param summary 提交说明，后面附加时间
+     */
+    private void pushToRemote(String summary) {
         if (!AppConfig.getBooleanProperty("git.enabled", true)) {
             return;
         }
 
         // 使用内置账户信息推送
         SwingUtilities.invokeLater(() -> {
+            SyncProgress progress = beginProgress("推送", "正在推送数据到远程仓库...");
             Thread pushThread = new Thread(() -> {
-                String commitMessage = "数据更新 " + java.time.LocalDateTime.now();
-                boolean success = GitUtils.pushChanges(commitMessage);
-                if (success) {
+                String commitMessage = summary + " " + java.time.LocalDateTime.now();
+                boolean success = progress.run(() -> GitUtils.pushChanges(commitMessage));
+                if (progress.isCancelled()) {
+                    // 取消的推送保留在本地待推送队列中
+                    JOptionPane.showMessageDialog(this, "推送已取消，修改已保存在本地，将稍后自动推送", "信息", JOptionPane.INFORMATION_MESSAGE);
+                } else if (success) {
+                    System.out.println(GitPushLoop.getStats());
                     JOptionPane.showMessageDialog(this, "数据推送成功！", "信息", JOptionPane.INFORMATION_MESSAGE);
+                } else if (GitOutbox.getPendingCount() > 0) {
+                    // 修改已提交到本地仓库，网络恢复后由后台自动推送
+                    System.err.println(GitRemoteGuard.getStats());
+                    System.err.println(GitPushLoop.getStats());
+                    JOptionPane.showMessageDialog(this, "暂时无法推送，修改已保存在本地（待推送 " + GitOutbox.getPendingCount()
+                            + " 个提交），将在网络恢复后自动推送\n远程仓库状态: " + GitRemoteGuard.describeState(),
+                            "信息", JOptionPane.INFORMATION_MESSAGE);
                 } else {
-                    JOptionPane.showMessageDialog(this, "数据推送失败，请检查网络连接和认证信息", "警告", JOptionPane.WARNING_MESSAGE);
+                    System.err.println(GitRemoteGuard.getStats());
+                    System.err.println(GitPushLoop.getStats());
+                    JOptionPane.showMessageDialog(this, "数据推送失败，请检查网络连接和认证信息\n远程仓库状态: "
+                            + GitRemoteGuard.describeState(), "警告", JOptionPane.WARNING_MESSAGE);
                 }
                 progressDialog.dispose(); // 关闭进度对话框
             });
@@ -160,6 +379,8 @@ public class MainWindow extends JFrame {
     private void initializeComponents() {
         mainPanel = new JPanel(new BorderLayout());
         titleLabel = new JLabel("Bangumi Menu 系统", SwingConstants.CENTER);
+        catalogSelector = new JComboBox<>(Catalogs.all().toArray(new Catalogs.Catalog[0]));
+        catalogSelector.setSelectedItem(Catalogs.active());
 
         // 创建菜单按钮
         createMenuButtons();
@@ -167,6 +388,7 @@ public class MainWindow extends JFrame {
         // 加载数据
         allBangumis = JsonUtils.readBangumiList("/bangumi.json");
         currentBangumiList = JsonUtils.readBangumiList("/current_bangumi.json");
+        publishCatalog();
 
         // 创建显示区域
         currentBangumiDisplay = new JTextArea();
@@ -186,9 +408,9 @@ public class MainWindow extends JFrame {
         unwatchedList = new JList<>(createUnwatchedModel());
         watchedList = new JList<>(createWatchedModel());
 
-        // 设置列表样式
-        unwatchedList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        watchedList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // 设置列表样式，支持多选后批量操作
+        unwatchedList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        watchedList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 
         // 更新列表和显示
         updateCurrentBangumiDisplay();
@@ -201,6 +423,7 @@ public class MainWindow extends JFrame {
     private void createMenuButtons() {
         syncDataButton = new JButton("同步数据");
         addBangumiButton = new JButton("添加未观看番剧");
+        importCatalogButton = new JButton("导入目录");
         wantWatchButton = new JButton("想要观看");
         changeBangumiButton = new JButton("修改未观看番剧");
         deleteBangumiButton = new JButton("删除未观看番剧");
@@ -208,7 +431,12 @@ public class MainWindow extends JFrame {
         randomSelectButton = new JButton("随机抽取未观看番剧");
         markAsWatchedButton = new JButton("标记为已观看");
         markAsNotWatchedButton = new JButton("标记为未观看");
+        markSelectedWatchedButton = new JButton("选中标记为已观看");
+        changeProposerButton = new JButton("修改提议人");
         loginButton = new JButton("登录");
+        leaderboardButton = new JButton("想看排行榜");
+        exportButton = new JButton("导出");
+        analyticsButton = new JButton("观看统计");
 
         // 默认隐藏随机抽取和标记已观看按钮
         selectButton.setVisible(false);
@@ -217,10 +445,14 @@ public class MainWindow extends JFrame {
         deleteBangumiButton.setVisible(false);
         markAsWatchedButton.setVisible(false);
         markAsNotWatchedButton.setVisible(false);
+        markSelectedWatchedButton.setVisible(false);
+        changeProposerButton.setVisible(false);
+        importCatalogButton.setVisible(false);
 
         // 设置按钮样式
         syncDataButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
         addBangumiButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
+        importCatalogButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
         wantWatchButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
         changeBangumiButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
         deleteBangumiButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
@@ -228,28 +460,36 @@ public class MainWindow extends JFrame {
         randomSelectButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
         markAsWatchedButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
         markAsNotWatchedButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
+        markSelectedWatchedButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
+        changeProposerButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
+        leaderboardButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
+        exportButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
+        analyticsButton.setFont(new Font("微软雅黑", Font.PLAIN, 12));
+    }
+
+    /**
+     * 全量加载后发布目录快照并重建派生视图
+     */
+    private void publishCatalog() {
+        CatalogStore.getInstance().publish(allBangumis);
+        VoteLeaderboard.getInstance().rebuild(allBangumis);
+        CatalogAnalytics.getInstance().rebuild(allBangumis);
     }
 
     private DefaultListModel<String> createUnwatchedModel() {
         DefaultListModel<String> model = new DefaultListModel<>();
-        if (allBangumis != null) {
-            for (Bangumi bangumi : allBangumis) {
-                if (!bangumi.isWatched()) {
-                    model.addElement(bangumi.getTitle() + " (提议人: " + bangumi.getProposer() + ")");
-                }
-            }
+        ColumnarCatalog columns = CatalogStore.getInstance().snapshot().columns();
+        for (int i = columns.nextUnwatched(0); i != -1; i = columns.nextUnwatched(i + 1)) {
+            model.addElement(columns.title(i) + " (提议人: " + columns.proposers().valueAt(i) + ")");
         }
         return model;
     }
 
     private DefaultListModel<String> createWatchedModel() {
         DefaultListModel<String> model = new DefaultListModel<>();
-        if (allBangumis != null) {
-            for (Bangumi bangumi : allBangumis) {
-                if (bangumi.isWatched()) {
-                    model.addElement(bangumi.getTitle() + " (提议人: " + bangumi.getProposer() + ")");
-                }
-            }
+        ColumnarCatalog columns = CatalogStore.getInstance().snapshot().columns();
+        for (int i = columns.nextWatched(0); i != -1; i = columns.nextWatched(i + 1)) {
+            model.addElement(columns.title(i) + " (提议人: " + columns.proposers().valueAt(i) + ")");
         }
         return model;
     }
@@ -280,6 +520,138 @@ public class MainWindow extends JFrame {
         }
     }
 
+    /**
+     * 将拉取得到的变更集应用到内存列表和界面列表，只更新受影响的行，保留选择和滚动位置
+     * @param changes 目录的变更集，为null时（读取失败）保留内存中的数据
+     * @param freshCurrent 新读取的当前观看列表，为null时保留原有数据
+     */
+    private void applyPulledChanges(CatalogDiff.ChangeSet changes, List<Bangumi> freshCurrent) {
+        if (changes != null && !changes.isEmpty()) {
+            // 变更流的监听器随之增量更新快照和排行榜
+            CatalogDiff.apply(allBangumis, changes, ChangeFeed.getInstance());
+            if (changes.isReordered() || changes.size() > Math.max(16, allBangumis.size() / 4)) {
+                // 顺序变化或大部分条目都有变化时重建列表更快，重建后恢复选择
+                String unwatchedTitle = selectedTitle(unwatchedList);
+                String watchedTitle = selectedTitle(watchedList);
+                publishCatalog(); // 逐条发布的快照把新增条目追加在末尾，按新顺序重新发布
+                unwatchedList.setModel(createUnwatchedModel());
+                watchedList.setModel(createWatchedModel());
+                reselect(unwatchedList, unwatchedTitle);
+                reselect(watchedList, watchedTitle);
+            } else {
+                patchListModels(changes);
+            }
+        }
+        if (freshCurrent != null && !sameEntries(currentBangumiList, freshCurrent)) {
+            currentBangumiList = freshCurrent;
+            updateCurrentBangumiDisplay();
+        }
+    }
+
+    // 按变更后的快照调整两个列表的模型，只对变化的行产生模型事件，JList随之自动调整选择
+    private void patchListModels(CatalogDiff.ChangeSet changes) {
+        Set<String> changed = new HashSet<>(changes.getRemoved());
+        for (Bangumi bangumi : changes.getUpdated()) {
+            changed.add(bangumi.getTitle());
+        }
+        for (Bangumi bangumi : changes.getAdded()) {
+            changed.add(bangumi.getTitle());
+        }
+        ColumnarCatalog columns = CatalogStore.getInstance().snapshot().columns();
+        patchListModel((DefaultListModel<String>) unwatchedList.getModel(), false, columns, changed);
+        patchListModel((DefaultListModel<String>) watchedList.getModel(), true, columns, changed);
+
+        // 正在查看的条目可能已被修改或删除，按调整后的选择刷新详情
+        if (unwatchedList.getSelectedIndex() >= 0) {
+            displaySelectedBangumiDetails(unwatchedList.getSelectedIndex());
+        } else if (watchedList.getSelectedIndex() >= 0) {
+            displaySelectedBangedumiDetailsForWatched(watchedList.getSelectedIndex());
+        } else {
+            bangumiDetailsArea.setText("");
+        }
+    }
+
+    /**
+     * 将列表模型与快照中同一观看状态的条目按目录顺序对齐：一次扫描快照得到目标行，再与模型逐行归并，
+     * 不属于该列表的行删除，缺少的行插入，变化条目的标签改写
+     */
+    private static void patchListModel(DefaultListModel<String> model, boolean watched, ColumnarCatalog columns,
+                                       Set<String> changed) {
+        List<Integer> targets = new ArrayList<>();
+        Set<String> targetTitles = new HashSet<>();
+        for (int i = watched ? columns.nextWatched(0) : columns.nextUnwatched(0); i != -1;
+             i = watched ? columns.nextWatched(i + 1) : columns.nextUnwatched(i + 1)) {
+            targets.add(i);
+            targetTitles.add(columns.title(i));
+        }
+        int row = 0;
+        for (int i : targets) {
+            String title = columns.title(i);
+            while (row < model.size() && !targetTitles.contains(titleOf(model.get(row)))) {
+                model.remove(row);
+            }
+            if (row < model.size() && titleOf(model.get(row)).equals(title)) {
+                if (changed.contains(title)) {
+                    String label = title + " (提议人: " + columns.proposers().valueAt(i) + ")";
+                    if (!label.equals(model.get(row))) {
+                        model.set(row, label);
+                    }
+                }
+            } else {
+                model.add(row, title + " (提议人: " + columns.proposers().valueAt(i) + ")");
+            }
+            row++;
+        }
+        if (row < model.size()) {
+            model.removeRange(row, model.size() - 1);
+        }
+    }
+
+    private static int rowOf(ListModel<String> model, String title) {
+        String prefix = title + " (提议人: ";
+        for (int i = 0; i < model.getSize(); i++) {
+            if (model.getElementAt(i).startsWith(prefix)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String selectedTitle(JList<String> list) {
+        String value = list.getSelectedValue();
+        return value != null ? titleOf(value) : null;
+    }
+
+    // 列表标签中的番剧名
+    private static String titleOf(String label) {
+        int end = label.lastIndexOf(" (提议人: ");
+        return end >= 0 ? label.substring(0, end) : label;
+    }
+
+    private static void reselect(JList<String> list, String title) {
+        int row = title != null ? rowOf(list.getModel(), title) : -1;
+        if (row >= 0) {
+            list.setSelectedIndex(row);
+            list.ensureIndexIsVisible(row);
+        }
+    }
+
+    private static String listLabel(Bangumi bangumi) {
+        return bangumi.getTitle() + " (提议人: " + bangumi.getProposer() + ")";
+    }
+
+    private static boolean sameEntries(List<Bangumi> a, List<Bangumi> b) {
+        if (a == null || a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!CatalogDiff.sameContent(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void updateCurrentBangumiDisplay() {
         currentBangumiDisplay.setText("");
         if (currentBangumiList != null && !currentBangumiList.isEmpty()) {
@@ -311,6 +683,7 @@ public class MainWindow extends JFrame {
         JPanel menuPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         menuPanel.add(syncDataButton); // 添加同步按钮到面板
         menuPanel.add(addBangumiButton);
+        menuPanel.add(importCatalogButton);
         menuPanel.add(wantWatchButton);
         menuPanel.add(changeBangumiButton);
         menuPanel.add(deleteBangumiButton);
@@ -318,7 +691,16 @@ public class MainWindow extends JFrame {
         menuPanel.add(randomSelectButton);
         menuPanel.add(markAsWatchedButton);
         menuPanel.add(markAsNotWatchedButton);
+        menuPanel.add(markSelectedWatchedButton);
+        menuPanel.add(changeProposerButton);
+        menuPanel.add(leaderboardButton);
+        menuPanel.add(exportButton);
+        menuPanel.add(analyticsButton);
         menuPanel.add(loginButton);
+        // 只配置了一个目录时不显示目录选择
+        if (catalogSelector.getItemCount() > 1) {
+            menuPanel.add(catalogSelector);
+        }
 
         // 整体顶部面板（菜单+标题）
         JPanel topPanel = new JPanel(new BorderLayout());
@@ -369,6 +751,9 @@ public class MainWindow extends JFrame {
     }
 
     private void setupEventHandlers() {
+        // 目录选择事件
+        catalogSelector.addActionListener(e -> switchCatalog((Catalogs.Catalog) catalogSelector.getSelectedItem()));
+
         // 未观看列表点击事件
         unwatchedList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
@@ -389,6 +774,9 @@ public class MainWindow extends JFrame {
         // 添加番剧按钮事件
         addBangumiButton.addActionListener(e -> openAddBangumiDialog());
 
+        // 导入目录按钮事件
+        importCatalogButton.addActionListener(e -> importCatalogFile());
+
         // 想要观看番剧按钮事件
         wantWatchButton.addActionListener(e -> setWantWatchBangumi());
 
@@ -410,25 +798,32 @@ public class MainWindow extends JFrame {
         // 标记为未观看按钮事件
         markAsNotWatchedButton.addActionListener(e -> markCurrentAsNotWatched());
 
+        // 批量标记为已观看按钮事件
+        markSelectedWatchedButton.addActionListener(e -> markSelectedAsWatched());
+
+        // 批量修改提议人按钮事件
+        changeProposerButton.addActionListener(e -> changeSelectedProposer());
+
+        // 想看排行榜按钮事件
+        leaderboardButton.addActionListener(e -> showLeaderboardDialog());
+
+        // 导出按钮事件
+        exportButton.addActionListener(e -> exportCatalog());
+
+        // 观看统计按钮事件
+        analyticsButton.addActionListener(e -> showAnalyticsDialog());
+
         // 登录按钮事件
         loginButton.addActionListener(e -> showLoginDialog());
     }
 
     private void randomSelectUnwatchedBangumi() {
         System.out.println("随机抽取未观看的番剧");
-        if (allBangumis == null) {
-            return;
-        }
 
-        // 获取所有未观看的番剧
-        java.util.List<Bangumi> unwatchedBangumis = new java.util.ArrayList<>();
-        for (Bangumi bangumi : allBangumis) {
-            if (!bangumi.isWatched()) {
-                unwatchedBangumis.add(bangumi);
-            }
-        }
+        CatalogSnapshot snapshot = CatalogStore.getInstance().snapshot();
+        ColumnarCatalog columns = snapshot.columns();
 
-        if (unwatchedBangumis.isEmpty()) {
+        if (columns.nextUnwatched(0) == -1) {
             JOptionPane.showMessageDialog(this, "没有未观看的番剧！", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
@@ -437,34 +832,21 @@ public class MainWindow extends JFrame {
         //Random random = new Random();
         //Bangumi selected = unwatchedBangumis.get(random.nextInt(unwatchedBangumis.size()));
 
-        Bangumi selected = null;
-        // 计算总权重 - 使用整数权重，每票增加5相当于基础权重100+票数*5
-        int totalWeight = 0;
-        for (Bangumi bangumi : unwatchedBangumis) {
-            // 基础权重为100，每票增加5权重（相当于原来的1.0+votes*0.05，但放大100倍）
-            totalWeight += 100 + (bangumi.getVotes() * 5);
-        }
-
-        // 生成随机权重点
+        // 按权重选择番剧：基础权重为100，每票增加5权重（相当于原来的1.0+votes*0.05，但放大100倍）
+        // 直接在列式视图上用基本类型循环扫描票数和观看状态
         Random random = new Random();
-        int randomPoint = random.nextInt(totalWeight);  // 使用nextInt代替nextDouble
-
-        // 根据权重选择番剧
-        int accumulatedWeight = 0;
-        for (Bangumi bangumi : unwatchedBangumis) {
-            accumulatedWeight += 100 + (bangumi.getVotes() * 5);
-            if (randomPoint < accumulatedWeight) {  // 注意这里是小于号，因为randomPoint是0到totalWeight-1的值
-                selected = bangumi;
-                // 显示选中的番剧
-                break;
-            }
-        }
+        int selectedIndex = columns.pickWeightedUnwatched(random, 100, 5);
 
         // 如果由于某种原因没有选中任何番剧，重新随机
-        if (Objects.isNull(selected)) {
-            System.out.println("受到浮点影响，重新随机抽取");
-            selected = unwatchedBangumis.get(random.nextInt(unwatchedBangumis.size()));
+        if (selectedIndex == -1) {
+            System.out.println("权重异常，重新随机抽取");
+            int skip = random.nextInt(columns.size() - columns.watchedCount());
+            selectedIndex = columns.nextUnwatched(0);
+            while (skip-- > 0) {
+                selectedIndex = columns.nextUnwatched(selectedIndex + 1);
+            }
         }
+        Bangumi selected = snapshot.get(selectedIndex);
 
 
         // 设置为当前观看
@@ -473,7 +855,7 @@ public class MainWindow extends JFrame {
         }
         System.out.println("正在设置......");
         currentBangumiList.clear();
-        currentBangumiList.add(selected);
+        currentBangumiList.add(new Bangumi(selected));
 
         // 保存当前观看到文件（使用用户目录）
         JsonUtils.writeBangumiListToUserDir(currentBangumiList, "current_bangumi.json");
@@ -535,6 +917,143 @@ public class MainWindow extends JFrame {
         JOptionPane.showMessageDialog(this, "已选择: " + current.getTitle(), "提示", JOptionPane.INFORMATION_MESSAGE);
     }
 
+    /**
+     * 从JSON Lines或CSV文件批量导入番剧，导入的条目一次加入目录、写入文件并提交
+     */
+    private void importCatalogFile() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("选择要导入的目录文件");
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+                "JSON Lines / CSV (*.jsonl, *.json, *.csv, *.gz)", "jsonl", "json", "csv", "gz"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.io.File file = chooser.getSelectedFile();
+
+        List<String> existingTitles = new ArrayList<>(allBangumis.size());
+        for (Bangumi bangumi : allBangumis) {
+            existingTitles.add(bangumi.getTitle());
+        }
+        SyncProgress progress = beginProgress("导入", "正在导入 " + file.getName() + "...");
+        Thread importThread = new Thread(() -> {
+            CatalogImport.Result result;
+            try {
+                result = progress.run(() -> {
+                    try {
+                        return CatalogImport.importFile(file, existingTitles, USER_NAME, SyncProgress.monitor());
+                    } catch (java.io.IOException e) {
+                        throw new java.io.UncheckedIOException(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                String message = e instanceof java.io.UncheckedIOException ? e.getCause().getMessage() : e.getMessage();
+                System.err.println("导入目录失败: " + message);
+                SwingUtilities.invokeLater(() -> {
+                    progressDialog.dispose(); // 关闭进度对话框
+                    JOptionPane.showMessageDialog(this, "导入失败: " + message, "错误", JOptionPane.ERROR_MESSAGE);
+                });
+                return;
+            }
+            SwingUtilities.invokeLater(() -> applyImportedEntries(result));
+        });
+        importThread.start();
+        progressDialog.setVisible(true); // 显示进度对话框
+    }
+
+    /**
+     * 把导入的条目加入目录，在后台线程中写出变更后的快照；写入期间进度对话框保持打开，其他修改不会先于导入写入文件
+     */
+    private void applyImportedEntries(CatalogImport.Result result) {
+        List<Bangumi> entries = result.getEntries();
+        if (result.isCancelled() || entries.isEmpty()) {
+            progressDialog.dispose(); // 关闭进度对话框
+            JOptionPane.showMessageDialog(this, result.isCancelled() ? "导入已取消" : "导入完成\n" + result,
+                    "信息", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        allBangumis.addAll(entries);
+        if (ChangeFeed.shouldRebuild(entries.size())) {
+            // 导入条目过多时逐条推送给订阅者不如直接全量发布
+            publishCatalog();
+        } else {
+            ChangeFeed.getInstance().recordBatch(entries, null, null);
+        }
+        updateBangumiLists();
+
+        // 快照中的条目不会再被界面线程修改，可以安全地在后台序列化；一次写入文件和一次提交
+        CatalogSnapshot snapshot = CatalogStore.getInstance().snapshot();
+        Catalogs.Catalog catalog = Catalogs.active();
+        progressLabel.setText("正在保存导入的 " + entries.size() + " 部番剧...");
+        Thread writeThread = new Thread(() -> {
+            Catalogs.callIn(catalog, () -> {
+                JsonUtils.writeBangumiListToUserDir(snapshot, "bangumi.json");
+                return null;
+            });
+            SwingUtilities.invokeLater(() -> {
+                progressDialog.dispose(); // 关闭进度对话框
+                if (AppConfig.getBooleanProperty("git.enabled", true)) {
+                    pushToRemote("导入 " + entries.size() + " 部番剧");
+                }
+                JOptionPane.showMessageDialog(this, "导入完成\n" + result, "信息", JOptionPane.INFORMATION_MESSAGE);
+            });
+        }, "catalog-import-write");
+        writeThread.start();
+    }
+
+    /**
+     * 将当前目录导出为CSV、Markdown、JSON Lines或统计报表（在后台线程中逐条写出）
+     */
+    private void exportCatalog() {
+        String[] options = {"CSV", "Markdown", "JSON Lines", "统计报表"};
+        CatalogExport.Format[] formats = {
+                CatalogExport.Format.CSV, CatalogExport.Format.MARKDOWN, CatalogExport.Format.JSONL, CatalogExport.Format.REPORT
+        };
+        int choice = JOptionPane.showOptionDialog(this, "选择导出格式", "导出", JOptionPane.DEFAULT_OPTION,
+                JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+        if (choice < 0) {
+            return;
+        }
+        CatalogExport.Format format = formats[choice];
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("导出到");
+        String baseName = format == CatalogExport.Format.REPORT ? "bangumi-report" : "bangumi";
+        chooser.setSelectedFile(new java.io.File(baseName + "." + format.getExtension()));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.io.File file = chooser.getSelectedFile();
+
+        exportButton.setEnabled(false);
+        Catalogs.Catalog catalog = Catalogs.active();
+        Thread exportThread = new Thread(() -> {
+            String message;
+            int messageType;
+            try (java.io.Writer out = java.nio.file.Files.newBufferedWriter(file.toPath(), java.nio.charset.StandardCharsets.UTF_8)) {
+                long count = Catalogs.callIn(catalog, () -> {
+                    try {
+                        return CatalogExport.export(format, out);
+                    } catch (java.io.IOException e) {
+                        throw new java.io.UncheckedIOException(e);
+                    }
+                });
+                message = "已导出 " + count + " 条到 " + file.getAbsolutePath();
+                messageType = JOptionPane.INFORMATION_MESSAGE;
+            } catch (java.io.IOException | java.io.UncheckedIOException e) {
+                message = "导出失败: " + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                messageType = JOptionPane.ERROR_MESSAGE;
+                System.err.println(message);
+            }
+            String finalMessage = message;
+            int finalMessageType = messageType;
+            SwingUtilities.invokeLater(() -> {
+                exportButton.setEnabled(true);
+                JOptionPane.showMessageDialog(this, finalMessage, "导出", finalMessageType);
+            });
+        }, "catalog-export");
+        exportThread.start();
+    }
+
     private void openAddBangumiDialog() {
         // 创建添加番剧对话框
         JDialog dialog = new JDialog(this, "添加未观看番剧", true);
@@ -660,12 +1179,14 @@ public class MainWindow extends JFrame {
             newBangumi.setProposer(proposer);
             newBangumi.setWatched(false); // 默认未观看
             newBangumi.setVotes(0);
+            newBangumi.setProposeTime(java.time.LocalDateTime.now());
 
             // 添加到总列表
             if (allBangumis == null) {
                 allBangumis = new java.util.ArrayList<>();
             }
             allBangumis.add(newBangumi);
+            ChangeFeed.getInstance().recordAdded(newBangumi);
 
             // 保存到文件（使用用户目录）
             JsonUtils.writeBangumiListToUserDir(allBangumis, "bangumi.json");
@@ -695,49 +1216,21 @@ public class MainWindow extends JFrame {
 
     private void setWantWatchBangumi() {
 
-        int selectedIndex = unwatchedList.getSelectedIndex();
-        if (selectedIndex == -1) {
-            JOptionPane.showMessageDialog(this, "未选择想要观看的番剧", "提示", JOptionPane.INFORMATION_MESSAGE);
-            return;
-        }
-
-        // 获取未观看列表中选中的番剧
-        String selectedTitle = (String) unwatchedList.getModel().getElementAt(selectedIndex);
-
-        // 从allBangumis中找到对应的Bangumi对象
-        Bangumi current = null;
-        for (Bangumi bangumi : allBangumis) {
-            if ((bangumi.getTitle() + " (提议人: " + bangumi.getProposer() + ")").equals(selectedTitle)) {
-                current = bangumi;
-                break;
-            }
-        }
-
-        if (current == null) {
+        // 获取未观看列表中选中的番剧（可多选）
+        List<Bangumi> selected = selectedBangumis(unwatchedList);
+        if (selected.isEmpty()) {
             JOptionPane.showMessageDialog(this, "未选择想要观看的番剧", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
 
-        if (current.getWatcher() != null && current.getWatcher().indexOf(USER_NAME) != -1) {
-            JOptionPane.showMessageDialog(this, "您已提交过想要观看该番剧了", "提示", JOptionPane.INFORMATION_MESSAGE);
+        // 在锁保护下检查并投票，避免并发投票丢失；多选时作为一批修改
+        List<Bangumi> voted = MutationEngine.getInstance().voteAll(selected, USER_NAME);
+        if (voted.isEmpty()) {
+            JOptionPane.showMessageDialog(this, selected.size() == 1 ? "您已提交过想要观看该番剧了" : "您已提交过想要观看这些番剧了",
+                    "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
 
-
-        // 在allBangumis中找到并更新该番剧的状态
-        for (int i = 0; i < allBangumis.size(); i++) {
-            Bangumi bangumi = allBangumis.get(i);
-            if (bangumi.getTitle().equals(current.getTitle())) {
-                bangumi.setVotes(bangumi.getVotes() + 1);
-                if (bangumi.getWatcher() != null && !bangumi.getWatcher().equals("")) {
-                    bangumi.setWatcher(bangumi.getWatcher() + "," + USER_NAME);
-                } else {
-                    bangumi.setWatcher(USER_NAME);
-                }
-                break;
-            }
-        }
-
         // 保存到文件（使用用户目录）
         JsonUtils.writeBangumiListToUserDir(allBangumis, "bangumi.json");
 
@@ -746,14 +1239,20 @@ public class MainWindow extends JFrame {
 
         // 推送更改到远程仓库
         if (AppConfig.getBooleanProperty("git.enabled", true)) {
-            pushToRemote();
+            pushToRemote(voted.size() == 1 ? "想要观看 " + voted.get(0).getTitle() : "想要观看 " + voted.size() + " 部番剧");
         }
 
         // 更新列表显示
         updateBangumiLists();
         updateCurrentBangumiDisplay();
 
-        JOptionPane.showMessageDialog(this, "已提交想要观看！", "成功", JOptionPane.INFORMATION_MESSAGE);
+        if (selected.size() == 1) {
+            JOptionPane.showMessageDialog(this, "已提交想要观看！", "成功", JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(this, "已提交想要观看 " + voted.size() + " 部番剧"
+                    + (voted.size() < selected.size() ? "（" + (selected.size() - voted.size()) + " 部已提交过）" : "") + "！",
+                    "成功", JOptionPane.INFORMATION_MESSAGE);
+        }
 
     }
 
@@ -892,12 +1391,14 @@ public class MainWindow extends JFrame {
                 return;
             }
 
-            finalCurrent.setTitle(title);
-            finalCurrent.setDescription(description);
-            finalCurrent.setWriter(writer);
-            finalCurrent.setOriginal(original);
-            finalCurrent.setDirector(director);
-            finalCurrent.setProposer(proposer);
+            MutationEngine.getInstance().update(finalCurrent, bangumi -> {
+                bangumi.setTitle(title);
+                bangumi.setDescription(description);
+                bangumi.setWriter(writer);
+                bangumi.setOriginal(original);
+                bangumi.setDirector(director);
+                bangumi.setProposer(proposer);
+            });
 
             // 在allBangumis中找到并更新该番剧的状态
             for (int i = 0; i < allBangumis.size(); i++) {
@@ -936,35 +1437,27 @@ public class MainWindow extends JFrame {
 
     private void setDeleteBangumiDialog() {
 
-        int selectedIndex = unwatchedList.getSelectedIndex();
-        if (selectedIndex == -1) {
+        // 获取未观看列表中选中的番剧（可多选）
+        List<Bangumi> selected = selectedBangumis(unwatchedList);
+        if (selected.isEmpty()) {
             JOptionPane.showMessageDialog(this, "未选择要删除的番剧", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
-
-        // 获取未观看列表中选中的番剧
-        String selectedTitle = (String) unwatchedList.getModel().getElementAt(selectedIndex);
-
-        // 从allBangumis中找到对应的Bangumi对象
-        Bangumi current = null;
-        for (Bangumi bangumi : allBangumis) {
-            if ((bangumi.getTitle() + " (提议人: " + bangumi.getProposer() + ")").equals(selectedTitle)) {
-                current = bangumi;
-                break;
-            }
-        }
-
-        if (current == null) {
-            JOptionPane.showMessageDialog(this, "未选择要删除的番剧", "提示", JOptionPane.INFORMATION_MESSAGE);
+        if (selected.size() > 1 && JOptionPane.showConfirmDialog(this, "确定删除选中的 " + selected.size() + " 部番剧吗？",
+                "确认", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
             return;
         }
 
-        // 在allBangumis中移除该番剧
-
-        allBangumis.remove(current);
+        // 在allBangumis中一次移除选中的番剧
+        Set<String> titles = new LinkedHashSet<>();
+        for (Bangumi bangumi : selected) {
+            titles.add(bangumi.getTitle());
+        }
+        allBangumis.removeIf(bangumi -> titles.contains(bangumi.getTitle()));
+        MutationEngine.getInstance().removeAll(titles);
 
         // 从当前观看列表中移除
-        if (currentBangumiList.size() > 0 && currentBangumiList.get(0).getTitle().equals(current.getTitle())) {
+        if (currentBangumiList.size() > 0 && titles.contains(currentBangumiList.get(0).getTitle())) {
             currentBangumiList.clear();
         }
 
@@ -976,14 +1469,15 @@ public class MainWindow extends JFrame {
 
         // 推送更改到远程仓库
         if (AppConfig.getBooleanProperty("git.enabled", true)) {
-            pushToRemote();
+            pushToRemote(titles.size() == 1 ? "删除番剧 " + titles.iterator().next() : "删除 " + titles.size() + " 部番剧");
         }
 
         // 更新显示
         updateCurrentBangumiDisplay();
         updateBangumiLists(); // 更新列表以反映更改
 
-        JOptionPane.showMessageDialog(this, "番剧删除成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
+        JOptionPane.showMessageDialog(this, titles.size() == 1 ? "番剧删除成功！" : "已删除 " + titles.size() + " 部番剧！",
+                "成功", JOptionPane.INFORMATION_MESSAGE);
 
     }
 
@@ -999,7 +1493,10 @@ public class MainWindow extends JFrame {
         for (int i = 0; i < allBangumis.size(); i++) {
             Bangumi bangumi = allBangumis.get(i);
             if (bangumi.getTitle().equals(current.getTitle())) {
-                bangumi.setWatched(true);
+                MutationEngine.getInstance().update(bangumi, b -> {
+                    b.setWatched(true);
+                    b.setWatchTime(java.time.LocalDateTime.now()); // 记录观看时间，用于观看统计
+                });
                 break;
             }
         }
@@ -1025,35 +1522,110 @@ public class MainWindow extends JFrame {
     }
 
     private void markCurrentAsNotWatched() {
-        int selectedIndex = watchedList.getSelectedIndex();
-        if (selectedIndex == -1) {
+        // 获取已观看列表中选中的番剧（可多选）
+        List<Bangumi> selected = selectedBangumis(watchedList);
+        if (selected.isEmpty()) {
             JOptionPane.showMessageDialog(this, "未选择要修改的番剧", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
 
-        // 获取已观看列表中选中的番剧
-        String selectedTitle = (String) watchedList.getModel().getElementAt(selectedIndex);
-        // 从allBangumis中找到对应的Bangumi对象
-        Bangumi current = null;
-        for (Bangumi bangumi : allBangumis) {
-            if ((bangumi.getTitle() + " (提议人: " + bangumi.getProposer() + ")").equals(selectedTitle)) {
-                current = bangumi;
-                break;
+        // 在一次批量修改中更新选中番剧的状态
+        MutationEngine.getInstance().updateAll(selected, bangumi -> {
+            bangumi.setWatched(false);
+            return true;
+        });
+
+        // 保存到文件（使用用户目录）
+        JsonUtils.writeBangumiListToUserDir(allBangumis, "bangumi.json");
+
+        // 推送更改到远程仓库
+        if (AppConfig.getBooleanProperty("git.enabled", true)) {
+            pushToRemote(selected.size() == 1 ? "标记未观看 " + selected.get(0).getTitle() : "标记 " + selected.size() + " 部番剧为未观看");
+        }
+
+        // 更新显示
+        updateBangumiLists(); // 更新列表以反映更改
+        JOptionPane.showMessageDialog(this, selected.size() == 1 ? "已将 '" + selected.get(0).getTitle() + "' 标记为未观看！"
+                : "已将 " + selected.size() + " 部番剧标记为未观看！", "提示", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * 将未观看列表中选中的番剧批量标记为已观看
+     */
+    private void markSelectedAsWatched() {
+        List<Bangumi> selected = selectedBangumis(unwatchedList);
+        if (selected.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "未选择要标记的番剧", "提示", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        java.time.LocalDateTime watchTime = java.time.LocalDateTime.now();
+        MutationEngine.getInstance().updateAll(selected, bangumi -> {
+            bangumi.setWatched(true);
+            bangumi.setWatchTime(watchTime);
+            return true;
+        });
+
+        // 标记的番剧中包含当前观看时一并清空
+        boolean currentChanged = false;
+        if (!currentBangumiList.isEmpty()) {
+            for (Bangumi bangumi : selected) {
+                if (bangumi.getTitle().equals(currentBangumiList.get(0).getTitle())) {
+                    currentBangumiList.clear();
+                    currentChanged = true;
+                    break;
+                }
             }
         }
 
-        if (current == null) {
+        // 保存到文件（使用用户目录）
+        JsonUtils.writeBangumiListToUserDir(allBangumis, "bangumi.json");
+        if (currentChanged) {
+            JsonUtils.writeBangumiListToUserDir(currentBangumiList, "current_bangumi.json");
+        }
+
+        // 推送更改到远程仓库
+        if (AppConfig.getBooleanProperty("git.enabled", true)) {
+            pushToRemote(selected.size() == 1 ? "标记已观看 " + selected.get(0).getTitle() : "标记 " + selected.size() + " 部番剧为已观看");
+        }
+
+        // 更新显示
+        updateCurrentBangumiDisplay();
+        updateBangumiLists(); // 更新列表以反映更改
+        JOptionPane.showMessageDialog(this, "已将 " + selected.size() + " 部番剧标记为已观看！", "提示", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * 批量修改选中番剧（未观看和已观看列表）的提议人
+     */
+    private void changeSelectedProposer() {
+        List<Bangumi> selected = selectedBangumis(unwatchedList);
+        selected.addAll(selectedBangumis(watchedList));
+        if (selected.isEmpty()) {
             JOptionPane.showMessageDialog(this, "未选择要修改的番剧", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
 
-        // 在allBangumis中找到并更新该番剧的状态
-        for (int i = 0; i < allBangumis.size(); i++) {
-            Bangumi bangumi = allBangumis.get(i);
-            if (bangumi.getTitle().equals(current.getTitle())) {
-                bangumi.setWatched(false);
-                break;
+        String proposer = JOptionPane.showInputDialog(this, "将选中的 " + selected.size() + " 部番剧的提议人修改为:",
+                selected.get(0).getProposer());
+        if (proposer == null) {
+            return;
+        }
+        String newProposer = proposer.trim();
+        if (newProposer.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "提议人不能为空", "提示", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        List<Bangumi> changed = MutationEngine.getInstance().updateAll(selected, bangumi -> {
+            if (newProposer.equals(bangumi.getProposer())) {
+                return false;
             }
+            bangumi.setProposer(newProposer);
+            return true;
+        });
+        if (changed.isEmpty()) {
+            return;
         }
 
         // 保存到文件（使用用户目录）
@@ -1061,81 +1633,88 @@ public class MainWindow extends JFrame {
 
         // 推送更改到远程仓库
         if (AppConfig.getBooleanProperty("git.enabled", true)) {
-            pushToRemote();
+            pushToRemote("修改 " + changed.size() + " 部番剧的提议人为 " + newProposer);
         }
 
         // 更新显示
         updateBangumiLists(); // 更新列表以反映更改
-        JOptionPane.showMessageDialog(this, "已将 '" + current.getTitle() + "' 标记为未观看！", "提示", JOptionPane.INFORMATION_MESSAGE);
+        JOptionPane.showMessageDialog(this, "已修改 " + changed.size() + " 部番剧的提议人！", "提示", JOptionPane.INFORMATION_MESSAGE);
     }
 
-    private void displaySelectedBangumiDetails(int index) {
-        if (allBangumis != null && index >= 0) {
-            // 找到未观看列表中的第index个元素
-            int unwatchedIndex = 0;
-            for (int i = 0; i < allBangumis.size(); i++) {
-                if (!allBangumis.get(i).isWatched()) {
-                    if (unwatchedIndex == index) {
-                        Bangumi selected = allBangumis.get(i);
-                        displayBangumiDetail(selected);
-                        return;
-                    }
-                    unwatchedIndex++;
-                }
+    /**
+     * 列表中选中的番剧，按列表顺序；列表文字与番剧的对应关系一次建立
+     */
+    private List<Bangumi> selectedBangumis(JList<String> list) {
+        List<String> labels = list.getSelectedValuesList();
+        List<Bangumi> selected = new ArrayList<>(labels.size());
+        if (labels.isEmpty()) {
+            return selected;
+        }
+        Map<String, Bangumi> byLabel = new java.util.HashMap<>(allBangumis.size() * 2);
+        for (Bangumi bangumi : allBangumis) {
+            byLabel.putIfAbsent(listLabel(bangumi), bangumi);
+        }
+        for (String label : labels) {
+            Bangumi bangumi = byLabel.get(label);
+            if (bangumi != null) {
+                selected.add(bangumi);
             }
         }
+        return selected;
+    }
+
+    private void displaySelectedBangumiDetails(int index) {
+        // 未观看列表的第index行即列式视图中第index个未观看条目
+        CatalogSnapshot snapshot = CatalogStore.getInstance().snapshot();
+        int row = snapshot.columns().nthUnwatched(index);
+        if (row != -1) {
+            displayBangumiDetail(snapshot, row);
+        }
     }
 
     private void displaySelectedBangedumiDetailsForWatched(int index) {
-        if (allBangumis != null && index >= 0) {
-            // 找到已观看列表中的第index个元素
-            int watchedIndex = 0;
-            for (int i = 0; i < allBangumis.size(); i++) {
-                if (allBangumis.get(i).isWatched()) {
-                    if (watchedIndex == index) {
-                        Bangumi selected = allBangumis.get(i);
-                        displayBangumiDetail(selected);
-                        return;
-                    }
-                    watchedIndex++;
-                }
-            }
+        CatalogSnapshot snapshot = CatalogStore.getInstance().snapshot();
+        int row = snapshot.columns().nthWatched(index);
+        if (row != -1) {
+            displayBangumiDetail(snapshot, row);
         }
     }
 
     private boolean isTitleExists(String title) {
-        if (allBangumis == null || title == null || title.isEmpty()) {
+        if (title == null || title.isEmpty()) {
             return false;
         }
-
-        for (Bangumi bangumi : allBangumis) {
-            if (title.equals(bangumi.getTitle())) {
-                return true;
-            }
-        }
-
-        return false;
+        return CatalogStore.getInstance().snapshot().findByTitle(title) != null;
     }
 
-    private void displayBangumiDetail(Bangumi bangumi) {
-        if (bangumi == null) {
-            bangumiDetailsArea.setText("番剧信息为空");
-            return;
-        }
+    /**
+     * 显示快照中第row个条目的详情，字段从列式视图读取，简介和想要观看人不在列中，从条目读取
+     */
+    private void displayBangumiDetail(CatalogSnapshot snapshot, int row) {
+        ColumnarCatalog columns = snapshot.columns();
+        Bangumi bangumi = snapshot.get(row);
+        String title = columns.title(row);
 
         StringBuilder detail = new StringBuilder();
-        detail.append("番剧名: ").append(bangumi.getTitle() != null ? bangumi.getTitle() : "未知").append("\n");
+        detail.append("番剧名: ").append(title != null ? title : "未知").append("\n");
         detail.append("简介: ").append(bangumi.getDescription() != null ? bangumi.getDescription() : "无").append("\n");
-        detail.append("编剧: ").append(bangumi.getWriter() != null ? bangumi.getWriter() : "未知").append("\n");
-        detail.append("原作: ").append(bangumi.getOriginal() != null ? bangumi.getOriginal() : "未知").append("\n");
-        detail.append("导演: ").append(bangumi.getDirector() != null ? bangumi.getDirector() : "未知").append("\n");
-        detail.append("提议人: ").append(bangumi.getProposer() != null ? bangumi.getProposer() : "未知").append("\n");
-        detail.append("是否观看完: ").append(bangumi.isWatched() ? "是" : "否").append("\n");
-        detail.append("票数: ").append(bangumi.getVotes()).append("\n");
+        detail.append("编剧: ").append(orUnknown(columns.writers().valueAt(row))).append("\n");
+        detail.append("原作: ").append(orUnknown(columns.originals().valueAt(row))).append("\n");
+        detail.append("导演: ").append(orUnknown(columns.directors().valueAt(row))).append("\n");
+        detail.append("提议人: ").append(orUnknown(columns.proposers().valueAt(row))).append("\n");
+        detail.append("是否观看完: ").append(columns.isWatched(row) ? "是" : "否").append("\n");
+        detail.append("票数: ").append(columns.votes(row)).append("\n");
+        if (!columns.isWatched(row)) {
+            int rank = VoteLeaderboard.getInstance().rankOf(title);
+            if (rank != -1) {
+                detail.append("想看排名: 第").append(rank).append("名\n");
+            }
+        }
 
         // 如果有观看时间和观看人信息，则显示
-        if (bangumi.getWatchTime() != null) {
-            detail.append("观看时间: ").append(bangumi.getWatchTime().toString()).append("\n");
+        java.time.LocalDateTime watchTime = columns.watchTime(row);
+        if (watchTime != null) {
+            detail.append("观看时间: ").append(watchTime.toString()).append("\n");
         } else {
             detail.append("观看时间: 未设定\n");
         }
@@ -1148,6 +1727,91 @@ public class MainWindow extends JFrame {
         bangumiDetailsArea.setText(detail.toString());
     }
 
+    private static String orUnknown(String value) {
+        return value != null ? value : "未知";
+    }
+
+    /**
+     * 观看统计面板，读取增量维护的汇总值
+     */
+    private void showAnalyticsDialog() {
+        CatalogAnalytics analytics = CatalogAnalytics.getInstance();
+        StringBuilder sb = new StringBuilder();
+        sb.append("已观看: ").append(analytics.getWatchedCount()).append(" 部\n");
+        sb.append("观看时平均票数: ").append(String.format("%.1f", analytics.getAverageVotesAtWatch())).append("\n");
+        double days = analytics.getAverageDaysToWatch();
+        sb.append("从提议到观看平均: ").append(days >= 0
+                ? String.format("%.1f 天（%d 部）", days, analytics.getLeadTimeCount()) : "暂无数据").append("\n");
+
+        sb.append("\n提议人（被观看 / 提议数）:\n");
+        for (Map.Entry<String, int[]> entry : analytics.getProposerStats().entrySet()) {
+            int[] counts = entry.getValue();
+            sb.append("  ").append(entry.getKey()).append(": ").append(counts[1]).append(" / ").append(counts[0])
+                    .append(String.format("（%.0f%%）", counts[0] > 0 ? counts[1] * 100.0 / counts[0] : 0)).append("\n");
+        }
+
+        sb.append("\n每月观看:\n");
+        Map<java.time.YearMonth, Integer> byMonth = analytics.getWatchesByMonth();
+        if (byMonth.isEmpty()) {
+            sb.append("  暂无观看时间记录\n");
+        }
+        for (Map.Entry<java.time.YearMonth, Integer> entry : byMonth.entrySet()) {
+            sb.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+
+        // 只列出最近12周
+        sb.append("\n最近每周观看:\n");
+        List<Map.Entry<String, Integer>> weeks = new ArrayList<>(analytics.getWatchesByWeek().entrySet());
+        for (Map.Entry<String, Integer> entry : weeks.subList(Math.max(0, weeks.size() - 12), weeks.size())) {
+            sb.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+
+        JTextArea textArea = new JTextArea(sb.toString());
+        textArea.setEditable(false);
+        textArea.setFont(new Font("微软雅黑", Font.PLAIN, 12));
+        textArea.setMargin(new Insets(10, 10, 10, 10));
+        JScrollPane scrollPane = new JScrollPane(textArea);
+
+        JDialog dialog = new JDialog(this, "观看统计", false);
+        dialog.setLayout(new BorderLayout());
+        dialog.add(scrollPane, BorderLayout.CENTER);
+        JButton closeButton = new JButton("关闭");
+        closeButton.addActionListener(e -> dialog.dispose());
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+        buttonPanel.add(closeButton);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.setSize(400, 500);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
+    private void showLeaderboardDialog() {
+        DefaultListModel<String> model = new DefaultListModel<>();
+        for (VoteLeaderboard.Entry entry : VoteLeaderboard.getInstance().top(20)) {
+            model.addElement(entry.getRank() + ". " + entry.getTitle() + " (" + entry.getVotes() + "票)");
+        }
+        if (model.isEmpty()) {
+            model.addElement("暂无未观看的番剧");
+        }
+
+        JList<String> leaderboardList = new JList<>(model);
+        leaderboardList.setFont(new Font("微软雅黑", Font.PLAIN, 12));
+        JScrollPane scrollPane = new JScrollPane(leaderboardList);
+        scrollPane.setBorder(BorderFactory.createTitledBorder("最想看的未观看番剧（前20名）"));
+
+        JDialog dialog = new JDialog(this, "想看排行榜", false);
+        dialog.setLayout(new BorderLayout());
+        dialog.add(scrollPane, BorderLayout.CENTER);
+        JButton closeButton = new JButton("关闭");
+        closeButton.addActionListener(e -> dialog.dispose());
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+        buttonPanel.add(closeButton);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.setSize(350, 450);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
     private void showLoginDialog() {
         JPasswordField passwordField = new JPasswordField();
         Object[] message = {
@@ -1167,6 +1831,9 @@ public class MainWindow extends JFrame {
                 changeBangumiButton.setVisible(true);
                 markAsWatchedButton.setVisible(true);
                 markAsNotWatchedButton.setVisible(true);
+                markSelectedWatchedButton.setVisible(true);
+                changeProposerButton.setVisible(true);
+                importCatalogButton.setVisible(true);
                 loginButton.setVisible(false); // 隐藏登录按钮
                 isLoggedIn = true;
                 JOptionPane.showMessageDialog(this, "登录成功！", "提示", JOptionPane.INFORMATION_MESSAGE);
@@ -1178,6 +1845,9 @@ public class MainWindow extends JFrame {
                 deleteBangumiButton.setVisible(true);
                 markAsWatchedButton.setVisible(true);
                 markAsNotWatchedButton.setVisible(true);
+                markSelectedWatchedButton.setVisible(true);
+                changeProposerButton.setVisible(true);
+                importCatalogButton.setVisible(true);
                 loginButton.setVisible(false); // 隐藏登录按钮
                 isLoggedIn = true;
                 JOptionPane.showMessageDialog(this, "登录成功！", "提示", JOptionPane.INFORMATION_MESSAGE);
@@ -1189,23 +1859,73 @@ public class MainWindow extends JFrame {
 
     private void setProgressDialog() {
         progressDialog = new JDialog(this, "同步中...", Dialog.ModalityType.APPLICATION_MODAL);
-        progressDialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE); // 禁止手动关闭
+        progressDialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE); // 关闭窗口等同于取消，由同步线程关闭对话框
+        progressDialog.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                cancelActiveProgress();
+            }
+        });
 
         // 设置对话框内容
-        JPanel panel = new JPanel(new BorderLayout());
-        JLabel label = new JLabel("正在强制从远程仓库拉取最新内容进行覆盖...", JLabel.CENTER);
-        JProgressBar progressBar = new JProgressBar();
-        progressBar.setIndeterminate(true); // 设置为不确定进度模式（转圈动画）
+        JPanel panel = new JPanel(new BorderLayout(0, 8));
+        progressLabel = new JLabel("正在强制从远程仓库拉取最新内容进行覆盖...", JLabel.CENTER);
+        progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true); // 任务总量未知时为不确定进度模式（转圈动画）
+        progressBar.setStringPainted(true);
+        progressBar.setString("");
+
+        JButton cancelButton = new JButton("取消");
+        cancelButton.addActionListener(e -> cancelActiveProgress());
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonPanel.add(cancelButton);
 
-        panel.add(label, BorderLayout.CENTER);
-        panel.add(progressBar, BorderLayout.SOUTH);
-        panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+        panel.add(progressLabel, BorderLayout.NORTH);
+        panel.add(progressBar, BorderLayout.CENTER);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+        panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 10, 20));
 
         progressDialog.add(panel);
-        progressDialog.setSize(300, 100);
+        progressDialog.setSize(360, 160);
         progressDialog.setLocationRelativeTo(this); // 居中显示
     }
 
+    /**
+     * 为一次同步创建进度对象，并把进度对话框重置为该同步的初始状态（在界面线程中调用）
+     */
+    private SyncProgress beginProgress(String operation, String message) {
+        SyncProgress progress = new SyncProgress(operation, (task, completed, total) ->
+                SwingUtilities.invokeLater(() -> showProgress(task, completed, total)));
+        activeProgress = progress;
+        progressLabel.setText(message);
+        progressBar.setIndeterminate(true);
+        progressBar.setString("");
+        return progress;
+    }
+
+    private void showProgress(String task, int completed, int total) {
+        if (activeProgress == null || activeProgress.isCancelled()) {
+            return;
+        }
+        if (total > 0) {
+            progressBar.setIndeterminate(false);
+            progressBar.setMaximum(total);
+            progressBar.setValue(Math.min(completed, total));
+            progressBar.setString(task + " " + completed + "/" + total);
+        } else {
+            progressBar.setIndeterminate(true);
+            progressBar.setString(task + (completed > 0 ? " " + completed : ""));
+        }
+    }
+
+    private void cancelActiveProgress() {
+        SyncProgress progress = activeProgress;
+        if (progress != null && !progress.isCancelled()) {
+            progress.cancel();
+            progressLabel.setText("正在取消，等待当前网络操作中止...");
+        }
+    }
+
     private void setupWindow() {
         setTitle(AppConfig.getProperty("app.title", "Bangumi Menu 系统"));
         setSize(1200, 800); // 固定窗口大小
@@ -0,0 +1,224 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.IsoFields;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 观看历史统计
+ * 维护物化的汇总值：每周和每月的观看数、观看时的平均票数、各提议人的提议被观看的比例、从提议到观看的平均时长。
+ * 每个条目对汇总值的贡献单独记录，条目修改时先减去旧贡献再加上新贡献，删除时减去贡献，
+ * 因此每次修改的代价与目录大小无关，统计面板直接读取汇总值而不必遍历目录
+ */
+public class CatalogAnalytics {
+
+    // 活动目录的统计，切换目录时换入该目录保留的实例；全局变更流只更新当前实例
+    private static volatile CatalogAnalytics instance = new CatalogAnalytics(null);
+
+    static {
+        ChangeFeed.getInstance().addListener(change -> instance.onChange(change));
+    }
+
+    // 单个条目对汇总值的贡献
+    private static final class Contribution {
+        final String proposer;
+        final boolean watched;
+        final int votes;
+        final YearMonth month;
+        final String week;
+        // 从提议到观看的秒数，缺少任一时间时为-1
+        final long leadSeconds;
+
+        Contribution(Bangumi bangumi) {
+            proposer = bangumi.getProposer() != null && !bangumi.getProposer().isEmpty() ? bangumi.getProposer() : "未知";
+            watched = bangumi.isWatched();
+            votes = bangumi.getVotes();
+            LocalDateTime watchTime = watched ? bangumi.getWatchTime() : null;
+            month = watchTime != null ? YearMonth.from(watchTime) : null;
+            week = watchTime != null ? weekOf(watchTime) : null;
+            LocalDateTime proposeTime = bangumi.getProposeTime();
+            leadSeconds = watchTime != null && proposeTime != null && !watchTime.isBefore(proposeTime)
+                    ? Duration.between(proposeTime, watchTime).getSeconds() : -1;
+        }
+    }
+
+    private final Map<String, Contribution> contributions = new HashMap<>();
+    private final TreeMap<YearMonth, Integer> watchesByMonth = new TreeMap<>();
+    private final TreeMap<String, Integer> watchesByWeek = new TreeMap<>();
+    // 提议人 -> {提议数, 已观看数}
+    private final Map<String, int[]> byProposer = new HashMap<>();
+    private int watchedCount;
+    private long watchedVotes;
+    private int leadTimeCount;
+    private long leadTimeSeconds;
+
+    public CatalogAnalytics(ChangeFeed changeFeed) {
+        if (changeFeed != null) {
+            changeFeed.addListener(this::onChange);
+        }
+    }
+
+    /**
+     * 获取活动目录的统计
+     */
+    public static CatalogAnalytics getInstance() {
+        return instance;
+    }
+
+    /**
+     * 切换活动目录时换入该目录的统计（之前保留的实例，或新建后全量重建的实例）
+     */
+    public static void setInstance(CatalogAnalytics active) {
+        instance = active;
+    }
+
+    /**
+     * 全量重建（启动加载或切换目录之后）
+     */
+    public synchronized void rebuild(List<Bangumi> bangumis) {
+        contributions.clear();
+        watchesByMonth.clear();
+        watchesByWeek.clear();
+        byProposer.clear();
+        watchedCount = 0;
+        watchedVotes = 0;
+        leadTimeCount = 0;
+        leadTimeSeconds = 0;
+        if (bangumis != null) {
+            for (Bangumi bangumi : bangumis) {
+                update(bangumi);
+            }
+        }
+    }
+
+    /**
+     * 新增或修改条目：替换该条目的贡献
+     */
+    public synchronized void update(Bangumi bangumi) {
+        if (bangumi.getTitle() == null) {
+            return;
+        }
+        Contribution next = new Contribution(bangumi);
+        Contribution previous = contributions.put(bangumi.getTitle(), next);
+        if (previous != null) {
+            apply(previous, -1);
+        }
+        apply(next, 1);
+    }
+
+    /**
+     * 删除条目：减去该条目的贡献
+     */
+    public synchronized void remove(String title) {
+        Contribution previous = contributions.remove(title);
+        if (previous != null) {
+            apply(previous, -1);
+        }
+    }
+
+    /**
+     * 每月观看数，按月份排列
+     */
+    public synchronized Map<YearMonth, Integer> getWatchesByMonth() {
+        return new LinkedHashMap<>(watchesByMonth);
+    }
+
+    /**
+     * 每周观看数，按ISO周（如2024-W05）排列
+     */
+    public synchronized Map<String, Integer> getWatchesByWeek() {
+        return new LinkedHashMap<>(watchesByWeek);
+    }
+
+    public synchronized int getWatchedCount() {
+        return watchedCount;
+    }
+
+    /**
+     * 已观看番剧的平均票数（观看后不再投票，即观看时的票数）
+     */
+    public synchronized double getAverageVotesAtWatch() {
+        return watchedCount > 0 ? (double) watchedVotes / watchedCount : 0;
+    }
+
+    /**
+     * 各提议人的提议被观看的比例，按提议数降序
+     * @return 提议人 -> {提议数, 已观看数}
+     */
+    public synchronized Map<String, int[]> getProposerStats() {
+        Map<String, int[]> result = new LinkedHashMap<>();
+        byProposer.entrySet().stream()
+                .sorted((a, b) -> Integer.compare(b.getValue()[0], a.getValue()[0]))
+                .forEach(entry -> result.put(entry.getKey(), entry.getValue().clone()));
+        return result;
+    }
+
+    /**
+     * 从提议到观看的平均天数，只统计同时有提议时间和观看时间的条目；没有这样的条目时返回-1
+     */
+    public synchronized double getAverageDaysToWatch() {
+        return leadTimeCount > 0 ? leadTimeSeconds / (double) leadTimeCount / 86400 : -1;
+    }
+
+    /**
+     * 参与提议到观看时长统计的条目数
+     */
+    public synchronized int getLeadTimeCount() {
+        return leadTimeCount;
+    }
+
+    /**
+     * 统计信息摘要
+     */
+    public synchronized String getStats() {
+        return String.format("观看统计: %d 部已观看, 观看时平均 %.1f 票, %d 位提议人, 提议到观看平均 %s",
+                watchedCount, getAverageVotesAtWatch(), byProposer.size(),
+                leadTimeCount > 0 ? String.format("%.1f 天", getAverageDaysToWatch()) : "无数据");
+    }
+
+    // 按sign（1或-1）加上或减去一个条目的贡献
+    private void apply(Contribution contribution, int sign) {
+        int[] proposer = byProposer.computeIfAbsent(contribution.proposer, key -> new int[2]);
+        proposer[0] += sign;
+        if (contribution.watched) {
+            proposer[1] += sign;
+            watchedCount += sign;
+            watchedVotes += (long) sign * contribution.votes;
+            if (contribution.month != null) {
+                adjust(watchesByMonth, contribution.month, sign);
+                adjust(watchesByWeek, contribution.week, sign);
+            }
+            if (contribution.leadSeconds >= 0) {
+                leadTimeCount += sign;
+                leadTimeSeconds += sign * contribution.leadSeconds;
+            }
+        }
+        if (proposer[0] == 0) {
+            byProposer.remove(contribution.proposer);
+        }
+    }
+
+    private static <K> void adjust(Map<K, Integer> counts, K key, int delta) {
+        counts.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    private static String weekOf(LocalDateTime time) {
+        return String.format("%d-W%02d", time.get(IsoFields.WEEK_BASED_YEAR), time.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+    }
+
+    private void onChange(ChangeFeed.Change change) {
+        if (change.getType() == ChangeFeed.ChangeType.REMOVED) {
+            remove(change.getTitle());
+        } else {
+            update(change.getEntry());
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 番剧目录的逐条差异比较
+ * 按番剧名匹配新旧两份列表，只把真正新增、修改、删除的条目应用到内存列表并发布到变更流，
+ * 内容未变化的条目保留原有对象，派生视图（快照、排行榜）只做增量更新
+ */
+public final class CatalogDiff {
+
+    /**
+     * 差异统计
+     */
+    public static final class Result {
+        private final int added;
+        private final int updated;
+        private final int removed;
+
+        private Result(int added, int updated, int removed) {
+            this.added = added;
+            this.updated = updated;
+            this.removed = removed;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public boolean isEmpty() {
+            return added == 0 && updated == 0 && removed == 0;
+        }
+
+        @Override
+        public String toString() {
+            return "新增 " + added + " 条, 修改 " + updated + " 条, 删除 " + removed + " 条";
+        }
+    }
+
+    /**
+     * 一次比较得到的变更集：新增、修改（含变化的字段）和删除的条目，以及新列表的顺序
+     * 可以在后台线程中基于快照计算，再在界面线程中应用到内存列表
+     */
+    public static final class ChangeSet {
+        private final List<Bangumi> added;
+        private final List<Bangumi> updated;
+        private final Map<String, Set<String>> changedFields;
+        private final List<String> removed;
+        private final List<String> order;
+        private final boolean reordered;
+
+        private ChangeSet(List<Bangumi> added, List<Bangumi> updated, Map<String, Set<String>> changedFields,
+                          List<String> removed, List<String> order, boolean reordered) {
+            this.added = added;
+            this.updated = updated;
+            this.changedFields = changedFields;
+            this.removed = removed;
+            this.order = order;
+            this.reordered = reordered;
+        }
+
+        public List<Bangumi> getAdded() {
+            return added;
+        }
+
+        public List<Bangumi> getUpdated() {
+            return updated;
+        }
+
+        /**
+         * 修改条目中发生变化的字段名（如watched、votes、description）
+         */
+        public Set<String> getChangedFields(String title) {
+            return changedFields.getOrDefault(title, Collections.<String>emptySet());
+        }
+
+        public List<String> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * 双方都存在的条目相对顺序是否发生变化，变化时列表的位置无法逐条调整
+         */
+        public boolean isReordered() {
+            return reordered;
+        }
+
+        /**
+         * 受影响的条目数
+         */
+        public int size() {
+            return added.size() + updated.size() + removed.size();
+        }
+
+        public boolean isEmpty() {
+            return size() == 0 && !reordered;
+        }
+
+        @Override
+        public String toString() {
+            return "新增 " + added.size() + " 条, 修改 " + updated.size() + " 条, 删除 " + removed.size() + " 条"
+                    + (reordered ? ", 顺序变化" : "");
+        }
+    }
+
+    private CatalogDiff() {
+    }
+
+    /**
+     * 将新读取的列表逐条合并到内存列表，合并后target的内容和顺序与fresh一致
+     * @param target 内存中的番剧列表（原地修改）
+     * @param fresh 新读取的番剧列表
+     * @param changeFeed 接收变更的变更流，为null时不发布
+     * @return 差异统计
+     */
+    public static Result apply(List<Bangumi> target, List<Bangumi> fresh, ChangeFeed changeFeed) {
+        return apply(target, diff(target, fresh), changeFeed);
+    }
+
+    /**
+     * 逐条比较新旧两份列表，不修改任何一方
+     * @param old 旧列表（内存列表或其快照）
+     * @param fresh 新读取的番剧列表
+     * @return 变更集
+     */
+    public static ChangeSet diff(List<Bangumi> old, List<Bangumi> fresh) {
+        Map<String, Bangumi> existing = new HashMap<>(old.size() * 2);
+        for (Bangumi bangumi : old) {
+            existing.put(bangumi.getTitle(), bangumi);
+        }
+
+        List<Bangumi> addedEntries = new ArrayList<>();
+        List<Bangumi> updatedEntries = new ArrayList<>();
+        Map<String, Set<String>> changedFields = new HashMap<>();
+        List<String> order = new ArrayList<>(fresh.size());
+        Set<String> freshTitles = new HashSet<>(fresh.size() * 2);
+        for (Bangumi bangumi : fresh) {
+            order.add(bangumi.getTitle());
+            freshTitles.add(bangumi.getTitle());
+            Bangumi previous = existing.get(bangumi.getTitle());
+            if (previous == null) {
+                addedEntries.add(bangumi);
+            } else if (!sameContent(previous, bangumi)) {
+                updatedEntries.add(bangumi);
+                changedFields.put(bangumi.getTitle(), changedFields(previous, bangumi));
+            }
+        }
+
+        // 双方共有的条目按旧列表的顺序逐个对照新列表的顺序
+        List<String> removedTitles = new ArrayList<>();
+        boolean reordered = false;
+        int cursor = 0;
+        for (Bangumi bangumi : old) {
+            String title = bangumi.getTitle();
+            if (!freshTitles.contains(title)) {
+                removedTitles.add(title);
+                continue;
+            }
+            while (cursor < order.size() && !existing.containsKey(order.get(cursor))) {
+                cursor++;
+            }
+            if (!reordered && (cursor >= order.size() || !order.get(cursor).equals(title))) {
+                reordered = true;
+            }
+            cursor++;
+        }
+        return new ChangeSet(addedEntries, updatedEntries, changedFields, removedTitles, order, reordered);
+    }
+
+    /**
+     * 将变更集应用到内存列表，内容未变化的条目保留原有对象，合并后target的顺序与新列表一致
+     * @param target 内存中的番剧列表（原地修改）
+     * @param changes 变更集
+     * @param changeFeed 接收变更的变更流，为null时不发布
+     * @return 差异统计
+     */
+    public static Result apply(List<Bangumi> target, ChangeSet changes, ChangeFeed changeFeed) {
+        if (changes.isEmpty()) {
+            return new Result(0, 0, 0);
+        }
+        Map<String, Bangumi> byTitle = new LinkedHashMap<>(target.size() * 2);
+        for (Bangumi bangumi : target) {
+            byTitle.put(bangumi.getTitle(), bangumi);
+        }
+        for (String title : changes.removed) {
+            byTitle.remove(title);
+        }
+        for (Bangumi bangumi : changes.updated) {
+            byTitle.put(bangumi.getTitle(), bangumi);
+        }
+        for (Bangumi bangumi : changes.added) {
+            byTitle.put(bangumi.getTitle(), bangumi);
+        }
+
+        List<Bangumi> merged = new ArrayList<>(byTitle.size());
+        for (String title : changes.order) {
+            Bangumi bangumi = byTitle.remove(title);
+            if (bangumi != null) {
+                merged.add(bangumi);
+            }
+        }
+        // 计算变更集之后才加入内存列表的条目保留在末尾
+        merged.addAll(byTitle.values());
+
+        target.clear();
+        target.addAll(merged);
+
+        if (changeFeed != null) {
+            for (Bangumi bangumi : changes.added) {
+                changeFeed.recordAdded(bangumi);
+            }
+            for (Bangumi bangumi : changes.updated) {
+                changeFeed.recordUpdated(bangumi);
+            }
+            for (String title : changes.removed) {
+                changeFeed.recordRemoved(title);
+            }
+        }
+        return new Result(changes.added.size(), changes.updated.size(), changes.removed.size());
+    }
+
+    /**
+     * 两个条目之间发生变化的持久化字段名
+     */
+    public static Set<String> changedFields(Bangumi a, Bangumi b) {
+        Set<String> fields = new LinkedHashSet<>();
+        if (a.isWatched() != b.isWatched()) {
+            fields.add("watched");
+        }
+        if (a.getVotes() != b.getVotes()) {
+            fields.add("votes");
+        }
+        if (!Objects.equals(a.getWriter(), b.getWriter())) {
+            fields.add("writer");
+        }
+        if (!Objects.equals(a.getOriginal(), b.getOriginal())) {
+            fields.add("original");
+        }
+        if (!Objects.equals(a.getDirector(), b.getDirector())) {
+            fields.add("director");
+        }
+        if (!Objects.equals(a.getProposer(), b.getProposer())) {
+            fields.add("proposer");
+        }
+        if (!Objects.equals(a.getWatchTime(), b.getWatchTime())) {
+            fields.add("watchTime");
+        }
+        if (!Objects.equals(a.getWatcher(), b.getWatcher())) {
+            fields.add("watcher");
+        }
+        if (!Objects.equals(a.getProposeTime(), b.getProposeTime())) {
+            fields.add("proposeTime");
+        }
+        if (!Objects.equals(a.getDescription(), b.getDescription())) {
+            fields.add("description");
+        }
+        return fields;
+    }
+
+    /**
+     * 比较两个条目的持久化内容；简介放在最后比较，延迟加载模式下只有其余字段都相同时才会读取磁盘
+     */
+    public static boolean sameContent(Bangumi a, Bangumi b) {
+        return Objects.equals(a.getTitle(), b.getTitle())
+                && a.isWatched() == b.isWatched()
+                && a.getVotes() == b.getVotes()
+                && Objects.equals(a.getWriter(), b.getWriter())
+                && Objects.equals(a.getOriginal(), b.getOriginal())
+                && Objects.equals(a.getDirector(), b.getDirector())
+                && Objects.equals(a.getProposer(), b.getProposer())
+                && Objects.equals(a.getWatchTime(), b.getWatchTime())
+                && Objects.equals(a.getWatcher(), b.getWatcher())
+                && Objects.equals(a.getProposeTime(), b.getProposeTime())
+                && Objects.equals(a.getDescription(), b.getDescription());
+    }
+}
@@ -0,0 +1,161 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 番剧目录的三方语义合并
+ * 两个实例基于同一版本（base）各自修改后，按番剧名逐条合并双方的修改：
+ * 只有本地修改过的字段采用本地的值，其余字段采用远程的值；
+ * 投票数按双方相对base的增量相加，想要观看人取并集，因此并发投票不会互相覆盖
+ */
+public final class CatalogMerge {
+
+    private CatalogMerge() {
+    }
+
+    /**
+     * 合并番剧列表，结果按远程列表的顺序排列，本地新增的条目追加在末尾
+     * @param base 双方共同的基础版本，不存在时为空列表
+     * @param ours 本地版本
+     * @param theirs 远程版本
+     * @return 合并后的列表
+     */
+    public static List<Bangumi> merge(List<Bangumi> base, List<Bangumi> ours, List<Bangumi> theirs) {
+        Map<String, Bangumi> baseByTitle = index(base);
+        Map<String, Bangumi> oursByTitle = index(ours);
+        Map<String, Bangumi> theirsByTitle = index(theirs);
+
+        List<Bangumi> merged = new ArrayList<>(Math.max(ours.size(), theirs.size()));
+        for (Bangumi their : theirs) {
+            Bangumi baseEntry = baseByTitle.get(their.getTitle());
+            Bangumi our = oursByTitle.get(their.getTitle());
+            if (our == null) {
+                // 本地删除了远程未修改的条目时保持删除，远程修改过则保留远程的修改
+                if (baseEntry == null || !CatalogDiff.sameContent(baseEntry, their)) {
+                    merged.add(their);
+                }
+            } else {
+                merged.add(mergeEntry(baseEntry, our, their));
+            }
+        }
+        for (Bangumi our : ours) {
+            if (theirsByTitle.containsKey(our.getTitle())) {
+                continue;
+            }
+            Bangumi baseEntry = baseByTitle.get(our.getTitle());
+            // 本地新增的条目，或远程删除但本地修改过的条目
+            if (baseEntry == null || !CatalogDiff.sameContent(baseEntry, our)) {
+                merged.add(our);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 合并按顺序记录的番剧名列表（分片索引），规则与番剧列表一致
+     */
+    public static List<String> mergeTitles(List<String> base, List<String> ours, List<String> theirs) {
+        Set<String> baseTitles = new LinkedHashSet<>(base);
+        Set<String> ourTitles = new LinkedHashSet<>(ours);
+        Set<String> merged = new LinkedHashSet<>();
+        for (String title : theirs) {
+            if (ourTitles.contains(title) || !baseTitles.contains(title)) {
+                merged.add(title);
+            }
+        }
+        for (String title : ours) {
+            if (!baseTitles.contains(title)) {
+                merged.add(title);
+            }
+        }
+        return new ArrayList<>(merged);
+    }
+
+    // 同一条目的字段级合并，base为null表示双方各自新增了同名条目
+    private static Bangumi mergeEntry(Bangumi base, Bangumi ours, Bangumi theirs) {
+        if (base != null && CatalogDiff.sameContent(base, ours)) {
+            return theirs;
+        }
+        if (CatalogDiff.sameContent(ours, theirs)) {
+            return theirs;
+        }
+        Bangumi merged = new Bangumi(theirs);
+        if (base != null) {
+            if (!Objects.equals(ours.getDescription(), base.getDescription())) {
+                merged.setDescription(ours.getDescription());
+            }
+            if (!Objects.equals(ours.getWriter(), base.getWriter())) {
+                merged.setWriter(ours.getWriter());
+            }
+            if (!Objects.equals(ours.getOriginal(), base.getOriginal())) {
+                merged.setOriginal(ours.getOriginal());
+            }
+            if (!Objects.equals(ours.getDirector(), base.getDirector())) {
+                merged.setDirector(ours.getDirector());
+            }
+            if (!Objects.equals(ours.getProposer(), base.getProposer())) {
+                merged.setProposer(ours.getProposer());
+            }
+            if (ours.isWatched() != base.isWatched()) {
+                merged.setWatched(ours.isWatched());
+            }
+            if (!Objects.equals(ours.getWatchTime(), base.getWatchTime())) {
+                merged.setWatchTime(ours.getWatchTime());
+            }
+            if (!Objects.equals(ours.getProposeTime(), base.getProposeTime())) {
+                merged.setProposeTime(ours.getProposeTime());
+            }
+        }
+        int baseVotes = base != null ? base.getVotes() : 0;
+        merged.setVotes(Math.max(0, theirs.getVotes() + ours.getVotes() - baseVotes));
+        merged.setWatcher(mergeWatchers(base != null ? base.getWatcher() : null, ours.getWatcher(), theirs.getWatcher()));
+        return merged;
+    }
+
+    // 想要观看人：远程的名单加上本地新增的人，去掉本地移除的人
+    private static String mergeWatchers(String base, String ours, String theirs) {
+        Set<String> baseNames = split(base);
+        Set<String> ourNames = split(ours);
+        Set<String> merged = new LinkedHashSet<>();
+        for (String name : split(theirs)) {
+            if (ourNames.contains(name) || !baseNames.contains(name)) {
+                merged.add(name);
+            }
+        }
+        for (String name : ourNames) {
+            if (!baseNames.contains(name)) {
+                merged.add(name);
+            }
+        }
+        return merged.isEmpty() && theirs == null ? null : String.join(",", merged);
+    }
+
+    private static Set<String> split(String watchers) {
+        Set<String> names = new LinkedHashSet<>();
+        if (watchers != null) {
+            for (String name : watchers.split(",")) {
+                name = name.trim();
+                if (!name.isEmpty()) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    private static Map<String, Bangumi> index(List<Bangumi> bangumis) {
+        Map<String, Bangumi> byTitle = new HashMap<>(bangumis.size() * 2);
+        for (Bangumi bangumi : bangumis) {
+            byTitle.put(bangumi.getTitle(), bangumi);
+        }
+        return byTitle;
+    }
+}
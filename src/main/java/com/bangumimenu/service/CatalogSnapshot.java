@@ -0,0 +1,277 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 番剧目录的不可变快照
+ * 条目按固定大小分块存放，修改时只复制受影响的分块，其余分块在新旧快照之间共享；
+ * 删除的条目先留下空槽位，空槽位较多时才整体压缩，番剧名索引（见 {@link TitleIndex}）随每批变更增量维护。
+ * 持有快照的读取方始终看到一致的视图，无需加锁。快照中的条目为内部副本，读取方不得修改
+ */
+public final class CatalogSnapshot extends AbstractList<Bangumi> {
+
+    private static final int CHUNK_SHIFT = 5;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final CatalogSnapshot EMPTY =
+            new CatalogSnapshot(new Bangumi[0][], 0, 0, new int[0], TitleIndex.EMPTY, 0L);
+
+    // 按槽位存放的条目，被删除的条目为null
+    private final Bangumi[][] chunks;
+    private final int slotCount;
+    private final int size;
+    // 每个分块之前的有效条目数，用于把列表下标换算为槽位
+    private final int[] liveBefore;
+    private final long version;
+    // 番剧名到槽位的索引，全量构建的快照在首次按名称查找时构建，之后随变更增量维护
+    private volatile TitleIndex titleIndex;
+    // 列式视图，全量构建的快照在首次扫描时构建，之后由没有删除的变更从上一个快照的视图派生
+    private volatile ColumnarCatalog columns;
+
+    private CatalogSnapshot(Bangumi[][] chunks, int slotCount, int size, int[] liveBefore,
+                            TitleIndex titleIndex, long version) {
+        this.chunks = chunks;
+        this.slotCount = slotCount;
+        this.size = size;
+        this.liveBefore = liveBefore;
+        this.titleIndex = titleIndex;
+        this.version = version;
+    }
+
+    /**
+     * 空快照
+     */
+    public static CatalogSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 由番剧列表构建完整快照（O(n)，仅在全量加载时使用）
+     */
+    public static CatalogSnapshot of(List<Bangumi> bangumis, long version) {
+        int n = bangumis != null ? bangumis.size() : 0;
+        Bangumi[] copies = new Bangumi[n];
+        for (int i = 0; i < n; i++) {
+            copies[i] = new Bangumi(bangumis.get(i));
+        }
+        return packed(copies, n, version);
+    }
+
+    // 由连续的条目构建没有空槽位的快照
+    private static CatalogSnapshot packed(Bangumi[] entries, int n, long version) {
+        Bangumi[][] chunks = new Bangumi[(n + CHUNK_MASK) >> CHUNK_SHIFT][];
+        int[] liveBefore = new int[chunks.length];
+        for (int c = 0; c < chunks.length; c++) {
+            int from = c << CHUNK_SHIFT;
+            chunks[c] = Arrays.copyOfRange(entries, from, Math.min(n, from + CHUNK_SIZE));
+            liveBefore[c] = from;
+        }
+        return new CatalogSnapshot(chunks, n, n, liveBefore, null, version);
+    }
+
+    @Override
+    public Bangumi get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (slotCount == size) {
+            return chunks[index >> CHUNK_SHIFT][index & CHUNK_MASK];
+        }
+        // 有空槽位时先按每块之前的有效条目数二分定位分块，再在块内跳过空槽位
+        int low = 0;
+        int high = liveBefore.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (liveBefore[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int remaining = index - liveBefore[low];
+        for (Bangumi bangumi : chunks[low]) {
+            if (bangumi != null && remaining-- == 0) {
+                return bangumi;
+            }
+        }
+        throw new IllegalStateException("快照分块计数不一致");
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 快照对应的目录版本号
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 内容相同、版本号不同的快照
+     */
+    CatalogSnapshot withVersion(long newVersion) {
+        CatalogSnapshot result = new CatalogSnapshot(chunks, slotCount, size, liveBefore, titleIndex, newVersion);
+        result.columns = columns;
+        return result;
+    }
+
+    /**
+     * 获取快照的列式视图，供筛选、排序、加权抽取等扫描使用
+     */
+    public ColumnarCatalog columns() {
+        ColumnarCatalog result = columns;
+        if (result == null) {
+            result = ColumnarCatalog.of(this);
+            columns = result;
+        }
+        return result;
+    }
+
+    /**
+     * 按番剧名查找条目
+     * @return 条目，不存在时返回null
+     */
+    public Bangumi findByTitle(String title) {
+        int slot = titleIndex().get(title);
+        return slot != -1 ? chunks[slot >> CHUNK_SHIFT][slot & CHUNK_MASK] : null;
+    }
+
+    /**
+     * 按番剧名查找下标
+     * @return 下标，不存在时返回-1
+     */
+    public int indexOfTitle(String title) {
+        int slot = titleIndex().get(title);
+        if (slot == -1) {
+            return -1;
+        }
+        int c = slot >> CHUNK_SHIFT;
+        int index = liveBefore[c];
+        Bangumi[] chunk = chunks[c];
+        for (int i = 0; i < (slot & CHUNK_MASK); i++) {
+            if (chunk[i] != null) {
+                index++;
+            }
+        }
+        return index;
+    }
+
+    private TitleIndex titleIndex() {
+        TitleIndex index = titleIndex;
+        if (index == null) {
+            // 同名条目以第一次出现的为准
+            index = TitleIndex.EMPTY;
+            for (int slot = slotCount - 1; slot >= 0; slot--) {
+                Bangumi bangumi = chunks[slot >> CHUNK_SHIFT][slot & CHUNK_MASK];
+                if (bangumi != null) {
+                    index = index.with(bangumi.getTitle(), slot);
+                }
+            }
+            titleIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * 按顺序应用一批变更，生成新快照：修改只复制受影响的分块，新增追加到末尾，删除留下空槽位，
+     * 番剧名索引随之增量更新；空槽位超过有效条目的四分之一时整体压缩一次
+     * @param changes 变更，按记录顺序
+     * @param newVersion 新快照的版本号
+     */
+    public CatalogSnapshot withChanges(List<ChangeFeed.Change> changes, long newVersion) {
+        if (changes == null || changes.isEmpty()) {
+            return withVersion(newVersion);
+        }
+        Bangumi[][] newChunks = Arrays.copyOf(chunks, chunks.length);
+        boolean[] copied = new boolean[newChunks.length];
+        int[] liveCounts = new int[newChunks.length];
+        for (int c = 0; c < liveCounts.length; c++) {
+            liveCounts[c] = (c + 1 < liveCounts.length ? liveBefore[c + 1] : size) - liveBefore[c];
+        }
+        int newSlotCount = slotCount;
+        int newSize = size;
+        TitleIndex index = titleIndex();
+        boolean removed = false;
+
+        for (ChangeFeed.Change change : changes) {
+            String title = change.getTitle();
+            int slot = index.get(title);
+            if (change.getType() == ChangeFeed.ChangeType.REMOVED) {
+                if (slot == -1) {
+                    continue;
+                }
+                removed = true;
+                int c = slot >> CHUNK_SHIFT;
+                if (!copied[c]) {
+                    newChunks[c] = newChunks[c].clone();
+                    copied[c] = true;
+                }
+                newChunks[c][slot & CHUNK_MASK] = null;
+                liveCounts[c]--;
+                newSize--;
+                index = index.without(title);
+            } else if (slot != -1) {
+                int c = slot >> CHUNK_SHIFT;
+                if (!copied[c]) {
+                    newChunks[c] = newChunks[c].clone();
+                    copied[c] = true;
+                }
+                newChunks[c][slot & CHUNK_MASK] = change.getEntry();
+            } else {
+                int c = newSlotCount >> CHUNK_SHIFT;
+                if (c == newChunks.length) {
+                    newChunks = Arrays.copyOf(newChunks, c + 1);
+                    newChunks[c] = new Bangumi[0];
+                    copied = Arrays.copyOf(copied, c + 1);
+                    liveCounts = Arrays.copyOf(liveCounts, c + 1);
+                }
+                Bangumi[] chunk = Arrays.copyOf(newChunks[c], (newSlotCount & CHUNK_MASK) + 1);
+                chunk[newSlotCount & CHUNK_MASK] = change.getEntry();
+                newChunks[c] = chunk;
+                copied[c] = true;
+                liveCounts[c]++;
+                index = index.with(title, newSlotCount);
+                newSlotCount++;
+                newSize++;
+            }
+        }
+
+        int[] newLiveBefore = new int[newChunks.length];
+        for (int c = 1; c < newLiveBefore.length; c++) {
+            newLiveBefore[c] = newLiveBefore[c - 1] + liveCounts[c - 1];
+        }
+        CatalogSnapshot result = new CatalogSnapshot(newChunks, newSlotCount, newSize, newLiveBefore, index, newVersion);
+        int holes = newSlotCount - newSize;
+        if (holes > CHUNK_SIZE && holes > newSize / 4) {
+            result = result.compacted();
+        }
+        // 没有删除时各条目的行号不变，列式视图只需改写变化的行；有删除时在下次扫描时重建
+        ColumnarCatalog previous = columns;
+        if (previous != null && !removed) {
+            result.columns = previous.withChanges(result, changes);
+        }
+        return result;
+    }
+
+    // 去掉空槽位重新分块，索引在下次查找时重建
+    private CatalogSnapshot compacted() {
+        Bangumi[] entries = new Bangumi[size];
+        int n = 0;
+        for (Bangumi[] chunk : chunks) {
+            for (Bangumi bangumi : chunk) {
+                if (bangumi != null) {
+                    entries[n++] = bangumi;
+                }
+            }
+        }
+        return packed(entries, n, version);
+    }
+}
@@ -0,0 +1,63 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 番剧目录快照发布器
+ * 每批修改完成后以写时复制的方式生成新的 {@link CatalogSnapshot} 并通过 AtomicReference 原子发布，
+ * 列表渲染、详情显示、随机抽取等读取方只需获取当前快照即可无锁读取
+ */
+public class CatalogStore {
+
+    private static final CatalogStore INSTANCE = new CatalogStore(ChangeFeed.getInstance());
+
+    private final AtomicReference<CatalogSnapshot> current = new AtomicReference<>(CatalogSnapshot.empty());
+
+    public CatalogStore(ChangeFeed changeFeed) {
+        if (changeFeed != null) {
+            // 每条（批）变更记录后立即发布新快照，批量操作只复制一次
+            changeFeed.addBatchListener(this::publishChanges);
+        }
+    }
+
+    /**
+     * 获取全局目录快照发布器
+     */
+    public static CatalogStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 获取当前快照，读取方在持有期间看到的内容不会变化
+     */
+    public CatalogSnapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * 全量发布（启动加载或从远程拉取之后）
+     */
+    public CatalogSnapshot publish(List<Bangumi> bangumis) {
+        CatalogSnapshot full = CatalogSnapshot.of(bangumis, 0L);
+        return current.updateAndGet(snapshot -> full.withVersion(snapshot.getVersion() + 1));
+    }
+
+    /**
+     * 重新发布之前保留的快照（切换回已加载的目录时），列式视图和番剧名索引随快照复用，版本号继续递增
+     * @param snapshot 该目录被切换出去时的快照
+     */
+    public CatalogSnapshot restore(CatalogSnapshot snapshot) {
+        return current.updateAndGet(previous -> snapshot.withVersion(previous.getVersion() + 1));
+    }
+
+    /**
+     * 按记录顺序发布一批变更，只复制受影响的分块
+     * @param changes 变更列表
+     */
+    public CatalogSnapshot publishChanges(List<ChangeFeed.Change> changes) {
+        return current.updateAndGet(snapshot -> snapshot.withChanges(changes, snapshot.getVersion() + 1));
+    }
+}
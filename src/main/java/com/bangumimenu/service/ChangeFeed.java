@@ -0,0 +1,185 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 番剧目录变更通知
+ * 每一次条目级别的变更在记录后立即同步推送给进程内的订阅者（快照、排行榜、统计等），
+ * 订阅者按条目增量更新自己的数据，而无需重新读取整个JSON文件；变更不保留日志，全量替换目录时由调用方直接重建订阅者
+ */
+public class ChangeFeed {
+
+    private static final ChangeFeed INSTANCE = new ChangeFeed();
+
+    // 一批变更超过该条数时，订阅者逐条更新不如全量重建
+    private static final int REBUILD_THRESHOLD = 1024;
+
+    /**
+     * 变更类型
+     */
+    public enum ChangeType {
+        ADDED, UPDATED, REMOVED
+    }
+
+    /**
+     * 单条变更记录，entry为变更后条目的副本（删除时为null）
+     */
+    public static class Change {
+        private final ChangeType type;
+        private final String title;
+        private final Bangumi entry;
+
+        private Change(ChangeType type, String title, Bangumi entry) {
+            this.type = type;
+            this.title = title;
+            this.entry = entry;
+        }
+
+        public ChangeType getType() {
+            return type;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public Bangumi getEntry() {
+            return entry != null ? new Bangumi(entry) : null;
+        }
+    }
+
+    private final List<Consumer<Change>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<List<Change>>> batchListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 获取全局变更通知
+     */
+    public static ChangeFeed getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 记录新增条目
+     */
+    public void recordAdded(Bangumi bangumi) {
+        record(ChangeType.ADDED, bangumi.getTitle(), bangumi);
+    }
+
+    /**
+     * 记录条目修改
+     */
+    public void recordUpdated(Bangumi bangumi) {
+        record(ChangeType.UPDATED, bangumi.getTitle(), bangumi);
+    }
+
+    /**
+     * 记录条目删除
+     */
+    public void recordRemoved(String title) {
+        record(ChangeType.REMOVED, title, null);
+    }
+
+    /**
+     * 一次记录一批修改和删除（批量操作），批量监听器只收到一次回调
+     * @param updated 修改后的条目
+     * @param removed 被删除的番剧名
+     * @return 本批变更，按记录顺序
+     */
+    public List<Change> recordBatch(Collection<Bangumi> updated, Collection<String> removed) {
+        return recordBatch(null, updated, removed);
+    }
+
+    /**
+     * 一次记录一批新增、修改和删除（批量导入等）
+     * @param added 新增的条目
+     * @param updated 修改后的条目
+     * @param removed 被删除的番剧名
+     * @return 本批变更，按记录顺序
+     */
+    public List<Change> recordBatch(Collection<Bangumi> added, Collection<Bangumi> updated, Collection<String> removed) {
+        List<Change> batch = new ArrayList<>();
+        if (added != null) {
+            for (Bangumi bangumi : added) {
+                batch.add(change(ChangeType.ADDED, bangumi.getTitle(), bangumi));
+            }
+        }
+        if (updated != null) {
+            for (Bangumi bangumi : updated) {
+                batch.add(change(ChangeType.UPDATED, bangumi.getTitle(), bangumi));
+            }
+        }
+        if (removed != null) {
+            for (String title : removed) {
+                batch.add(change(ChangeType.REMOVED, title, null));
+            }
+        }
+        if (!batch.isEmpty()) {
+            notifyListeners(batch);
+        }
+        return batch;
+    }
+
+    private void record(ChangeType type, String title, Bangumi bangumi) {
+        notifyListeners(Collections.singletonList(change(type, title, bangumi)));
+    }
+
+    private static Change change(ChangeType type, String title, Bangumi bangumi) {
+        return new Change(type, title, bangumi != null ? new Bangumi(bangumi) : null);
+    }
+
+    private void notifyListeners(List<Change> batch) {
+        for (Change change : batch) {
+            for (Consumer<Change> listener : listeners) {
+                try {
+                    listener.accept(change);
+                } catch (Exception e) {
+                    System.err.println("变更监听器执行失败: " + e.getMessage());
+                }
+            }
+        }
+        for (Consumer<List<Change>> listener : batchListeners) {
+            try {
+                listener.accept(batch);
+            } catch (Exception e) {
+                System.err.println("变更监听器执行失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 一批变更是否多到应当全量重建订阅者，而不是逐条推送（批量导入等）
+     * @param changes 本批变更的条目数
+     */
+    public static boolean shouldRebuild(int changes) {
+        return changes > REBUILD_THRESHOLD;
+    }
+
+    /**
+     * 订阅变更，变更记录后立即同步回调（推送模式）
+     */
+    public void addListener(Consumer<Change> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Change> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 按批订阅变更：单条记录的变更作为只含一条的批次回调，{@link #recordBatch} 的一批变更只回调一次
+     */
+    public void addBatchListener(Consumer<List<Change>> listener) {
+        batchListeners.add(listener);
+    }
+
+    public void removeBatchListener(Consumer<List<Change>> listener) {
+        batchListeners.remove(listener);
+    }
+}
@@ -0,0 +1,322 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 番剧目录的列式视图
+ * 票数、观看状态、观看时间分别存放在基本类型数组和位图中，提议人等字符串列使用字典编码，
+ * 筛选、求和、排序等操作可以直接用基本类型循环扫描，而不必逐个访问分散的Bangumi对象
+ */
+public final class ColumnarCatalog {
+
+    /**
+     * 没有观看时间时的占位值
+     */
+    public static final long NO_WATCH_TIME = Long.MIN_VALUE;
+
+    private final int size;
+    private final String[] titles;
+    private final int[] votes;
+    private final BitSet watched;
+    private final long[] watchEpochSeconds;
+    private final DictionaryColumn proposers;
+    private final DictionaryColumn writers;
+    private final DictionaryColumn originals;
+    private final DictionaryColumn directors;
+
+    /**
+     * 字典编码的字符串列
+     */
+    public static final class DictionaryColumn {
+        private final int[] codes;
+        private final String[] dictionary;
+        private final Map<String, Integer> index;
+
+        private DictionaryColumn(int[] codes, String[] dictionary, Map<String, Integer> index) {
+            this.codes = codes;
+            this.dictionary = dictionary;
+            this.index = index;
+        }
+
+        /**
+         * 第index行的编码
+         */
+        public int code(int index) {
+            return codes[index];
+        }
+
+        /**
+         * 编码对应的取值
+         */
+        public String value(int code) {
+            return dictionary[code];
+        }
+
+        /**
+         * 第index行的取值
+         */
+        public String valueAt(int index) {
+            return dictionary[codes[index]];
+        }
+
+        /**
+         * 取值对应的编码，不存在时返回-1
+         */
+        public int codeOf(String value) {
+            Integer code = index.get(value);
+            return code != null ? code : -1;
+        }
+
+        /**
+         * 不同取值的数量
+         */
+        public int cardinality() {
+            return dictionary.length;
+        }
+    }
+
+    private static final class DictionaryBuilder {
+        private final int[] codes;
+        private Map<String, Integer> index;
+        private String[] dictionary;
+        // 字典仍与派生来源的列共享，出现新取值时才复制
+        private boolean shared;
+
+        DictionaryBuilder(int size) {
+            codes = new int[size];
+            index = new HashMap<>();
+            dictionary = new String[8];
+        }
+
+        // 以已有的列为基础，只改写部分行
+        DictionaryBuilder(DictionaryColumn base, int size) {
+            codes = Arrays.copyOf(base.codes, size);
+            index = base.index;
+            dictionary = base.dictionary;
+            shared = true;
+        }
+
+        void set(int row, String value) {
+            Integer code = index.get(value);
+            if (code == null) {
+                if (shared) {
+                    index = new HashMap<>(index);
+                    dictionary = Arrays.copyOf(dictionary, Math.max(8, dictionary.length * 2));
+                    shared = false;
+                }
+                code = index.size();
+                index.put(value, code);
+                if (code == dictionary.length) {
+                    dictionary = Arrays.copyOf(dictionary, code * 2);
+                }
+                dictionary[code] = value;
+            }
+            codes[row] = code;
+        }
+
+        DictionaryColumn build() {
+            return new DictionaryColumn(codes, shared ? dictionary : Arrays.copyOf(dictionary, index.size()), index);
+        }
+    }
+
+    private ColumnarCatalog(int size, String[] titles, int[] votes, BitSet watched, long[] watchEpochSeconds,
+                            DictionaryColumn proposers, DictionaryColumn writers,
+                            DictionaryColumn originals, DictionaryColumn directors) {
+        this.size = size;
+        this.titles = titles;
+        this.votes = votes;
+        this.watched = watched;
+        this.watchEpochSeconds = watchEpochSeconds;
+        this.proposers = proposers;
+        this.writers = writers;
+        this.originals = originals;
+        this.directors = directors;
+    }
+
+    /**
+     * 由番剧列表构建列式视图
+     */
+    public static ColumnarCatalog of(List<Bangumi> bangumis) {
+        int n = bangumis.size();
+        String[] titles = new String[n];
+        int[] votes = new int[n];
+        BitSet watched = new BitSet(n);
+        long[] watchEpochSeconds = new long[n];
+        DictionaryBuilder proposers = new DictionaryBuilder(n);
+        DictionaryBuilder writers = new DictionaryBuilder(n);
+        DictionaryBuilder originals = new DictionaryBuilder(n);
+        DictionaryBuilder directors = new DictionaryBuilder(n);
+        for (int i = 0; i < n; i++) {
+            setRow(i, bangumis.get(i), titles, votes, watched, watchEpochSeconds, proposers, writers, originals, directors);
+        }
+        return new ColumnarCatalog(n, titles, votes, watched, watchEpochSeconds,
+                proposers.build(), writers.build(), originals.build(), directors.build());
+    }
+
+    /**
+     * 由上一个快照的列式视图加上变化的行派生新快照的列式视图：复制各列后只改写变化的行，不再逐个访问全部条目。
+     * 只适用于没有删除的变更（修改的条目行号不变，新增的条目追加在末尾）；
+     * 派生的字符串列的字典可能保留已不再出现的取值
+     * @param snapshot 应用变更后的快照
+     * @param changes 本批变更
+     */
+    ColumnarCatalog withChanges(CatalogSnapshot snapshot, List<ChangeFeed.Change> changes) {
+        int n = snapshot.size();
+        String[] newTitles = Arrays.copyOf(titles, n);
+        int[] newVotes = Arrays.copyOf(votes, n);
+        BitSet newWatched = (BitSet) watched.clone();
+        long[] newWatchEpochSeconds = Arrays.copyOf(watchEpochSeconds, n);
+        DictionaryBuilder newProposers = new DictionaryBuilder(proposers, n);
+        DictionaryBuilder newWriters = new DictionaryBuilder(writers, n);
+        DictionaryBuilder newOriginals = new DictionaryBuilder(originals, n);
+        DictionaryBuilder newDirectors = new DictionaryBuilder(directors, n);
+        for (ChangeFeed.Change change : changes) {
+            int row = snapshot.indexOfTitle(change.getTitle());
+            if (row != -1) {
+                setRow(row, snapshot.findByTitle(change.getTitle()), newTitles, newVotes, newWatched,
+                        newWatchEpochSeconds, newProposers, newWriters, newOriginals, newDirectors);
+            }
+        }
+        return new ColumnarCatalog(n, newTitles, newVotes, newWatched, newWatchEpochSeconds,
+                newProposers.build(), newWriters.build(), newOriginals.build(), newDirectors.build());
+    }
+
+    private static void setRow(int row, Bangumi bangumi, String[] titles, int[] votes, BitSet watched,
+                               long[] watchEpochSeconds, DictionaryBuilder proposers, DictionaryBuilder writers,
+                               DictionaryBuilder originals, DictionaryBuilder directors) {
+        titles[row] = bangumi.getTitle();
+        votes[row] = bangumi.getVotes();
+        watched.set(row, bangumi.isWatched());
+        LocalDateTime watchTime = bangumi.getWatchTime();
+        watchEpochSeconds[row] = watchTime != null ? watchTime.toEpochSecond(ZoneOffset.UTC) : NO_WATCH_TIME;
+        proposers.set(row, bangumi.getProposer());
+        writers.set(row, bangumi.getWriter());
+        originals.set(row, bangumi.getOriginal());
+        directors.set(row, bangumi.getDirector());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String title(int index) {
+        return titles[index];
+    }
+
+    public int votes(int index) {
+        return votes[index];
+    }
+
+    public boolean isWatched(int index) {
+        return watched.get(index);
+    }
+
+    /**
+     * 观看时间（UTC纪元秒），没有观看时间时返回 {@link #NO_WATCH_TIME}
+     */
+    public long watchEpochSecond(int index) {
+        return watchEpochSeconds[index];
+    }
+
+    /**
+     * 观看时间（精确到秒），没有观看时间时返回null
+     */
+    public LocalDateTime watchTime(int index) {
+        long seconds = watchEpochSeconds[index];
+        return seconds != NO_WATCH_TIME ? LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC) : null;
+    }
+
+    public DictionaryColumn proposers() {
+        return proposers;
+    }
+
+    public DictionaryColumn writers() {
+        return writers;
+    }
+
+    public DictionaryColumn originals() {
+        return originals;
+    }
+
+    public DictionaryColumn directors() {
+        return directors;
+    }
+
+    /**
+     * 已观看的数量
+     */
+    public int watchedCount() {
+        return watched.cardinality();
+    }
+
+    /**
+     * 下一个未观看条目的下标（从from开始），不存在时返回-1
+     */
+    public int nextUnwatched(int from) {
+        int index = watched.nextClearBit(from);
+        return index < size ? index : -1;
+    }
+
+    /**
+     * 下一个已观看条目的下标（从from开始），不存在时返回-1
+     */
+    public int nextWatched(int from) {
+        return watched.nextSetBit(from);
+    }
+
+    /**
+     * 第n个（从0开始）未观看条目的下标，即未观看列表第n行对应的条目，不存在时返回-1
+     */
+    public int nthUnwatched(int n) {
+        int index = n >= 0 ? nextUnwatched(0) : -1;
+        for (int i = 0; i < n && index != -1; i++) {
+            index = nextUnwatched(index + 1);
+        }
+        return index;
+    }
+
+    /**
+     * 第n个（从0开始）已观看条目的下标，不存在时返回-1
+     */
+    public int nthWatched(int n) {
+        int index = n >= 0 ? nextWatched(0) : -1;
+        for (int i = 0; i < n && index != -1; i++) {
+            index = nextWatched(index + 1);
+        }
+        return index;
+    }
+
+    /**
+     * 按权重（基础权重 + 票数 × 每票权重）从未观看的条目中随机抽取一个
+     * @return 抽中条目的下标，没有未观看条目时返回-1
+     */
+    public int pickWeightedUnwatched(Random random, int baseWeight, int weightPerVote) {
+        long totalWeight = 0;
+        for (int i = nextUnwatched(0); i != -1; i = nextUnwatched(i + 1)) {
+            totalWeight += baseWeight + (long) votes[i] * weightPerVote;
+        }
+        if (totalWeight <= 0) {
+            return -1;
+        }
+        long point = (long) (random.nextDouble() * totalWeight);
+        long accumulated = 0;
+        int last = -1;
+        for (int i = nextUnwatched(0); i != -1; i = nextUnwatched(i + 1)) {
+            accumulated += baseWeight + (long) votes[i] * weightPerVote;
+            if (point < accumulated) {
+                return i;
+            }
+            last = i;
+        }
+        return last;
+    }
+}
@@ -0,0 +1,166 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 番剧条目并发修改引擎
+ * 以番剧名的哈希值选择分段锁，不同番剧的修改互不竞争，同一番剧的修改串行执行不会丢失。
+ * 所有修改都在分段锁内执行，调用方不需要先读取版本再比较并设置重试。
+ * 票数在分段锁内累加：每个用户对同一番剧只能投一票，票数必须与想要观看人集合的检查和加入一起原子完成，
+ * 单独的无锁计数器无法保证这一点；锁只在同一分段的番剧之间竞争
+ */
+public class MutationEngine {
+
+    private static final int STRIPES = 64;
+    private static final MutationEngine INSTANCE = new MutationEngine(ChangeFeed.getInstance());
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final ChangeFeed changeFeed;
+
+    // 统计信息
+    private final LongAdder acceptedVotes = new LongAdder();
+    private final LongAdder duplicateVotes = new LongAdder();
+
+    public MutationEngine(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 获取全局修改引擎
+     */
+    public static MutationEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 为番剧投票（想要观看），同一用户对同一番剧只能投一次
+     * @param bangumi 番剧
+     * @param userName 投票用户
+     * @return 投票成功返回true，该用户已投过票返回false
+     */
+    public boolean vote(Bangumi bangumi, String userName) {
+        ReentrantLock lock = lockFor(bangumi.getTitle());
+        lock.lock();
+        try {
+            if (!bangumi.addWatcher(userName)) {
+                duplicateVotes.increment();
+                return false;
+            }
+            bangumi.setVotes(bangumi.getVotes() + 1);
+            acceptedVotes.increment();
+            publish(bangumi);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在条目的分段锁内修改番剧条目并发布
+     */
+    public void update(Bangumi bangumi, Consumer<Bangumi> mutation) {
+        ReentrantLock lock = lockFor(bangumi.getTitle());
+        lock.lock();
+        try {
+            mutation.accept(bangumi);
+            publish(bangumi);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 批量修改：在一次事务中对多个条目执行修改，全部完成后作为一批变更发布
+     * 涉及的分段锁按序号依次获取，与单条修改及其他批量修改之间不会死锁
+     * @param bangumis 要修改的条目
+     * @param mutation 修改操作，返回false表示该条目无需修改（不发布）
+     * @return 实际修改的条目
+     */
+    public List<Bangumi> updateAll(Collection<Bangumi> bangumis, Predicate<Bangumi> mutation) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (Bangumi bangumi : bangumis) {
+            stripes.add(stripeOf(bangumi.getTitle()));
+        }
+        List<Bangumi> changed = new ArrayList<>(bangumis.size());
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        try {
+            for (Bangumi bangumi : bangumis) {
+                if (mutation.test(bangumi)) {
+                    changed.add(bangumi);
+                }
+            }
+            if (changeFeed != null && !changed.isEmpty()) {
+                changeFeed.recordBatch(changed, null);
+            }
+        } finally {
+            for (int stripe : stripes.descendingSet()) {
+                locks[stripe].unlock();
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 批量投票，已投过票的条目跳过
+     * @return 投票成功的条目
+     */
+    public List<Bangumi> voteAll(Collection<Bangumi> bangumis, String userName) {
+        return updateAll(bangumis, bangumi -> {
+            if (!bangumi.addWatcher(userName)) {
+                duplicateVotes.increment();
+                return false;
+            }
+            bangumi.setVotes(bangumi.getVotes() + 1);
+            acceptedVotes.increment();
+            return true;
+        });
+    }
+
+    /**
+     * 批量删除后作为一批变更发布
+     * @param titles 已从目录中删除的番剧名
+     */
+    public void removeAll(Collection<String> titles) {
+        if (changeFeed != null && !titles.isEmpty()) {
+            changeFeed.recordBatch(null, titles);
+        }
+    }
+
+    public long getAcceptedVotes() {
+        return acceptedVotes.sum();
+    }
+
+    public long getDuplicateVotes() {
+        return duplicateVotes.sum();
+    }
+
+    private void publish(Bangumi bangumi) {
+        if (changeFeed != null) {
+            changeFeed.recordUpdated(bangumi);
+        }
+    }
+
+    private ReentrantLock lockFor(String title) {
+        return locks[stripeOf(title)];
+    }
+
+    private static int stripeOf(String title) {
+        int h = title != null ? title.hashCode() : 0;
+        h ^= (h >>> 16);
+        return h & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,191 @@
+package com.bangumimenu.service;
+
+import java.util.Objects;
+
+/**
+ * 不可变的番剧名索引（番剧名到槽位号），供 {@link CatalogSnapshot} 使用
+ * 以哈希前缀树（每层32路）存放，新增和删除只复制从根到叶的一条路径（O(log n)），
+ * 其余节点在新旧快照的索引之间共享
+ */
+final class TitleIndex {
+
+    static final TitleIndex EMPTY = new TitleIndex(null);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    // 叶子：哈希值相同的条目以链表相连
+    private static final class Entry {
+        final int hash;
+        final String title;
+        final int slot;
+        final Entry next;
+
+        Entry(int hash, String title, int slot, Entry next) {
+            this.hash = hash;
+            this.title = title;
+            this.slot = slot;
+            this.next = next;
+        }
+    }
+
+    // 内部节点：bitmap标记存在的分支，children按分支号顺序存放Entry或Node
+    private static final class Node {
+        final int bitmap;
+        final Object[] children;
+
+        Node(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+    }
+
+    private final Node root;
+
+    private TitleIndex(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * 查找番剧名对应的槽位号
+     * @return 槽位号，不存在时返回-1
+     */
+    int get(String title) {
+        int hash = hash(title);
+        Node node = root;
+        int shift = 0;
+        while (node != null) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return -1;
+            }
+            Object child = node.children[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (child instanceof Node) {
+                node = (Node) child;
+                shift += BITS;
+                continue;
+            }
+            for (Entry entry = (Entry) child; entry != null; entry = entry.next) {
+                if (entry.hash == hash && Objects.equals(entry.title, title)) {
+                    return entry.slot;
+                }
+            }
+            return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * 生成加入（或覆盖）一个番剧名后的新索引
+     */
+    TitleIndex with(String title, int slot) {
+        int hash = hash(title);
+        Entry entry = new Entry(hash, title, slot, null);
+        return new TitleIndex(root == null ? put(new Node(0, new Object[0]), 0, entry) : put(root, 0, entry));
+    }
+
+    /**
+     * 生成删除一个番剧名后的新索引，番剧名不存在时返回自身
+     */
+    TitleIndex without(String title) {
+        if (root == null) {
+            return this;
+        }
+        Node newRoot = remove(root, 0, hash(title), title);
+        return newRoot == root ? this : new TitleIndex(newRoot);
+    }
+
+    private static Node put(Node node, int shift, Entry entry) {
+        int bit = 1 << ((entry.hash >>> shift) & MASK);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            Object[] children = new Object[node.children.length + 1];
+            System.arraycopy(node.children, 0, children, 0, index);
+            children[index] = entry;
+            System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+            return new Node(node.bitmap | bit, children);
+        }
+        Object child = node.children[index];
+        Object replacement;
+        if (child instanceof Node) {
+            replacement = put((Node) child, shift + BITS, entry);
+        } else {
+            Entry existing = (Entry) child;
+            if (existing.hash == entry.hash) {
+                replacement = new Entry(entry.hash, entry.title, entry.slot, removeFromChain(existing, entry.title));
+            } else {
+                replacement = split(existing, entry, shift + BITS);
+            }
+        }
+        Object[] children = node.children.clone();
+        children[index] = replacement;
+        return new Node(node.bitmap, children);
+    }
+
+    // 两个哈希值不同的叶子落在同一分支时下移一层，直到分支号不同
+    private static Node split(Entry a, Entry b, int shift) {
+        int branchA = (a.hash >>> shift) & MASK;
+        int branchB = (b.hash >>> shift) & MASK;
+        if (branchA == branchB) {
+            return new Node(1 << branchA, new Object[]{split(a, b, shift + BITS)});
+        }
+        return new Node((1 << branchA) | (1 << branchB), branchA < branchB ? new Object[]{a, b} : new Object[]{b, a});
+    }
+
+    // 删除后节点为空时返回null
+    private static Node remove(Node node, int shift, int hash, String title) {
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        Object child = node.children[index];
+        Object replacement;
+        if (child instanceof Node) {
+            Node newChild = remove((Node) child, shift + BITS, hash, title);
+            if (newChild == child) {
+                return node;
+            }
+            replacement = newChild;
+        } else {
+            Entry chain = (Entry) child;
+            if (chain.hash != hash) {
+                return node;
+            }
+            Entry newChain = removeFromChain(chain, title);
+            if (newChain == chain) {
+                return node;
+            }
+            replacement = newChain;
+        }
+        if (replacement != null) {
+            Object[] children = node.children.clone();
+            children[index] = replacement;
+            return new Node(node.bitmap, children);
+        }
+        if (node.children.length == 1) {
+            return null;
+        }
+        Object[] children = new Object[node.children.length - 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        System.arraycopy(node.children, index + 1, children, index, children.length - index);
+        return new Node(node.bitmap & ~bit, children);
+    }
+
+    // 不含指定番剧名时返回原链表
+    private static Entry removeFromChain(Entry chain, String title) {
+        if (chain == null) {
+            return null;
+        }
+        if (Objects.equals(chain.title, title)) {
+            return chain.next;
+        }
+        Entry rest = removeFromChain(chain.next, title);
+        return rest == chain.next ? chain : new Entry(chain.hash, chain.title, chain.slot, rest);
+    }
+
+    private static int hash(String title) {
+        int h = title != null ? title.hashCode() : 0;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,275 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 未观看番剧的想看排行榜
+ * 以（票数降序，番剧名升序）为键维护一棵带子树大小的treap（顺序统计树），
+ * 投票、标记已观看、删除时增量更新，插入、删除、查询排名均为O(log n)，取前K名为O(log n + K)
+ */
+public class VoteLeaderboard {
+
+    // 活动目录的排行榜，切换目录时换入该目录保留的实例；全局变更流只更新当前实例
+    private static volatile VoteLeaderboard instance = new VoteLeaderboard(null);
+
+    static {
+        ChangeFeed.getInstance().addListener(change -> instance.onChange(change));
+    }
+
+    /**
+     * 排行榜条目
+     */
+    public static class Entry {
+        private final int rank;
+        private final String title;
+        private final int votes;
+
+        private Entry(int rank, String title, int votes) {
+            this.rank = rank;
+            this.title = title;
+            this.votes = votes;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public int getVotes() {
+            return votes;
+        }
+    }
+
+    private static final class Node {
+        final String title;
+        final int votes;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(String title, int votes) {
+            this.title = title;
+            this.votes = votes;
+            this.priority = ThreadLocalRandom.current().nextInt();
+        }
+    }
+
+    private Node root;
+    // 番剧名到当前票数，用于定位树中的旧节点
+    private final Map<String, Integer> votesByTitle = new HashMap<>();
+
+    public VoteLeaderboard(ChangeFeed changeFeed) {
+        if (changeFeed != null) {
+            changeFeed.addListener(this::onChange);
+        }
+    }
+
+    /**
+     * 获取活动目录的排行榜
+     */
+    public static VoteLeaderboard getInstance() {
+        return instance;
+    }
+
+    /**
+     * 切换活动目录时换入该目录的排行榜（之前保留的实例，或新建后全量重建的实例）
+     */
+    public static void setInstance(VoteLeaderboard active) {
+        instance = active;
+    }
+
+    /**
+     * 全量重建（启动加载或从远程拉取之后）
+     */
+    public synchronized void rebuild(List<Bangumi> bangumis) {
+        root = null;
+        votesByTitle.clear();
+        if (bangumis != null) {
+            for (Bangumi bangumi : bangumis) {
+                update(bangumi);
+            }
+        }
+    }
+
+    /**
+     * 更新单个番剧：未观看的按当前票数插入或调整位置，已观看的移出排行榜
+     */
+    public synchronized void update(Bangumi bangumi) {
+        String title = bangumi.getTitle();
+        if (title == null) {
+            return;
+        }
+        Integer oldVotes = votesByTitle.get(title);
+        if (!bangumi.isWatched() && oldVotes != null && oldVotes == bangumi.getVotes()) {
+            return;
+        }
+        if (oldVotes != null) {
+            root = delete(root, oldVotes, title);
+            votesByTitle.remove(title);
+        }
+        if (!bangumi.isWatched()) {
+            root = insert(root, new Node(title, bangumi.getVotes()));
+            votesByTitle.put(title, bangumi.getVotes());
+        }
+    }
+
+    /**
+     * 移除番剧
+     */
+    public synchronized void remove(String title) {
+        Integer oldVotes = votesByTitle.remove(title);
+        if (oldVotes != null) {
+            root = delete(root, oldVotes, title);
+        }
+    }
+
+    /**
+     * 获取前K名
+     */
+    public synchronized List<Entry> top(int k) {
+        List<Entry> result = new ArrayList<>(Math.min(k, size(root)));
+        collect(root, k, result);
+        return result;
+    }
+
+    /**
+     * 获取番剧的排名（从1开始）
+     * @return 排名，不在排行榜中（已观看或不存在）时返回-1
+     */
+    public synchronized int rankOf(String title) {
+        Integer votes = votesByTitle.get(title);
+        if (votes == null) {
+            return -1;
+        }
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = compare(votes, title, node);
+            if (cmp < 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                if (cmp == 0) {
+                    return rank;
+                }
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 排行榜中的番剧数量
+     */
+    public synchronized int size() {
+        return size(root);
+    }
+
+    private void onChange(ChangeFeed.Change change) {
+        if (change.getType() == ChangeFeed.ChangeType.REMOVED) {
+            remove(change.getTitle());
+        } else {
+            update(change.getEntry());
+        }
+    }
+
+    private void collect(Node node, int k, List<Entry> result) {
+        if (node == null || result.size() >= k) {
+            return;
+        }
+        collect(node.left, k, result);
+        if (result.size() < k) {
+            result.add(new Entry(result.size() + 1, node.title, node.votes));
+            collect(node.right, k, result);
+        }
+    }
+
+    // 票数高的排在前面，票数相同按番剧名排序
+    private static int compare(int votes, String title, Node node) {
+        if (votes != node.votes) {
+            return votes > node.votes ? -1 : 1;
+        }
+        return title.compareTo(node.title);
+    }
+
+    private static int size(Node node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static Node fix(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+        return node;
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.votes, added.title, node) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        return fix(node);
+    }
+
+    private static Node delete(Node node, int votes, String title) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(votes, title, node);
+        if (cmp < 0) {
+            node.left = delete(node.left, votes, title);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, votes, title);
+        } else {
+            return merge(node.left, node.right);
+        }
+        return fix(node);
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return fix(left);
+        }
+        right.left = merge(left, right.left);
+        return fix(right);
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = fix(node);
+        return fix(left);
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = fix(node);
+        return fix(right);
+    }
+}
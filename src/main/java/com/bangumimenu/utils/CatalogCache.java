@@ -0,0 +1,221 @@
+package com.bangumimenu.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 番剧目录读写缓存
+ * 按数据文件缓存已序列化的JSON内容及其gzip压缩结果，并以单调递增的目录版本号生成ETag，
+ * 仅在数据发生变更（写入新内容）时失效；读取直接返回缓存的字节，不经过反序列化和重新序列化。
+ * 写入时记录文件的修改时间和长度，内容未变化且文件未被改动的保存直接跳过写盘，
+ * 文件监视据此忽略本进程自己写入引起的变化事件。
+ * 缓存按当前目录（见 {@link Catalogs#current()}）的数据目录区分
+ */
+public class CatalogCache {
+
+    private static final AtomicLong catalogVersion = new AtomicLong();
+    private static final Map<String, Payload> payloads = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存的目录内容
+     */
+    public static class Payload {
+        private final long version;
+        private final byte[] json;
+        private final String etag;
+        private volatile byte[] gzip;
+        // 本进程写入文件后记录的修改时间和长度，未写入时为-1
+        private volatile long writtenModified = -1;
+        private volatile long writtenLength = -1;
+
+        private Payload(long version, byte[] json, byte[] gzip) {
+            this.version = version;
+            this.json = json;
+            this.gzip = gzip;
+            CRC32 crc = new CRC32();
+            crc.update(json, 0, json.length);
+            this.etag = "\"" + version + "-" + Long.toHexString(crc.getValue()) + "\"";
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * 获取gzip压缩后的内容，首次访问时压缩并缓存
+         */
+        public byte[] getGzip() {
+            byte[] result = gzip;
+            if (result == null) {
+                synchronized (this) {
+                    result = gzip;
+                    if (result == null) {
+                        result = compress(json);
+                        gzip = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        private boolean sameContent(byte[] other) {
+            return Arrays.equals(json, other);
+        }
+
+        private void markWritten(File file) {
+            writtenLength = file.length();
+            writtenModified = file.lastModified();
+        }
+
+        private boolean isWritten(File file) {
+            return writtenModified >= 0 && file.lastModified() == writtenModified && file.length() == writtenLength;
+        }
+    }
+
+    /**
+     * 获取当前目录版本号
+     */
+    public static long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    /**
+     * 获取数据文件的缓存内容
+     * @param fileName 文件名（如bangumi.json）
+     * @return 缓存内容，未缓存时返回null
+     */
+    public static Payload get(String fileName) {
+        return payloads.get(key(fileName));
+    }
+
+    /**
+     * 更新数据文件的缓存内容，仅当内容发生变化时递增目录版本号
+     * @param fileName 文件名
+     * @param json 序列化后的JSON内容
+     * @return 更新后的缓存内容
+     */
+    public static Payload put(String fileName, byte[] json) {
+        return put(fileName, json, null);
+    }
+
+    /**
+     * 更新数据文件的缓存内容，已知压缩结果（例如读取的是.gz文件）时一并缓存
+     * @param fileName 文件名
+     * @param json 序列化后的JSON内容
+     * @param gzip json的gzip压缩结果，未知时为null
+     * @return 更新后的缓存内容
+     */
+    public static Payload put(String fileName, byte[] json, byte[] gzip) {
+        return payloads.compute(key(fileName), (name, cached) -> {
+            if (cached != null && cached.sameContent(json)) {
+                return cached;
+            }
+            return new Payload(catalogVersion.incrementAndGet(), json, gzip);
+        });
+    }
+
+    /**
+     * 判断缓存内容是否与给定内容一致（用于跳过重复写入）
+     */
+    public static boolean isUnchanged(String fileName, byte[] json) {
+        Payload cached = payloads.get(key(fileName));
+        return cached != null && cached.sameContent(json);
+    }
+
+    /**
+     * 记录本进程刚写入的数据文件的修改时间和长度
+     * @param fileName 文件名
+     * @param file 写入的磁盘文件
+     */
+    public static void markWritten(String fileName, File file) {
+        Payload cached = payloads.get(key(fileName));
+        if (cached != null) {
+            cached.markWritten(file);
+        }
+    }
+
+    /**
+     * 判断磁盘文件是否仍是本进程写入缓存内容后的状态（修改时间和长度都与写入时一致）
+     * @param fileName 文件名
+     * @param file 磁盘文件
+     */
+    public static boolean isWritten(String fileName, File file) {
+        Payload cached = payloads.get(key(fileName));
+        return cached != null && cached.isWritten(file);
+    }
+
+    /**
+     * 条件请求判断：客户端持有的ETag（If-None-Match）与当前缓存一致时返回true，对应HTTP 304
+     * @param fileName 文件名
+     * @param ifNoneMatch 客户端提供的ETag，可以是逗号分隔的多个值或*
+     */
+    public static boolean isNotModified(String fileName, String ifNoneMatch) {
+        Payload cached = payloads.get(key(fileName));
+        if (cached == null || ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(cached.getEtag())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 使指定文件的缓存失效
+     */
+    public static void invalidate(String fileName) {
+        if (payloads.remove(key(fileName)) != null) {
+            catalogVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * 使当前目录所有数据文件的缓存失效（例如从远程拉取之后）
+     */
+    public static void invalidateAll() {
+        String prefix = key("");
+        if (payloads.keySet().removeIf(cacheKey -> cacheKey.startsWith(prefix))) {
+            catalogVersion.incrementAndGet();
+        }
+    }
+
+    // 缓存键：当前目录的数据目录加文件名，不同目录的同名文件互不影响
+    private static String key(String fileName) {
+        return UserDataSync.getUserDataDir() + "/" + fileName;
+    }
+
+    /**
+     * gzip压缩
+     */
+    public static byte[] compress(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(data);
+        } catch (IOException e) {
+            // 内存流不会抛出IO异常
+            throw new IllegalStateException("压缩目录内容失败", e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,278 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.entity.Bangumi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 番剧目录导出与统计报表
+ * 以 {@link JsonUtils#streamBangumiList} 逐条读取目录文件，边读边写出CSV、Markdown或JSON Lines；
+ * 报表在同一次遍历中累加按提议人、按观看月份和按想要观看人的统计，
+ * 内存只与提议人、月份、观看人的数量有关，与目录大小无关
+ */
+public class CatalogExport {
+
+    /**
+     * 导出格式
+     */
+    public enum Format {
+        CSV("csv"),
+        MARKDOWN("md"),
+        JSONL("jsonl"),
+        REPORT("md");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * 按名称或扩展名查找格式（如csv、md、markdown、jsonl、report），找不到时返回null
+         */
+        public static Format parse(String name) {
+            switch (name.toLowerCase()) {
+                case "csv":
+                    return CSV;
+                case "md":
+                case "markdown":
+                    return MARKDOWN;
+                case "jsonl":
+                case "ndjson":
+                    return JSONL;
+                case "report":
+                    return REPORT;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final String DATA_FILE = "bangumi.json";
+    // 报表中每个想要观看人列出的番剧数
+    private static final int TOP_WANTED_PER_WATCHER = 3;
+
+    private static final String[] COLUMNS = {
+            "title", "description", "writer", "original", "director", "proposer", "watched", "votes", "watchTime", "watcher",
+            "proposeTime"
+    };
+
+    private CatalogExport() {
+    }
+
+    /**
+     * 将当前目录导出为指定格式
+     * @param format 导出格式
+     * @param out 输出，由调用方关闭
+     * @return 导出的条目数
+     */
+    public static long export(Format format, Writer out) throws IOException {
+        long startedAt = System.nanoTime();
+        long count;
+        try {
+            switch (format) {
+                case CSV:
+                    out.write(String.join(",", COLUMNS));
+                    out.write("\r\n");
+                    count = JsonUtils.streamBangumiList(DATA_FILE, bangumi -> write(out, toCsvRow(bangumi)));
+                    break;
+                case MARKDOWN:
+                    out.write("| 番剧名 | 提议人 | 编剧 | 原作 | 导演 | 已观看 | 票数 | 观看时间 | 想要观看 |\n");
+                    out.write("|---|---|---|---|---|---|---|---|---|\n");
+                    count = JsonUtils.streamBangumiList(DATA_FILE, bangumi -> write(out, toMarkdownRow(bangumi)));
+                    break;
+                case JSONL:
+                    count = JsonUtils.streamBangumiList(DATA_FILE, bangumi -> {
+                        try {
+                            JsonUtils.writeJsonLine(bangumi, out);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    break;
+                default:
+                    Report report = new Report();
+                    count = JsonUtils.streamBangumiList(DATA_FILE, report::add);
+                    report.writeMarkdown(out);
+                    break;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+        System.out.println("已导出 " + count + " 条（" + format.name() + "），耗时 "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) + "ms");
+        return count;
+    }
+
+    /**
+     * 单次遍历的统计报表
+     */
+    public static final class Report {
+        // 提议人 -> {条目数, 票数}
+        private final Map<String, long[]> byProposer = new HashMap<>();
+        private final TreeMap<YearMonth, Long> watchedByMonth = new TreeMap<>();
+        // 想要观看人 -> 想看的未观看番剧中票数最高的几部（小顶堆）
+        private final Map<String, PriorityQueue<Bangumi>> wantedByWatcher = new HashMap<>();
+        private final Map<String, Long> wantedCounts = new HashMap<>();
+        private long entries;
+        private long watched;
+        private long votes;
+
+        /**
+         * 累加一个条目
+         */
+        public void add(Bangumi bangumi) {
+            entries++;
+            votes += bangumi.getVotes();
+            long[] proposer = byProposer.computeIfAbsent(orUnknown(bangumi.getProposer()), key -> new long[2]);
+            proposer[0]++;
+            proposer[1] += bangumi.getVotes();
+
+            if (bangumi.isWatched()) {
+                watched++;
+                if (bangumi.getWatchTime() != null) {
+                    watchedByMonth.merge(YearMonth.from(bangumi.getWatchTime()), 1L, Long::sum);
+                }
+                return;
+            }
+            String watchers = bangumi.getWatcher();
+            if (watchers == null || watchers.isEmpty()) {
+                return;
+            }
+            // 只保留标题和票数，避免堆中持有整个条目（简介等）
+            Bangumi summary = null;
+            for (String watcher : watchers.split(",")) {
+                watcher = watcher.trim();
+                if (watcher.isEmpty()) {
+                    continue;
+                }
+                if (summary == null) {
+                    summary = new Bangumi();
+                    summary.setTitle(bangumi.getTitle());
+                    summary.setVotes(bangumi.getVotes());
+                }
+                wantedCounts.merge(watcher, 1L, Long::sum);
+                PriorityQueue<Bangumi> top = wantedByWatcher.computeIfAbsent(watcher,
+                        key -> new PriorityQueue<>(TOP_WANTED_PER_WATCHER + 1, Comparator.comparingInt(Bangumi::getVotes)));
+                top.add(summary);
+                if (top.size() > TOP_WANTED_PER_WATCHER) {
+                    top.poll();
+                }
+            }
+        }
+
+        /**
+         * 以Markdown格式写出报表
+         */
+        public void writeMarkdown(Writer out) throws IOException {
+            out.write("# 番剧目录统计\n\n");
+            out.write("共 " + entries + " 部，已观看 " + watched + " 部，总票数 " + votes + "\n\n");
+
+            out.write("## 按提议人\n\n| 提议人 | 番剧数 | 票数 |\n|---|---|---|\n");
+            List<Map.Entry<String, long[]>> proposers = new ArrayList<>(byProposer.entrySet());
+            proposers.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+            for (Map.Entry<String, long[]> entry : proposers) {
+                out.write("| " + escapeMarkdown(entry.getKey()) + " | " + entry.getValue()[0] + " | " + entry.getValue()[1] + " |\n");
+            }
+
+            out.write("\n## 每月观看\n\n| 月份 | 观看数 |\n|---|---|\n");
+            for (Map.Entry<YearMonth, Long> entry : watchedByMonth.entrySet()) {
+                out.write("| " + entry.getKey() + " | " + entry.getValue() + " |\n");
+            }
+
+            out.write("\n## 想要观看人\n\n| 想要观看人 | 想看数 | 票数最高的想看番剧 |\n|---|---|---|\n");
+            List<Map.Entry<String, Long>> watchers = new ArrayList<>(wantedCounts.entrySet());
+            watchers.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+            for (Map.Entry<String, Long> entry : watchers) {
+                List<Bangumi> top = new ArrayList<>(wantedByWatcher.get(entry.getKey()));
+                top.sort((a, b) -> Integer.compare(b.getVotes(), a.getVotes()));
+                StringBuilder titles = new StringBuilder();
+                for (Bangumi bangumi : top) {
+                    if (titles.length() > 0) {
+                        titles.append("、");
+                    }
+                    titles.append(escapeMarkdown(bangumi.getTitle())).append("（").append(bangumi.getVotes()).append("票）");
+                }
+                out.write("| " + escapeMarkdown(entry.getKey()) + " | " + entry.getValue() + " | " + titles + " |\n");
+            }
+        }
+    }
+
+    private static void write(Writer out, String line) {
+        try {
+            out.write(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String toCsvRow(Bangumi bangumi) {
+        String[] values = {
+                bangumi.getTitle(), bangumi.getDescription(), bangumi.getWriter(), bangumi.getOriginal(),
+                bangumi.getDirector(), bangumi.getProposer(), String.valueOf(bangumi.isWatched()),
+                String.valueOf(bangumi.getVotes()),
+                bangumi.getWatchTime() != null ? JsonUtils.formatDateTime(bangumi.getWatchTime()) : null,
+                bangumi.getWatcher(),
+                bangumi.getProposeTime() != null ? JsonUtils.formatDateTime(bangumi.getProposeTime()) : null
+        };
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                row.append(',');
+            }
+            row.append(escapeCsv(values[i]));
+        }
+        return row.append("\r\n").toString();
+    }
+
+    private static String toMarkdownRow(Bangumi bangumi) {
+        return "| " + escapeMarkdown(bangumi.getTitle())
+                + " | " + escapeMarkdown(bangumi.getProposer())
+                + " | " + escapeMarkdown(bangumi.getWriter())
+                + " | " + escapeMarkdown(bangumi.getOriginal())
+                + " | " + escapeMarkdown(bangumi.getDirector())
+                + " | " + (bangumi.isWatched() ? "是" : "否")
+                + " | " + bangumi.getVotes()
+                + " | " + (bangumi.getWatchTime() != null ? JsonUtils.formatDateTime(bangumi.getWatchTime()) : "")
+                + " | " + escapeMarkdown(bangumi.getWatcher())
+                + " |\n";
+    }
+
+    // 含逗号、引号或换行的值用双引号包裹，值中的双引号写成两个（与CatalogImport的解析规则一致）
+    private static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String escapeMarkdown(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("|", "\\|").replace("\r", "").replace("\n", "<br>");
+    }
+
+    private static String orUnknown(String value) {
+        return value == null || value.isEmpty() ? "未知" : value;
+    }
+}
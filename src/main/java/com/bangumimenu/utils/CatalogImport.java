@@ -0,0 +1,510 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.config.AppConfig;
+import com.bangumimenu.entity.Bangumi;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 外部番剧目录的批量导入
+ * 以流水线方式读取JSON Lines（每行一个对象）或CSV（首行为表头）格式的大型目录文件：
+ * 读取线程按批把原始行放入有界队列，队列满时读取线程阻塞等待（背压），内存中只保留有限的批次；
+ * 多个工作线程并行解析和规范化，合并阶段按原始顺序逐批与番剧名索引比对去重后收集新条目。
+ * 导入结果由调用方一次性加入目录、写入文件并提交
+ */
+public class CatalogImport {
+
+    /**
+     * 导入结果
+     */
+    public static final class Result {
+        private final List<Bangumi> entries;
+        private final long lines;
+        private final long duplicates;
+        private final long invalid;
+        private final long elapsedNanos;
+        private final boolean cancelled;
+
+        private Result(List<Bangumi> entries, long lines, long duplicates, long invalid, long elapsedNanos, boolean cancelled) {
+            this.entries = entries;
+            this.lines = lines;
+            this.duplicates = duplicates;
+            this.invalid = invalid;
+            this.elapsedNanos = elapsedNanos;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * 去重后的新条目，按文件中的顺序
+         */
+        public List<Bangumi> getEntries() {
+            return entries;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getInvalid() {
+            return invalid;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 吞吐量（每秒处理的行数）
+         */
+        public double getEntriesPerSecond() {
+            return elapsedNanos > 0 ? lines * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("读取 %d 行, 新增 %d 条, 重复 %d 条, 无效 %d 条, 耗时 %dms, %.0f 条/秒%s",
+                    lines, entries.size(), duplicates, invalid, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    getEntriesPerSecond(), cancelled ? "（已取消）" : "");
+        }
+    }
+
+    // 一批原始行，seq为批次序号，合并阶段据此恢复原始顺序
+    private static final class Batch {
+        final long seq;
+        final List<String> lines;
+
+        Batch(long seq, List<String> lines) {
+            this.seq = seq;
+            this.lines = lines;
+        }
+    }
+
+    // 一批解析结果
+    private static final class Parsed {
+        final long seq;
+        final List<Bangumi> entries;
+        final int invalid;
+
+        Parsed(long seq, List<Bangumi> entries, int invalid) {
+            this.seq = seq;
+            this.entries = entries;
+            this.invalid = invalid;
+        }
+    }
+
+    private static final Batch END = new Batch(-1, null);
+
+    // 外部目录中的时间：yyyy-MM-dd，可带 HH:mm 或 HH:mm:ss（日期与时间之间为空格或T），缺少的时间部分取0
+    private static final DateTimeFormatter DATE_TIME = new DateTimeFormatterBuilder()
+            .appendPattern("uuuu-MM-dd")
+            .optionalStart()
+            .optionalStart().appendLiteral(' ').optionalEnd()
+            .optionalStart().appendLiteral('T').optionalEnd()
+            .appendPattern("HH:mm")
+            .optionalStart().appendPattern(":ss").optionalEnd()
+            .optionalEnd()
+            .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+            .parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0)
+            .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
+            .toFormatter();
+
+    // 队列满时等待的间隔，每次等待后检查工作线程是否已失败
+    private static final long OFFER_WAIT_MILLIS = 100;
+
+    // 外部目录中的字段名（如Bangumi离线数据的name_cn、summary）对应的条目字段，按优先级排列
+    private static final Map<String, String[]> FIELD_ALIASES = new HashMap<>();
+
+    static {
+        FIELD_ALIASES.put("title", new String[]{"title", "name_cn", "name", "番剧名"});
+        FIELD_ALIASES.put("description", new String[]{"description", "summary", "简介"});
+        FIELD_ALIASES.put("writer", new String[]{"writer", "编剧"});
+        FIELD_ALIASES.put("original", new String[]{"original", "原作"});
+        FIELD_ALIASES.put("director", new String[]{"director", "导演"});
+        FIELD_ALIASES.put("proposer", new String[]{"proposer", "提议人"});
+        FIELD_ALIASES.put("watched", new String[]{"watched", "已观看"});
+        FIELD_ALIASES.put("votes", new String[]{"votes", "票数"});
+        FIELD_ALIASES.put("watchTime", new String[]{"watchTime", "观看时间"});
+        FIELD_ALIASES.put("watcher", new String[]{"watcher", "观看人"});
+        FIELD_ALIASES.put("proposeTime", new String[]{"proposeTime", "提议时间"});
+    }
+
+    private CatalogImport() {
+    }
+
+    /**
+     * 导入目录文件，文件名以.csv（或.csv.gz）结尾时按CSV解析，否则按JSON Lines解析
+     * @param file 目录文件，以.gz结尾时按gzip解压
+     * @param existingTitles 目录中已有的番剧名，同名条目跳过
+     * @param defaultProposer 文件中没有提议人时使用的提议人
+     * @param monitor 进度监视器（如 {@link SyncProgress}），可以为null
+     * @return 导入结果
+     * @throws IOException 读取文件失败
+     * @throws IllegalArgumentException CSV表头中没有番剧名列
+     */
+    public static Result importFile(File file, Collection<String> existingTitles, String defaultProposer,
+                                    ProgressMonitor monitor) throws IOException {
+        String name = file.getName().toLowerCase();
+        boolean gzip = name.endsWith(".gz");
+        boolean csv = (gzip ? name.substring(0, name.length() - 3) : name).endsWith(".csv");
+        try (InputStream in = gzip ? new GZIPInputStream(new FileInputStream(file), 65536) : new FileInputStream(file);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 65536)) {
+            return run(reader, csv, existingTitles, defaultProposer, monitor != null ? monitor : NullProgressMonitor.INSTANCE);
+        }
+    }
+
+    private static Result run(BufferedReader reader, boolean csv, Collection<String> existingTitles,
+                              String defaultProposer, ProgressMonitor monitor) throws IOException {
+        long startedAt = System.nanoTime();
+        int threads = AppConfig.getIntProperty("import.threads", 0);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        int batchSize = Math.max(1, AppConfig.getIntProperty("import.batch.size", 500));
+        int queueBatches = Math.max(1, AppConfig.getIntProperty("import.queue.batches", threads * 2));
+
+        Map<String, Integer> columns = null;
+        if (csv) {
+            String header = reader.readLine();
+            if (header == null) {
+                return new Result(new ArrayList<>(), 0, 0, 0, System.nanoTime() - startedAt, false);
+            }
+            columns = headerColumns(parseCsvLine(stripBom(header)));
+        }
+        Map<String, Integer> csvColumns = columns;
+
+        // 有界队列：解析跟不上读取时读取线程等待
+        BlockingQueue<Batch> input = new ArrayBlockingQueue<>(queueBatches);
+        BlockingQueue<Parsed> output = new ArrayBlockingQueue<>(queueBatches);
+        ExecutorService workers = Executors.newFixedThreadPool(threads + 1, runnable -> {
+            Thread thread = new Thread(runnable, "catalog-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> parsers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            parsers.add(workers.submit(() -> {
+                while (true) {
+                    Batch batch = input.take();
+                    if (batch == END) {
+                        input.put(END); // 让其他工作线程也能结束
+                        return null;
+                    }
+                    output.put(parse(batch, csvColumns, defaultProposer));
+                }
+            }));
+        }
+
+        // 合并阶段：按批次序号恢复文件顺序，与番剧名索引比对去重
+        long[] counters = new long[2]; // 重复数，无效数
+        List<Bangumi> accepted = new ArrayList<>();
+        long[] batchCount = {Long.MAX_VALUE};
+        Future<?> merger = workers.submit(() -> {
+            Set<String> index = new HashSet<>(existingTitles);
+            Map<Long, Parsed> pending = new HashMap<>();
+            long next = 0;
+            while (true) {
+                synchronized (batchCount) {
+                    if (next >= batchCount[0]) {
+                        return null;
+                    }
+                }
+                Parsed parsed = output.poll(100, TimeUnit.MILLISECONDS);
+                if (parsed == null) {
+                    continue;
+                }
+                pending.put(parsed.seq, parsed);
+                for (Parsed ready = pending.remove(next); ready != null; ready = pending.remove(next)) {
+                    counters[1] += ready.invalid;
+                    for (Bangumi bangumi : ready.entries) {
+                        if (index.add(bangumi.getTitle())) {
+                            accepted.add(bangumi);
+                        } else {
+                            counters[0]++;
+                        }
+                    }
+                    next++;
+                }
+            }
+        });
+
+        List<Future<?>> stages = new ArrayList<>(parsers);
+        stages.add(merger);
+
+        monitor.beginTask("导入条目", ProgressMonitor.UNKNOWN);
+        long lines = 0;
+        long seq = 0;
+        boolean cancelled = false;
+        try {
+            List<String> lineBatch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                if (csv) {
+                    // 引号内的换行属于同一条记录
+                    while (hasOpenQuote(line)) {
+                        String continuation = reader.readLine();
+                        if (continuation == null) {
+                            break;
+                        }
+                        line = line + "\n" + continuation;
+                    }
+                }
+                lineBatch.add(lines == 0 && !csv ? stripBom(line) : line);
+                lines++;
+                if (lineBatch.size() == batchSize) {
+                    if (monitor.isCancelled()) {
+                        cancelled = true;
+                        break;
+                    }
+                    offer(input, new Batch(seq++, lineBatch), stages);
+                    monitor.update(lineBatch.size());
+                    lineBatch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!cancelled && !lineBatch.isEmpty()) {
+                offer(input, new Batch(seq++, lineBatch), stages);
+                monitor.update(lineBatch.size());
+            }
+            offer(input, END, stages);
+            synchronized (batchCount) {
+                batchCount[0] = seq;
+            }
+            for (Future<?> parser : parsers) {
+                parser.get();
+            }
+            merger.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("导入被中断", e);
+        } catch (ExecutionException e) {
+            throw new IOException("导入失败: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            workers.shutdownNow();
+            monitor.endTask();
+        }
+
+        Result result = new Result(cancelled ? new ArrayList<>() : accepted, lines, counters[0], counters[1],
+                System.nanoTime() - startedAt, cancelled);
+        System.out.println("目录导入: " + result);
+        return result;
+    }
+
+    /**
+     * 把一批放入有界队列，队列满时限时等待；等待期间某个工作线程已异常结束时抛出其异常，
+     * 读取线程不会因为没有线程再取走批次而永远阻塞
+     */
+    private static <T> void offer(BlockingQueue<T> queue, T item, List<Future<?>> stages)
+            throws InterruptedException, ExecutionException {
+        while (!queue.offer(item, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+            for (Future<?> stage : stages) {
+                if (stage.isDone()) {
+                    stage.get();
+                }
+            }
+        }
+    }
+
+    // 解析并规范化一批行，无法解析或没有番剧名的行计为无效
+    private static Parsed parse(Batch batch, Map<String, Integer> csvColumns, String defaultProposer) {
+        List<Bangumi> entries = new ArrayList<>(batch.lines.size());
+        int invalid = 0;
+        for (String line : batch.lines) {
+            Map<String, String> fields;
+            try {
+                fields = csvColumns != null ? csvFields(line, csvColumns) : jsonFields(line);
+            } catch (RuntimeException e) {
+                // JSON格式错误、行内容不是对象等，单行错误不影响整批
+                invalid++;
+                continue;
+            }
+            Bangumi bangumi = normalize(fields, defaultProposer);
+            if (bangumi == null) {
+                invalid++;
+            } else {
+                entries.add(bangumi);
+            }
+        }
+        return new Parsed(batch.seq, entries, invalid);
+    }
+
+    private static Bangumi normalize(Map<String, String> fields, String defaultProposer) {
+        String title = clean(fields.get("title"));
+        if (title == null) {
+            return null;
+        }
+        Bangumi bangumi = new Bangumi();
+        bangumi.setTitle(title.replaceAll("\\s+", " "));
+        bangumi.setDescription(clean(fields.get("description")));
+        bangumi.setWriter(StringPool.intern(clean(fields.get("writer"))));
+        bangumi.setOriginal(StringPool.intern(clean(fields.get("original"))));
+        bangumi.setDirector(StringPool.intern(clean(fields.get("director"))));
+        String proposer = clean(fields.get("proposer"));
+        bangumi.setProposer(StringPool.intern(proposer != null ? proposer : defaultProposer));
+        String watched = clean(fields.get("watched"));
+        bangumi.setWatched(watched != null && ("true".equalsIgnoreCase(watched) || "1".equals(watched) || "是".equals(watched)));
+        String votes = clean(fields.get("votes"));
+        if (votes != null) {
+            try {
+                bangumi.setVotes(Math.max(0, Integer.parseInt(votes)));
+            } catch (NumberFormatException e) {
+                bangumi.setVotes(0);
+            }
+        }
+        String watchTime = clean(fields.get("watchTime"));
+        if (watchTime != null) {
+            bangumi.setWatchTime(parseDateTime(watchTime));
+        }
+        bangumi.setWatcher(clean(fields.get("watcher")));
+        String proposeTime = clean(fields.get("proposeTime"));
+        if (proposeTime != null) {
+            bangumi.setProposeTime(parseDateTime(proposeTime));
+        }
+        return bangumi;
+    }
+
+    // 无法识别的时间按没有时间处理，不输出日志（大型目录中可能有大量格式不一的时间）
+    static LocalDateTime parseDateTime(String value) {
+        try {
+            return LocalDateTime.parse(value, DATE_TIME);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String clean(String value) {
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Map<String, String> jsonFields(String line) {
+        JsonObject object = JsonParser.parseString(line).getAsJsonObject();
+        Map<String, String> fields = new HashMap<>();
+        for (Map.Entry<String, String[]> entry : FIELD_ALIASES.entrySet()) {
+            for (String alias : entry.getValue()) {
+                JsonElement element = object.get(alias);
+                if (element != null && element.isJsonPrimitive() && !element.getAsString().trim().isEmpty()) {
+                    fields.put(entry.getKey(), element.getAsString());
+                    break;
+                }
+            }
+        }
+        return fields;
+    }
+
+    private static Map<String, String> csvFields(String line, Map<String, Integer> columns) {
+        List<String> values = parseCsvLine(line);
+        Map<String, String> fields = new HashMap<>();
+        for (Map.Entry<String, Integer> column : columns.entrySet()) {
+            if (column.getValue() < values.size()) {
+                fields.put(column.getKey(), values.get(column.getValue()));
+            }
+        }
+        return fields;
+    }
+
+    // 表头列名对应的条目字段，同一字段有多个别名列时取优先级最高的
+    private static Map<String, Integer> headerColumns(List<String> header) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (Map.Entry<String, String[]> entry : FIELD_ALIASES.entrySet()) {
+            for (String alias : entry.getValue()) {
+                int index = header.indexOf(alias);
+                if (index >= 0) {
+                    columns.put(entry.getKey(), index);
+                    break;
+                }
+            }
+        }
+        if (!columns.containsKey("title")) {
+            throw new IllegalArgumentException("CSV表头中没有番剧名列（title）");
+        }
+        return columns;
+    }
+
+    /**
+     * 解析一条CSV记录（RFC 4180：逗号分隔，双引号包裹含逗号、引号或换行的值，两个双引号表示一个双引号）
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        value.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString().trim());
+        return values;
+    }
+
+    // 引号数为奇数时记录尚未结束
+    private static boolean hasOpenQuote(String line) {
+        int quotes = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes % 2 != 0;
+    }
+
+    private static String stripBom(String line) {
+        return !line.isEmpty() && line.charAt(0) == '﻿' ? line.substring(1) : line;
+    }
+}
@@ -0,0 +1,302 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.config.AppConfig;
+import com.bangumimenu.entity.Bangumi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * 番剧目录分片存储
+ * 开启后目录文件（如bangumi.json）按番剧名的稳定哈希拆分为N个分片文件（如bangumi/shard-07.json），
+ * 另有bangumi/index.json按顺序记录番剧名以保持列表顺序。保存时只重写内容发生变化的分片，
+ * 一次投票或编辑只改动一个分片文件，Git提交和推送的内容也随之缩小到该分片
+ */
+public class CatalogShards {
+
+    private static final String SHARD_PREFIX = "shard-";
+    private static final String INDEX_FILE = "index.json";
+    private static final String JSON_SUFFIX = ".json";
+
+    // 已写入磁盘的分片内容的SHA-256摘要（按分片文件绝对路径，区分不同目录），用于判断分片是否需要重写
+    private static final Map<String, byte[]> writtenDigests = new ConcurrentHashMap<>();
+
+    /**
+     * 配置的分片数量，0表示不分片
+     */
+    public static int getShardCount() {
+        return Math.max(0, AppConfig.getIntProperty("data.shard.count", 0));
+    }
+
+    /**
+     * 数据文件是否以分片形式保存
+     * @param fileName 数据文件名（如bangumi.json）
+     */
+    public static boolean isSharded(String fileName) {
+        if (getShardCount() == 0) {
+            return false;
+        }
+        return AppConfig.getListProperty("data.shard.files", "bangumi.json").contains(fileName);
+    }
+
+    /**
+     * 分片目录名，bangumi.json对应bangumi
+     */
+    public static String getShardDirName(String fileName) {
+        return fileName.endsWith(JSON_SUFFIX) ? fileName.substring(0, fileName.length() - JSON_SUFFIX.length()) : fileName;
+    }
+
+    /**
+     * 判断相对路径是否为某个分片目录中的分片或索引文件
+     */
+    public static boolean isShardFile(String path) {
+        int slash = path.lastIndexOf('/');
+        if (slash <= 0) {
+            return false;
+        }
+        String name = UserDataSync.getLogicalFileName(path.substring(slash + 1));
+        return name.endsWith(JSON_SUFFIX) && (name.startsWith(SHARD_PREFIX) || name.equals(INDEX_FILE));
+    }
+
+    /**
+     * 番剧所在的分片编号，使用番剧名UTF-8字节的CRC32，跨进程和版本保持稳定
+     */
+    public static int shardOf(String title, int shardCount) {
+        CRC32 crc = new CRC32();
+        if (title != null) {
+            crc.update(title.getBytes(StandardCharsets.UTF_8));
+        }
+        return (int) (crc.getValue() % shardCount);
+    }
+
+    /**
+     * 分片文件的相对路径（开启压缩存储时带.gz后缀）
+     */
+    public static String getShardFileName(String fileName, int shard) {
+        return UserDataSync.getStoredFileName(String.format("%s/%s%02d%s", getShardDirName(fileName), SHARD_PREFIX, shard, JSON_SUFFIX));
+    }
+
+    /**
+     * 用户数据目录中是否已有该数据文件的分片
+     */
+    public static boolean hasShards(String fileName) {
+        return isSharded(fileName) && listShardFiles(fileName).length > 0;
+    }
+
+    /**
+     * 并行读取全部分片，并按索引文件记录的顺序合并
+     * @param fileName 数据文件名（如bangumi.json）
+     * @return 番剧列表，没有分片时返回空列表
+     */
+    public static List<Bangumi> read(String fileName) throws IOException {
+        File[] shardFiles = listShardFiles(fileName);
+        if (shardFiles.length == 0) {
+            return new ArrayList<>();
+        }
+
+        List<Callable<List<Bangumi>>> tasks = new ArrayList<>(shardFiles.length);
+        for (File shardFile : shardFiles) {
+            tasks.add(() -> JsonUtils.parseBangumiList(readDataFile(shardFile), shardFile.getName()));
+        }
+        int threads = Math.min(shardFiles.length, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "catalog-shard-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, Bangumi> byTitle = new LinkedHashMap<>();
+        try {
+            for (Future<List<Bangumi>> future : executor.invokeAll(tasks)) {
+                for (Bangumi bangumi : future.get()) {
+                    byTitle.put(bangumi.getTitle(), bangumi);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("读取分片被中断", e);
+        } catch (ExecutionException e) {
+            throw new IOException("读取分片失败: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        // 先按索引顺序排列，不在索引中的条目（如手工合并的分片）按分片顺序追加到末尾
+        List<Bangumi> result = new ArrayList<>(byTitle.size());
+        File indexFile = new File(getShardDir(fileName), UserDataSync.getStoredFileName(INDEX_FILE));
+        if (indexFile.exists()) {
+            String[] titles = JsonUtils.parseStringArray(readDataFile(indexFile));
+            for (String title : titles) {
+                Bangumi bangumi = byTitle.remove(title);
+                if (bangumi != null) {
+                    result.add(bangumi);
+                }
+            }
+        }
+        result.addAll(byTitle.values());
+        System.out.println("已并行读取 " + shardFiles.length + " 个分片: " + fileName + "，共 " + result.size() + " 条");
+        return result;
+    }
+
+    /**
+     * 将番剧列表按分片写入用户数据目录，只重写内容有变化的分片
+     * @param bangumis 番剧列表
+     * @param fileName 数据文件名（如bangumi.json）
+     * @return 实际写入的文件相对路径
+     */
+    public static List<String> write(List<Bangumi> bangumis, String fileName) throws IOException {
+        int shardCount = getShardCount();
+        List<List<Bangumi>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayList<>());
+        }
+        List<String> titles = new ArrayList<>(bangumis.size());
+        for (Bangumi bangumi : bangumis) {
+            shards.get(shardOf(bangumi.getTitle(), shardCount)).add(bangumi);
+            titles.add(bangumi.getTitle());
+        }
+
+        File dir = getShardDir(fileName);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        List<String> written = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            String shardName = getShardFileName(fileName, i);
+            if (writeIfChanged(shardName, JsonUtils.toJsonBytes(shards.get(i)))) {
+                written.add(shardName);
+            }
+        }
+        String indexName = getShardDirName(fileName) + "/" + UserDataSync.getStoredFileName(INDEX_FILE);
+        if (writeIfChanged(indexName, JsonUtils.toJsonBytes(titles))) {
+            written.add(indexName);
+        }
+
+        // 迁移为分片存储后删除原来的单个目录文件，推送时暂存其删除
+        for (String legacyName : new String[]{fileName, UserDataSync.getAlternateFileName(fileName)}) {
+            if (new File(UserDataSync.getUserDataDir(), legacyName).delete()) {
+                System.out.println("已迁移为分片存储，删除原目录文件: " + legacyName);
+            }
+        }
+
+        // 分片数量减少时删除多余的旧分片（其条目已写入新的分片）；切换压缩存储后删除另一种格式的分片，
+        // 避免同一分片的两份内容同时被读取
+        for (File shardFile : listShardFiles(fileName)) {
+            String shardName = getShardDirName(fileName) + "/" + shardFile.getName();
+            int shard = shardIndexOf(shardFile.getName());
+            if ((shard >= shardCount || !shardName.equals(getShardFileName(fileName, shard))) && shardFile.delete()) {
+                writtenDigests.remove(shardFile.getPath());
+                System.out.println("已删除多余的分片: " + shardName);
+            }
+        }
+        File alternateIndex = new File(dir, UserDataSync.getAlternateFileName(UserDataSync.getStoredFileName(INDEX_FILE)));
+        if (alternateIndex.delete()) {
+            writtenDigests.remove(alternateIndex.getPath());
+        }
+        return written;
+    }
+
+    /**
+     * 判断分片或索引文件的当前内容是否正是本进程最近一次写入的内容
+     * @param relativePath 相对于用户数据目录的路径（如bangumi/shard-07.json）
+     */
+    public static boolean isWrittenContent(String relativePath) {
+        File file = new File(UserDataSync.getUserDataDir(), relativePath);
+        byte[] written = writtenDigests.get(file.getPath());
+        if (written == null || !file.exists()) {
+            return false;
+        }
+        try {
+            return MessageDigest.isEqual(written, UserDataSync.digestOf(readDataFile(file)));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 清除当前目录已写入分片的校验记录（分片文件被外部覆盖后调用）
+     */
+    public static void invalidate() {
+        String prefix = new File(UserDataSync.getUserDataDir()).getPath() + File.separator;
+        writtenDigests.keySet().removeIf(path -> path.startsWith(prefix));
+    }
+
+    private static boolean writeIfChanged(String relativePath, byte[] json) throws IOException {
+        byte[] digest = UserDataSync.digestOf(json);
+        File file = new File(UserDataSync.getUserDataDir(), relativePath);
+        byte[] previous = writtenDigests.get(file.getPath());
+        if (previous != null && MessageDigest.isEqual(previous, digest) && file.exists()) {
+            return false;
+        }
+        if (previous == null && file.exists() && Arrays.equals(readDataFile(file), json)) {
+            // 首次保存时与磁盘内容比较，避免启动后的第一次保存重写全部分片
+            writtenDigests.put(file.getPath(), digest);
+            return false;
+        }
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            out.write(UserDataSync.isCompressed(relativePath) ? CatalogCache.compress(json) : json);
+        }
+        writtenDigests.put(file.getPath(), digest);
+        return true;
+    }
+
+    private static File getShardDir(String fileName) {
+        return new File(UserDataSync.getUserDataDir(), getShardDirName(fileName));
+    }
+
+    /**
+     * 用户数据目录中的分片文件，按分片编号排列
+     */
+    static File[] listShardFiles(String fileName) {
+        File[] files = getShardDir(fileName).listFiles((dir, name) -> shardIndexOf(name) >= 0);
+        if (files == null) {
+            return new File[0];
+        }
+        // 同一分片两种格式都存在时（切换压缩存储后尚未保存），当前格式的排在后面，合并时以其内容为准
+        boolean compressed = UserDataSync.isCompressed(UserDataSync.getStoredFileName(fileName));
+        Arrays.sort(files, (a, b) -> {
+            int byShard = Integer.compare(shardIndexOf(a.getName()), shardIndexOf(b.getName()));
+            if (byShard != 0) {
+                return byShard;
+            }
+            return Boolean.compare(UserDataSync.isCompressed(a.getName()) == compressed,
+                    UserDataSync.isCompressed(b.getName()) == compressed);
+        });
+        return files;
+    }
+
+    // 从分片文件名中解析分片编号，不是分片文件时返回-1
+    private static int shardIndexOf(String name) {
+        name = UserDataSync.getLogicalFileName(name);
+        if (!name.startsWith(SHARD_PREFIX) || !name.endsWith(JSON_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(SHARD_PREFIX.length(), name.length() - JSON_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] readDataFile(File file) throws IOException {
+        try (InputStream in = UserDataSync.openDataFile(file)) {
+            return JsonUtils.readFully(in);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.config.AppConfig;
+import com.bangumimenu.config.GitSettings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 多目录（多个社团各自的番剧菜单仓库）管理
+ * 通过 catalogs=club-a,club-b 配置多个命名目录，每个目录有独立的数据目录和远程仓库
+ * （catalog.&lt;名称&gt;.dir、catalog.&lt;名称&gt;.git.remote.url 等，未配置的Git项沿用全局配置）。
+ * 数据读写和Git操作作用于“当前目录”：界面线程使用活动目录，后台同步线程通过 {@link #callIn} 临时切换
+ */
+public class Catalogs {
+
+    /**
+     * 未配置catalogs时唯一的默认目录名
+     */
+    public static final String DEFAULT_NAME = "default";
+
+    private static final String USER_HOME_DIR = System.getProperty("user.home");
+
+    private static final ThreadLocal<Catalog> threadCatalog = new ThreadLocal<>();
+    private static volatile String activeName;
+    // 解析后的目录列表，配置重新加载后重建
+    private static volatile List<Catalog> catalogs;
+
+    static {
+        AppConfig.addChangeListener(changedKeys -> catalogs = null);
+    }
+
+    /**
+     * 一个命名目录
+     */
+    public static final class Catalog {
+        private final String name;
+        private final String displayName;
+        private final String dataDir;
+
+        private Catalog(String name, String displayName, String dataDir) {
+            this.name = name;
+            this.displayName = displayName;
+            this.dataDir = dataDir;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public String getDataDir() {
+            return dataDir;
+        }
+
+        /**
+         * 该目录的Git同步配置
+         */
+        public GitSettings getGitSettings() {
+            return AppConfig.getGitSettings(DEFAULT_NAME.equals(name) ? null : "catalog." + name + ".");
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    /**
+     * 获取全部已配置的目录（按配置顺序）
+     */
+    public static List<Catalog> all() {
+        List<Catalog> result = catalogs;
+        if (result == null) {
+            Map<String, Catalog> byName = new LinkedHashMap<>();
+            for (String name : AppConfig.getListProperty("catalogs", "")) {
+                byName.put(name, createCatalog(name));
+            }
+            if (byName.isEmpty()) {
+                byName.put(DEFAULT_NAME, createCatalog(DEFAULT_NAME));
+            }
+            result = Collections.unmodifiableList(new ArrayList<>(byName.values()));
+            catalogs = result;
+        }
+        return result;
+    }
+
+    private static Catalog createCatalog(String name) {
+        if (DEFAULT_NAME.equals(name)) {
+            return new Catalog(name, AppConfig.getProperty("app.title", "Bangumi Menu"), USER_HOME_DIR + "/.bangumi-menu");
+        }
+        String prefix = "catalog." + name + ".";
+        String dataDir = AppConfig.getProperty(prefix + "dir", USER_HOME_DIR + "/.bangumi-menu-" + name);
+        if (dataDir.startsWith("~/")) {
+            dataDir = USER_HOME_DIR + dataDir.substring(1);
+        }
+        return new Catalog(name, AppConfig.getProperty(prefix + "title", name), dataDir);
+    }
+
+    /**
+     * 按名称查找目录
+     * @return 目录，不存在时返回null
+     */
+    public static Catalog find(String name) {
+        for (Catalog catalog : all()) {
+            if (catalog.getName().equals(name)) {
+                return catalog;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 当前线程正在操作的目录：通过 {@link #callIn} 指定的目录，否则为活动目录
+     */
+    public static Catalog current() {
+        Catalog catalog = threadCatalog.get();
+        return catalog != null ? catalog : active();
+    }
+
+    /**
+     * 界面当前显示的活动目录
+     */
+    public static Catalog active() {
+        Catalog catalog = activeName != null ? find(activeName) : null;
+        return catalog != null ? catalog : all().get(0);
+    }
+
+    /**
+     * 切换活动目录
+     */
+    public static void setActive(String name) {
+        activeName = name;
+    }
+
+    /**
+     * 在指定目录的上下文中执行操作（数据目录、Git配置、缓存都作用于该目录）
+     */
+    public static <T> T callIn(Catalog catalog, Supplier<T> action) {
+        Catalog previous = threadCatalog.get();
+        threadCatalog.set(catalog);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                threadCatalog.set(previous);
+            } else {
+                threadCatalog.remove();
+            }
+        }
+    }
+
+    /**
+     * 使用有界线程池并发同步多个目录，每个目录各自初始化、拉取并推送
+     * @param catalogs 需要同步的目录
+     * @param onFinished 每个目录同步完成后回调（在同步线程中执行），参数为目录和是否成功
+     */
+    public static void syncAll(List<Catalog> targets, BiConsumer<Catalog, Boolean> onFinished) {
+        if (targets.isEmpty()) {
+            return;
+        }
+        int threads = Math.max(1, Math.min(targets.size(), AppConfig.getIntProperty("catalog.sync.threads", 4)));
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "catalog-sync-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Catalog catalog : targets) {
+            executor.execute(() -> {
+                boolean success = callIn(catalog, () -> {
+                    System.out.println("正在同步目录: " + catalog.getName());
+                    UserDataSync.initializeUserData();
+                    if (!GitUtils.initRepo() || !GitUtils.pullChanges()) {
+                        return false;
+                    }
+                    return GitUtils.pushChanges("同步目录 " + catalog.getName() + " " + java.time.LocalDateTime.now());
+                });
+                System.out.println("目录同步" + (success ? "完成" : "失败") + ": " + catalog.getName());
+                if (onFinished != null) {
+                    onFinished.accept(catalog, success);
+                }
+            });
+        }
+        executor.shutdown();
+    }
+}
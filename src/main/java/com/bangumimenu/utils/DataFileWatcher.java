@@ -0,0 +1,220 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.config.AppConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 用户数据目录监视器
+ * 使用WatchService监听数据文件被其他进程、手动git pull或另一个应用实例修改，
+ * 在一段静默期后合并同一文件的多次事件，并忽略内容与本进程最近一次写入相同的事件；
+ * 同时监视用户配置目录，覆盖文件被修改时重新加载配置
+ */
+public class DataFileWatcher {
+
+    private final WatchService watchService;
+    private final Consumer<String> listener;
+    private final long debounceMillis;
+    private final Map<WatchKey, String> watchedDirs = new HashMap<>();
+    private WatchKey configKey;
+    private final Thread thread;
+
+    private DataFileWatcher(WatchService watchService, Consumer<String> listener, long debounceMillis) {
+        this.watchService = watchService;
+        this.listener = listener;
+        this.debounceMillis = debounceMillis;
+        this.thread = new Thread(this::run, "data-file-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * 开始监视用户数据目录
+     * @param listener 数据文件被外部修改时回调（在监视线程中执行），参数为数据文件名（如bangumi.json）
+     * @return 监视器，目录不存在或平台不支持时返回null
+     */
+    public static DataFileWatcher start(Consumer<String> listener) {
+        File dataDir = new File(UserDataSync.getUserDataDir());
+        if (!dataDir.isDirectory()) {
+            return null;
+        }
+        try {
+            DataFileWatcher watcher = new DataFileWatcher(FileSystems.getDefault().newWatchService(), listener,
+                    AppConfig.getIntProperty("data.watch.debounce.ms", 500));
+            watcher.register("");
+            watcher.registerConfigDir();
+            for (String fileName : UserDataSync.getLogicalDataFiles()) {
+                if (CatalogShards.isSharded(fileName)) {
+                    watcher.register(CatalogShards.getShardDirName(fileName));
+                }
+            }
+            watcher.thread.start();
+            System.out.println("已开始监视数据目录: " + dataDir);
+            return watcher;
+        } catch (IOException e) {
+            System.err.println("无法监视数据目录: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 停止监视
+     */
+    public void stop() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("关闭数据目录监视失败: " + e.getMessage());
+        }
+    }
+
+    private void register(String relativeDir) throws IOException {
+        File dir = relativeDir.isEmpty()
+                ? new File(UserDataSync.getUserDataDir())
+                : new File(UserDataSync.getUserDataDir(), relativeDir);
+        if (dir.isDirectory()) {
+            WatchKey key = dir.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirs.put(key, relativeDir);
+        }
+    }
+
+    // 用户配置目录不存在时先创建，之后保存的覆盖文件也能被监视到
+    private void registerConfigDir() {
+        File dir = AppConfig.getUserConfigFile().getParentFile();
+        try {
+            Files.createDirectories(dir.toPath());
+            configKey = dir.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            System.err.println("无法监视用户配置目录: " + e.getMessage());
+        }
+    }
+
+    private void run() {
+        Set<String> pending = new LinkedHashSet<>();
+        boolean configChanged = false;
+        try {
+            while (true) {
+                // 有待处理事件时等待静默期，静默期内没有新事件才处理
+                WatchKey key = pending.isEmpty() && !configChanged
+                        ? watchService.take()
+                        : watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    if (configChanged) {
+                        // 用户配置覆盖文件被修改（手动编辑或另一个实例保存），先热加载配置再处理数据文件
+                        AppConfig.reload();
+                        configChanged = false;
+                    }
+                    dispatch(pending);
+                    pending.clear();
+                    continue;
+                }
+                if (key == configKey) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || event.context().toString().equals(AppConfig.getUserConfigFile().getName())) {
+                            configChanged = true;
+                        }
+                    }
+                    key.reset();
+                    continue;
+                }
+                String relativeDir = watchedDirs.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || relativeDir == null) {
+                        continue;
+                    }
+                    String name = ((Path) event.context()).toString();
+                    String relativePath = relativeDir.isEmpty() ? name : relativeDir + "/" + name;
+                    if (relativeDir.isEmpty() && isShardDir(name) && !watchedDirs.containsValue(name)) {
+                        // 分片目录在启动后才创建（例如首次保存或拉取之后），补充监视
+                        register(name);
+                    }
+                    pending.add(relativePath);
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            System.out.println("数据目录监视已停止");
+        } catch (IOException e) {
+            System.err.println("数据目录监视失败: " + e.getMessage());
+        }
+    }
+
+    // 将变化的路径归并为数据文件名，过滤掉本进程自己的写入后通知监听器
+    private void dispatch(Set<String> paths) {
+        Map<String, Boolean> changed = new LinkedHashMap<>();
+        for (String path : paths) {
+            String fileName = toDataFileName(path);
+            if (fileName != null && !isOwnWrite(path, fileName)) {
+                changed.put(fileName, Boolean.TRUE);
+            }
+        }
+        for (String fileName : changed.keySet()) {
+            System.out.println("检测到数据文件被外部修改: " + fileName);
+            try {
+                listener.accept(fileName);
+            } catch (Exception e) {
+                System.err.println("处理数据文件变化失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private static boolean isShardDir(String name) {
+        for (String fileName : UserDataSync.getLogicalDataFiles()) {
+            if (CatalogShards.isSharded(fileName) && CatalogShards.getShardDirName(fileName).equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 相对路径对应的数据文件名，不是数据文件时返回null
+    private static String toDataFileName(String path) {
+        if (CatalogShards.isShardFile(path)) {
+            String dir = path.substring(0, path.lastIndexOf('/'));
+            return isShardDir(dir) ? dir + ".json" : null;
+        }
+        String fileName = UserDataSync.getLogicalFileName(Paths.get(path).getFileName().toString());
+        return !path.contains("/") && UserDataSync.getLogicalDataFiles().contains(fileName) ? fileName : null;
+    }
+
+    // 文件仍是本进程写入后的状态（修改时间和长度不变），或内容与最近一次写入一致时视为自己的写入
+    private static boolean isOwnWrite(String path, String fileName) {
+        if (CatalogShards.isShardFile(path)) {
+            return CatalogShards.isWrittenContent(path) || !new File(UserDataSync.getUserDataDir(), path).exists();
+        }
+        File file = new File(UserDataSync.getUserDataDir(), UserDataSync.getStoredFileName(fileName));
+        if (!file.exists()) {
+            // 迁移为分片存储时删除的单个目录文件
+            return CatalogShards.hasShards(fileName);
+        }
+        if (CatalogCache.isWritten(fileName, file)) {
+            return true;
+        }
+        try (InputStream in = UserDataSync.openDataFile(file)) {
+            return CatalogCache.isUnchanged(fileName, JsonUtils.readFully(in));
+        } catch (IOException e) {
+            // 文件可能正在被写入，按外部修改处理，由重新读取时的校验决定是否应用
+            return false;
+        }
+    }
+}
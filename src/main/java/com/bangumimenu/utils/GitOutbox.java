@@ -0,0 +1,191 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.config.AppConfig;
+import com.bangumimenu.config.GitSettings;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 离线待推送队列
+ * 推送失败时提交已经保存在本地仓库中，本地分支领先远程跟踪分支的提交即为待推送队列，
+ * 随仓库持久保存，重启后依然存在。后台线程定期在远程可用时获取远程最新提交，
+ * 将待推送的提交整合到远程分支之上（见 {@link GitPushLoop}）并推送，界面通过监听器显示待推送数量
+ */
+public class GitOutbox {
+
+    private static final String REMOTE = "origin";
+
+    // 各目录最近一次统计的待推送提交数
+    private static final Map<String, Integer> pendingCounts = new ConcurrentHashMap<>();
+    private static final List<Consumer<Integer>> listeners = new CopyOnWriteArrayList<>();
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * 启动后台重放线程，按git.outbox.retry.seconds的间隔尝试推送所有目录的待推送提交
+     */
+    public static synchronized void start() {
+        if (scheduler != null || !AppConfig.getBooleanProperty("git.enabled", true)) {
+            return;
+        }
+        long interval = Math.max(5, AppConfig.getIntProperty("git.outbox.retry.seconds", 30));
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "git-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(GitOutbox::replayAll, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 添加待推送数量监听器（活动目录的数量变化时在后台线程中回调）
+     */
+    public static void addListener(Consumer<Integer> listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Consumer<Integer> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 活动目录最近一次统计的待推送提交数
+     */
+    public static int getPendingCount() {
+        return pendingCounts.getOrDefault(Catalogs.active().getName(), 0);
+    }
+
+    /**
+     * 当前目录最近一次统计的待推送提交数
+     */
+    public static int countPending() {
+        return pendingCounts.getOrDefault(Catalogs.current().getName(), 0);
+    }
+
+    /**
+     * 重新统计当前目录的待推送提交数并通知监听器
+     * @return 待推送提交数
+     */
+    public static int refresh() {
+        File repoDir = new File(UserDataSync.getUserDataDir());
+        int count = 0;
+        if (new File(repoDir, ".git").exists()) {
+            try (Git git = Git.open(repoDir)) {
+                count = countUnpushed(git);
+            } catch (IOException e) {
+                System.err.println("统计待推送提交失败: " + e.getMessage());
+            }
+        }
+        String name = Catalogs.current().getName();
+        Integer previous = pendingCounts.put(name, count);
+        if ((previous == null || previous != count) && name.equals(Catalogs.active().getName())) {
+            for (Consumer<Integer> listener : listeners) {
+                listener.accept(count);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 统计本地分支领先远程跟踪分支的提交数；未配置远程仓库时没有可推送的目标，返回0
+     */
+    static int countUnpushed(Git git) throws IOException {
+        if (Catalogs.current().getGitSettings().getRemoteUrl().isEmpty()) {
+            return 0;
+        }
+        Repository repository = git.getRepository();
+        ObjectId head = repository.resolve(Constants.HEAD);
+        if (head == null) {
+            return 0;
+        }
+        ObjectId remoteHead = repository.resolve(trackingRef(repository));
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.markStart(walk.parseCommit(head));
+            if (remoteHead != null) {
+                walk.markUninteresting(walk.parseCommit(remoteHead));
+            }
+            int count = 0;
+            for (RevCommit ignored : walk) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 重放所有目录的待推送提交（仅写入实例执行）
+     */
+    public static void replayAll() {
+        if (!InstanceCoordinator.isWriter()) {
+            return;
+        }
+        for (Catalogs.Catalog catalog : Catalogs.all()) {
+            try {
+                Catalogs.callIn(catalog, GitOutbox::replay);
+            } catch (RuntimeException e) {
+                System.err.println("重放待推送提交失败: " + catalog.getName() + ", " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 获取远程最新提交，将当前目录的待推送提交整合到远程分支之上并推送
+     * @return 没有待推送提交或全部推送成功时返回true
+     */
+    public static boolean replay() {
+        GitSettings settings = Catalogs.current().getGitSettings();
+        if (!settings.isEnabled() || !settings.hasCredentials() || GitRemoteGuard.isOpen()) {
+            return false;
+        }
+        File repoDir = new File(UserDataSync.getUserDataDir());
+        if (!new File(repoDir, ".git").exists()) {
+            return false;
+        }
+        InstanceCoordinator.writeLock().lock();
+        try (Git git = Git.open(repoDir)) {
+            int pending = countUnpushed(git);
+            if (pending == 0) {
+                return true;
+            }
+            System.out.println("网络恢复，正在重放 " + pending + " 个待推送提交: " + Catalogs.current().getName());
+            UsernamePasswordCredentialsProvider credentialsProvider =
+                new UsernamePasswordCredentialsProvider(settings.getUsername(), settings.getPassword());
+            GitRemoteGuard.call("获取远程更新", timeout -> git.fetch()
+                    .setRemote(REMOTE)
+                    .setCredentialsProvider(credentialsProvider)
+                    .setProgressMonitor(SyncProgress.monitor())
+                    .setTimeout(timeout)
+                    .call());
+            if (!GitPushLoop.integrateRemote(git)) {
+                return false;
+            }
+            return GitUtils.pushCommits(git);
+        } catch (IOException | GitAPIException e) {
+            System.err.println("重放待推送提交失败: " + e.getMessage());
+            return false;
+        } finally {
+            InstanceCoordinator.writeLock().unlock();
+            refresh();
+        }
+    }
+
+    private static String trackingRef(Repository repository) throws IOException {
+        return Constants.R_REMOTES + REMOTE + "/" + repository.getBranch();
+    }
+}
@@ -0,0 +1,341 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.config.AppConfig;
+import com.bangumimenu.entity.Bangumi;
+import com.bangumimenu.service.CatalogMerge;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.PushCommand;
+import org.eclipse.jgit.api.RebaseCommand;
+import org.eclipse.jgit.api.RebaseResult;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 推送竞争处理
+ * 多人同时投票时推送经常因远程分支已前进而被拒绝（非快进）。推送被拒绝后自动获取远程最新提交，
+ * 将本地提交变基到远程分支之上；变基冲突时按番剧名对数据文件做三方语义合并（见 {@link CatalogMerge}），
+ * 生成以本地和远程提交为父提交的合并提交，然后在有限次数内重新推送，并统计拒绝率和重试次数。
+ * 整合后的数据文件通过监听器直接交给界面应用到内存中的列表，不依赖数据目录监视
+ */
+public class GitPushLoop {
+
+    private static final String REMOTE = "origin";
+
+    private static final LongAdder pushes = new LongAdder();
+    private static final LongAdder rejections = new LongAdder();
+    private static final LongAdder rebases = new LongAdder();
+    private static final LongAdder semanticMerges = new LongAdder();
+    private static final LongAdder gaveUp = new LongAdder();
+    private static final AtomicInteger maxRetries = new AtomicInteger();
+
+    private static volatile Consumer<String> integrationListener;
+
+    private enum Outcome {
+        OK, REJECTED, FAILED
+    }
+
+    /**
+     * 设置整合远程提交后的回调，界面据此重新读取数据文件并逐条合并到内存中的列表；
+     * 否则在关闭数据目录监视时，之后的保存会用旧的内存列表覆盖合并结果
+     * @param listener 在推送线程中执行，参数为数据文件名（如bangumi.json），只对活动目录回调
+     */
+    public static void setIntegrationListener(Consumer<String> listener) {
+        integrationListener = listener;
+    }
+
+    /**
+     * 推送当前分支，被拒绝（非快进）时获取、整合远程提交后重试
+     * @return 推送成功返回true
+     */
+    static boolean push(Git git, CredentialsProvider credentialsProvider) throws GitAPIException, IOException {
+        int maxAttempts = Math.max(1, AppConfig.getIntProperty("git.push.max.attempts", 5));
+        pushes.increment();
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            Outcome outcome = pushOnce(git, credentialsProvider);
+            if (outcome == Outcome.OK) {
+                recordRetries(attempt);
+                return true;
+            }
+            if (outcome == Outcome.FAILED) {
+                return false;
+            }
+            rejections.increment();
+            if (attempt + 1 == maxAttempts) {
+                break;
+            }
+            System.out.println("远程分支已有其他人的新提交，获取并整合后重试推送（第 " + (attempt + 1) + " 次）");
+            GitRemoteGuard.call("获取远程更新", timeout -> git.fetch()
+                    .setRemote(REMOTE)
+                    .setCredentialsProvider(credentialsProvider)
+                    .setProgressMonitor(SyncProgress.monitor())
+                    .setTimeout(timeout)
+                    .call());
+            if (!integrateRemote(git)) {
+                break;
+            }
+            // 短暂随机等待，避免多个写入者同时重试再次冲突
+            sleepQuietly(ThreadLocalRandom.current().nextLong(50L << Math.min(attempt, 5)));
+        }
+        gaveUp.increment();
+        recordRetries(maxAttempts - 1);
+        System.err.println("多次重试后推送仍被拒绝，本地提交保留待稍后推送");
+        return false;
+    }
+
+    /**
+     * 将本地提交整合到已获取的远程分支之上：先尝试变基，冲突时放弃变基改为语义合并
+     * @return 整合成功返回true
+     */
+    static boolean integrateRemote(Git git) throws GitAPIException, IOException {
+        Repository repository = git.getRepository();
+        String trackingRef = trackingRef(repository);
+        if (repository.resolve(trackingRef) == null) {
+            // 远程分支尚不存在（如空仓库），无需整合
+            return true;
+        }
+        RebaseResult result = git.rebase().setUpstream(trackingRef).call();
+        RebaseResult.Status status = result.getStatus();
+        if (status == RebaseResult.Status.STOPPED || status == RebaseResult.Status.CONFLICTS) {
+            git.rebase().setOperation(RebaseCommand.Operation.ABORT).call();
+            if (!mergeSemantically(git, trackingRef)) {
+                return false;
+            }
+        } else if (!status.isSuccessful()) {
+            System.err.println("变基失败: " + status);
+            return false;
+        } else {
+            rebases.increment();
+        }
+        if (status != RebaseResult.Status.UP_TO_DATE) {
+            // 整合后数据文件包含了远程内容，写入缓存失效，并通知界面重新读取
+            CatalogCache.invalidateAll();
+            CatalogShards.invalidate();
+            notifyIntegrated();
+        }
+        return true;
+    }
+
+    /**
+     * 统计信息摘要
+     */
+    public static String getStats() {
+        long total = pushes.sum();
+        long rejected = rejections.sum();
+        return String.format("推送: %d 次, 被拒绝 %d 次（平均每次推送被拒绝 %.2f 次）, 变基 %d 次, 语义合并 %d 次, 放弃 %d 次, 单次最多重试 %d 次",
+                total, rejected, total == 0 ? 0.0 : (double) rejected / total,
+                rebases.sum(), semanticMerges.sum(), gaveUp.sum(), maxRetries.get());
+    }
+
+    private static Outcome pushOnce(Git git, CredentialsProvider credentialsProvider) throws GitAPIException {
+        PushCommand pushCommand = git.push().setRemote(REMOTE).setCredentialsProvider(credentialsProvider);
+        Iterable<PushResult> pushResults = GitRemoteGuard.call("推送", timeout -> pushCommand
+                .setProgressMonitor(SyncProgress.monitor())
+                .setTimeout(timeout)
+                .call());
+        for (PushResult pushResult : pushResults) {
+            for (RemoteRefUpdate refUpdate : pushResult.getRemoteUpdates()) {
+                RemoteRefUpdate.Status status = refUpdate.getStatus();
+                if (status == RemoteRefUpdate.Status.OK || status == RemoteRefUpdate.Status.UP_TO_DATE) {
+                    continue;
+                }
+                if (status == RemoteRefUpdate.Status.REJECTED_NONFASTFORWARD
+                        || status == RemoteRefUpdate.Status.REJECTED_REMOTE_CHANGED) {
+                    return Outcome.REJECTED;
+                }
+                if (status == RemoteRefUpdate.Status.REJECTED_OTHER_REASON) {
+                    System.err.println("推送被拒绝: " + refUpdate.getMessage());
+                    System.err.println("这通常是因为远程仓库的保护规则，你可能需要:");
+                    System.err.println("1. 检查你是否有推送权限");
+                    System.err.println("2. 确认你推送的是自己的仓库（而不是他人的仓库）");
+                    System.err.println("3. 检查仓库是否有分支保护规则");
+                } else {
+                    System.err.println("推送失败: " + status + " - " + refUpdate.getMessage());
+                }
+                return Outcome.FAILED;
+            }
+        }
+        return Outcome.OK;
+    }
+
+    private static void notifyIntegrated() {
+        Consumer<String> listener = integrationListener;
+        if (listener == null || !Catalogs.current().getName().equals(Catalogs.active().getName())) {
+            return;
+        }
+        for (String fileName : UserDataSync.getLogicalDataFiles()) {
+            try {
+                listener.accept(fileName);
+            } catch (RuntimeException e) {
+                System.err.println("应用整合后的数据文件失败: " + fileName + ", " + e.getMessage());
+            }
+        }
+    }
+
+    // 逐个数据文件合并双方相对共同祖先的修改，生成以本地和远程提交为父提交的合并提交，本地提交保留在历史中
+    private static boolean mergeSemantically(Git git, String trackingRef) throws GitAPIException, IOException {
+        Repository repository = git.getRepository();
+        Map<String, byte[]> mergedFiles = new LinkedHashMap<>();
+        try (RevWalk walk = new RevWalk(repository)) {
+            RevCommit ours = walk.parseCommit(repository.resolve(Constants.HEAD));
+            RevCommit theirs = walk.parseCommit(repository.resolve(trackingRef));
+            walk.setRevFilter(RevFilter.MERGE_BASE);
+            walk.markStart(ours);
+            walk.markStart(theirs);
+            RevCommit base = walk.next();
+
+            try (TreeWalk treeWalk = new TreeWalk(repository)) {
+                treeWalk.addTree(ours.getTree());
+                treeWalk.addTree(theirs.getTree());
+                treeWalk.setRecursive(true);
+                treeWalk.setFilter(TreeFilter.ANY_DIFF);
+                while (treeWalk.next()) {
+                    String path = treeWalk.getPathString();
+                    byte[] ourBytes = blob(repository, treeWalk.getObjectId(0));
+                    byte[] theirBytes = blob(repository, treeWalk.getObjectId(1));
+                    byte[] baseBytes = base != null ? blobAt(repository, base, path) : null;
+                    byte[] merged = mergeFile(path, baseBytes, ourBytes, theirBytes);
+                    if (merged == null && theirBytes != null && ourBytes != null) {
+                        System.err.println("无法合并数据文件，放弃本次推送: " + path);
+                        return false;
+                    }
+                    mergedFiles.put(path, merged);
+                }
+            }
+        }
+
+        // 工作区保持本地版本，写入合并结果；双方不同的文件都在合并结果中，暂存后即为合并后的完整内容
+        ObjectId theirs = repository.resolve(trackingRef);
+        File repoDir = repository.getWorkTree();
+        for (Map.Entry<String, byte[]> entry : mergedFiles.entrySet()) {
+            File file = new File(repoDir, entry.getKey());
+            if (entry.getValue() == null) {
+                if (file.delete()) {
+                    git.rm().addFilepattern(entry.getKey()).call();
+                }
+                continue;
+            }
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            Files.write(file.toPath(), entry.getValue());
+            git.add().addFilepattern(entry.getKey()).call();
+        }
+        // 记录MERGE_HEAD后提交即生成双亲合并提交；合并结果与本地版本相同时也需要提交，推送才能快进
+        repository.writeMergeHeads(Collections.singletonList(theirs));
+        try {
+            git.commit()
+                .setMessage("合并并发修改 " + java.time.LocalDateTime.now())
+                .call();
+        } finally {
+            repository.writeMergeHeads(null);
+        }
+        semanticMerges.increment();
+        System.out.println("已按条目合并 " + mergedFiles.size() + " 个并发修改的数据文件");
+        return true;
+    }
+
+    /**
+     * 合并单个数据文件
+     * @return 合并后的内容（按文件原有的压缩格式），文件应被删除时返回null
+     */
+    private static byte[] mergeFile(String path, byte[] base, byte[] ours, byte[] theirs) throws IOException {
+        // 只有一方修改时直接采用该方的版本
+        if (Arrays.equals(base, theirs)) {
+            return ours;
+        }
+        if (Arrays.equals(base, ours) || ours == null || theirs == null) {
+            return theirs;
+        }
+        boolean compressed = UserDataSync.isCompressed(path);
+        byte[] baseJson = base != null ? decode(base, compressed) : null;
+        byte[] ourJson = decode(ours, compressed);
+        byte[] theirJson = decode(theirs, compressed);
+        byte[] merged;
+        try {
+            if (UserDataSync.getLogicalFileName(path).endsWith("/index.json")) {
+                List<String> titles = CatalogMerge.mergeTitles(
+                        baseJson != null ? Arrays.asList(JsonUtils.parseStringArray(baseJson)) : Collections.<String>emptyList(),
+                        Arrays.asList(JsonUtils.parseStringArray(ourJson)),
+                        Arrays.asList(JsonUtils.parseStringArray(theirJson)));
+                merged = JsonUtils.toJsonBytes(titles);
+            } else {
+                List<Bangumi> result = CatalogMerge.merge(
+                        baseJson != null ? JsonUtils.parsePlainBangumiList(baseJson) : new ArrayList<>(),
+                        JsonUtils.parsePlainBangumiList(ourJson),
+                        JsonUtils.parsePlainBangumiList(theirJson));
+                merged = JsonUtils.toJsonBytes(result);
+            }
+        } catch (RuntimeException e) {
+            // 不是番剧列表格式的文件无法按条目合并
+            System.err.println("解析数据文件失败: " + path + ", " + e.getMessage());
+            return null;
+        }
+        return compressed ? CatalogCache.compress(merged) : merged;
+    }
+
+    private static byte[] decode(byte[] content, boolean compressed) throws IOException {
+        if (!compressed) {
+            return content;
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            return JsonUtils.readFully(in);
+        }
+    }
+
+    private static byte[] blob(Repository repository, ObjectId objectId) throws IOException {
+        if (objectId == null || ObjectId.zeroId().equals(objectId)) {
+            return null;
+        }
+        return repository.open(objectId).getBytes();
+    }
+
+    private static byte[] blobAt(Repository repository, RevCommit commit, String path) throws IOException {
+        try (TreeWalk treeWalk = TreeWalk.forPath(repository, path, commit.getTree())) {
+            return treeWalk != null ? blob(repository, treeWalk.getObjectId(0)) : null;
+        }
+    }
+
+    private static String trackingRef(Repository repository) throws IOException {
+        return Constants.R_REMOTES + REMOTE + "/" + repository.getBranch();
+    }
+
+    private static void recordRetries(int retries) {
+        maxRetries.accumulateAndGet(retries, Math::max);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
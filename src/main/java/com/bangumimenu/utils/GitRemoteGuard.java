@@ -0,0 +1,264 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.config.AppConfig;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.TransportException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 远程Git操作保护
+ * 对fetch、pull、push等网络操作按带随机抖动的指数退避重试，并限制单次操作的总时长；
+ * 连续多次操作失败后熔断器打开，冷却期内的远程操作立即失败而不是再次等待超时，
+ * 冷却期结束后放行一次试探请求，成功则恢复。熔断状态按目录（见 {@link Catalogs}）分别记录
+ */
+public class GitRemoteGuard {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        CLOSED("正常"),
+        OPEN("熔断"),
+        HALF_OPEN("试探");
+
+        private final String label;
+
+        State(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * 一次远程调用，参数为本次尝试可用的超时秒数
+     */
+    public interface RemoteCall<T> {
+        T call(int timeoutSeconds) throws GitAPIException;
+    }
+
+    private static final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    private static final LongAdder attempts = new LongAdder();
+    private static final LongAdder retries = new LongAdder();
+    private static final LongAdder failures = new LongAdder();
+    private static final LongAdder rejected = new LongAdder();
+
+    // 单个目录的熔断器
+    private static final class Breaker {
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean trialInFlight;
+
+        synchronized boolean tryAcquire(long cooldownNanos) {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < cooldownNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = false;
+            }
+            if (state == State.HALF_OPEN) {
+                // 半开状态只放行一个试探请求
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+            }
+            return true;
+        }
+
+        synchronized void onSuccess() {
+            if (state != State.CLOSED) {
+                System.out.println("远程仓库已恢复，熔断器关闭");
+            }
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            trialInFlight = false;
+        }
+
+        // 放弃本次请求而不改变状态（如用户取消），半开状态下允许下一个试探请求
+        synchronized void release() {
+            trialInFlight = false;
+        }
+
+        synchronized void onFailure(int threshold) {
+            consecutiveFailures++;
+            trialInFlight = false;
+            if (state == State.HALF_OPEN || consecutiveFailures >= threshold) {
+                if (state != State.OPEN) {
+                    System.err.println("远程仓库连续 " + consecutiveFailures + " 次操作失败，熔断器打开");
+                }
+                state = State.OPEN;
+                openedAt = System.nanoTime();
+            }
+        }
+
+        synchronized State state(long cooldownNanos) {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= cooldownNanos) {
+                return State.HALF_OPEN;
+            }
+            return state;
+        }
+
+        synchronized long remainingCooldownMillis(long cooldownNanos) {
+            if (state != State.OPEN) {
+                return 0;
+            }
+            return Math.max(0, TimeUnit.NANOSECONDS.toMillis(cooldownNanos - (System.nanoTime() - openedAt)));
+        }
+    }
+
+    /**
+     * 在当前目录的熔断器保护下执行远程操作，网络错误时退避重试，直到成功、次数用尽或超过操作期限
+     * @param operation 操作名称，用于日志
+     * @param call 远程调用
+     * @return 调用结果
+     * @throws GitAPIException 最后一次尝试的异常；熔断期间立即抛出TransportException
+     */
+    public static <T> T call(String operation, RemoteCall<T> call) throws GitAPIException {
+        if (SyncProgress.isCurrentCancelled()) {
+            throw new TransportException("同步已取消");
+        }
+        Breaker breaker = breaker();
+        if (!breaker.tryAcquire(cooldownNanos())) {
+            rejected.increment();
+            throw new TransportException("远程仓库暂时不可用，已跳过" + operation + "（" + describeState() + "）");
+        }
+
+        int maxAttempts = Math.max(1, AppConfig.getIntProperty("git.retry.attempts", 3));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(
+                Math.max(1, AppConfig.getIntProperty("git.operation.deadline.seconds", 60)));
+        int timeoutSeconds = Catalogs.current().getGitSettings().getTimeoutSeconds();
+        GitAPIException lastError = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                break;
+            }
+            if (attempt > 0) {
+                retries.increment();
+            }
+            attempts.increment();
+            SyncProgress.remoteCallStarted();
+            try {
+                T result = call.call((int) Math.min(timeoutSeconds, Math.max(1, (remainingMillis + 999) / 1000)));
+                breaker.onSuccess();
+                return result;
+            } catch (TransportException e) {
+                lastError = e;
+                if (SyncProgress.isCurrentCancelled()) {
+                    // 用户取消，不重试也不计入熔断
+                    breaker.release();
+                    throw new TransportException("同步已取消", e);
+                }
+                if (!isRetryable(e)) {
+                    // 认证失败等错误说明远程可达，重试无意义，也不计入熔断
+                    breaker.onSuccess();
+                    throw e;
+                }
+                System.err.println(operation + "失败（第 " + (attempt + 1) + "/" + maxAttempts + " 次）: " + e.getMessage());
+                if (attempt + 1 < maxAttempts && (!sleepBackoff(attempt, deadline) || SyncProgress.isCurrentCancelled())) {
+                    break;
+                }
+            } catch (GitAPIException | RuntimeException e) {
+                // 非网络错误（如合并冲突、引用不存在）直接交给调用方处理
+                breaker.onSuccess();
+                throw e;
+            } finally {
+                SyncProgress.remoteCallFinished();
+            }
+        }
+
+        failures.increment();
+        breaker.onFailure(Math.max(1, AppConfig.getIntProperty("git.breaker.failure.threshold", 3)));
+        if (lastError == null) {
+            lastError = new TransportException(operation + "超过操作期限");
+        }
+        throw lastError;
+    }
+
+    /**
+     * 当前目录的远程操作是否处于熔断期（调用方可据此跳过整个同步流程）
+     */
+    public static boolean isOpen() {
+        return breaker().state(cooldownNanos()) == State.OPEN;
+    }
+
+    /**
+     * 当前目录的熔断器状态
+     */
+    public static State getState() {
+        return breaker().state(cooldownNanos());
+    }
+
+    /**
+     * 当前目录熔断器状态的简短描述，用于提示信息
+     */
+    public static String describeState() {
+        Breaker breaker = breaker();
+        State state = breaker.state(cooldownNanos());
+        if (state == State.OPEN) {
+            long seconds = TimeUnit.MILLISECONDS.toSeconds(breaker.remainingCooldownMillis(cooldownNanos()) + 999);
+            return state.getLabel() + "，" + seconds + " 秒后重试";
+        }
+        return state.getLabel();
+    }
+
+    /**
+     * 统计信息摘要
+     */
+    public static String getStats() {
+        return String.format("远程操作: 熔断器%s, 尝试 %d 次, 重试 %d 次, 失败 %d 次, 熔断拒绝 %d 次",
+                describeState(), attempts.sum(), retries.sum(), failures.sum(), rejected.sum());
+    }
+
+    /**
+     * 重置当前目录的熔断器（例如修改远程仓库配置之后）
+     */
+    public static void reset() {
+        breakers.remove(Catalogs.current().getName());
+    }
+
+    private static Breaker breaker() {
+        return breakers.computeIfAbsent(Catalogs.current().getName(), name -> new Breaker());
+    }
+
+    private static long cooldownNanos() {
+        return TimeUnit.SECONDS.toNanos(Math.max(1, AppConfig.getIntProperty("git.breaker.cooldown.seconds", 60)));
+    }
+
+    // 认证或权限错误不重试
+    private static boolean isRetryable(TransportException e) {
+        String message = e.getMessage() != null ? e.getMessage().toLowerCase() : "";
+        return !(message.contains("not authorized") || message.contains("authentication")
+                || message.contains("forbidden") || message.contains("not permitted"));
+    }
+
+    // 全抖动指数退避：在 [0, min(上限, 基数 * 2^attempt)] 内随机等待，不超过操作期限
+    private static boolean sleepBackoff(int attempt, long deadline) {
+        long baseMillis = Math.max(1, AppConfig.getIntProperty("git.retry.backoff.ms", 500));
+        long maxMillis = Math.max(baseMillis, AppConfig.getIntProperty("git.retry.backoff.max.ms", 8000));
+        long ceiling = Math.min(maxMillis, baseMillis << Math.min(attempt, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (delay >= remainingMillis) {
+            return false;
+        }
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.bangumimenu.utils;
 
 import com.bangumimenu.config.AppConfig;
+import com.bangumimenu.config.GitSettings;
+import com.bangumimenu.entity.Bangumi;
+import com.bangumimenu.service.CatalogDiff;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.PushCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -13,12 +15,24 @@ import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
  * Git工具类，用于处理Git版本控制和同步操作
  */
 public class GitUtils {
     
+    static {
+        // 远程仓库地址修改后无需重启，直接更新仓库配置
+        AppConfig.addChangeListener(changedKeys -> {
+            if (changedKeys.contains("git.remote.url") && new File(UserDataSync.getUserDataDir(), ".git").exists()) {
+                System.out.println("远程仓库地址已变更，正在更新仓库配置");
+                GitRemoteGuard.reset();
+                initRepo();
+            }
+        });
+    }
+    
     /**
      * 初始化Git仓库
      */
@@ -45,7 +59,7 @@ public class GitUtils {
             }
             
             // 设置远程仓库URL
-            String remoteUrl = AppConfig.getProperty("git.remote.url", "");
+            String remoteUrl = Catalogs.current().getGitSettings().getRemoteUrl();
             if (!remoteUrl.isEmpty()) {
                 // 确保使用HTTPS协议，防止JGit错误地尝试使用SSH
                 if (!remoteUrl.startsWith("https://")) {
@@ -73,6 +87,56 @@ public class GitUtils {
         }
     }
     
+    /**
+     * 查找用于获取数据文件的远程分支，优先main分支，然后是master分支
+     * @return 远程分支引用名，没有时返回null
+     */
+    private static String findRemoteBranch(Git git) throws GitAPIException {
+        java.util.List<org.eclipse.jgit.lib.Ref> remoteRefs = git.branchList()
+            .setListMode(org.eclipse.jgit.api.ListBranchCommand.ListMode.REMOTE)
+            .call();
+        
+        String targetBranch = null;
+        for (org.eclipse.jgit.lib.Ref ref : remoteRefs) {
+            String refName = ref.getName();
+            if (refName.endsWith("/main")) {
+                targetBranch = refName;
+                break;
+            } else if (refName.endsWith("/master")) {
+                targetBranch = refName;
+            }
+        }
+        return targetBranch;
+    }
+    
+    /**
+     * 获取拉取时需要覆盖的数据文件，目录和通配符条目同时按远程分支中的文件展开，
+     * 其他设备新增的分片（本地还不存在）也会被拉取
+     */
+    private static String[] getPullDataFiles(Git git) {
+        List<String> remotePaths = new java.util.ArrayList<>();
+        try {
+            String targetBranch = findRemoteBranch(git);
+            org.eclipse.jgit.lib.ObjectId head = targetBranch != null ? git.getRepository().resolve(targetBranch) : null;
+            if (head != null) {
+                try (org.eclipse.jgit.revwalk.RevWalk revWalk = new org.eclipse.jgit.revwalk.RevWalk(git.getRepository());
+                     TreeWalk treeWalk = new TreeWalk(git.getRepository())) {
+                    treeWalk.addTree(revWalk.parseCommit(head).getTree());
+                    treeWalk.setRecursive(true);
+                    while (treeWalk.next()) {
+                        remotePaths.add(treeWalk.getPathString());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("读取远程文件列表失败，只同步本地已有的数据文件: " + e.getMessage());
+        }
+        // 已迁移为分片存储的单个目录文件不再从远程恢复
+        return java.util.Arrays.stream(UserDataSync.getDataFiles(remotePaths))
+            .filter(fileName -> !CatalogShards.hasShards(UserDataSync.getLogicalFileName(fileName)))
+            .toArray(String[]::new);
+    }
+    
     /**
      * 从远程仓库获取最新文件内容并覆盖本地文件
      */
@@ -82,32 +146,19 @@ public class GitUtils {
             Git git = Git.open(repoDir);
             
             // 先执行fetch获取远程最新内容
-            String username = AppConfig.getProperty("git.username", "");
-            String password = AppConfig.getProperty("git.password", "");
+            GitSettings settings = Catalogs.current().getGitSettings();
+            String username = settings.getUsername();
+            String password = settings.getPassword();
             UsernamePasswordCredentialsProvider credentialsProvider = 
                 new UsernamePasswordCredentialsProvider(username, password);
             
-            git.fetch()
-                .setCredentialsProvider(credentialsProvider)
-                .setTimeout(120)
-                .call();
-            
-            // 尝试获取远程分支列表以确定默认分支
-            java.util.List<org.eclipse.jgit.lib.Ref> remoteRefs = git.branchList()
-                .setListMode(org.eclipse.jgit.api.ListBranchCommand.ListMode.REMOTE)
-                .call();
-            
-            String targetBranch = null;
-            // 优先查找main分支，然后是master分支
-            for (org.eclipse.jgit.lib.Ref ref : remoteRefs) {
-                String refName = ref.getName();
-                if (refName.endsWith("/main")) {
-                    targetBranch = refName;
-                    break;
-                } else if (refName.endsWith("/master")) {
-                    targetBranch = refName;
-                }
-            }
+            GitRemoteGuard.call("获取远程更新", timeout -> git.fetch()
+                    .setCredentialsProvider(credentialsProvider)
+                    .setProgressMonitor(SyncProgress.monitor())
+                    .setTimeout(timeout)
+                    .call());
+            
+            String targetBranch = findRemoteBranch(git);
             
             if (targetBranch != null) {
                 // 获取指定远程分支的最新提交
@@ -132,9 +183,11 @@ public class GitUtils {
                         byte[] content = loader.getBytes();
                         String fileContent = new String(content, StandardCharsets.UTF_8);
                         
-                        // 覆盖本地文件
+                        // 覆盖本地文件（远程新增的分片所在目录可能还不存在）
                         File localFile = new File(UserDataSync.getUserDataDir(), fileName);
+                        localFile.getParentFile().mkdirs();
                         java.nio.file.Files.write(localFile.toPath(), content, java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.TRUNCATE_EXISTING);
+                        CatalogCache.invalidate(fileName);
                         
                         System.out.println("已从远程分支 " + targetBranch + " 覆盖本地文件: " + fileName);
                     } else {
@@ -154,6 +207,20 @@ public class GitUtils {
      * 强制从远程仓库拉取最新内容进行覆盖
      */
     public static boolean forcePullChanges() {
+        // 跟随实例的Git操作由写入实例执行
+        if (!InstanceCoordinator.isWriter()) {
+            return InstanceCoordinator.forwardPull(true);
+        }
+        InstanceCoordinator.writeLock().lock();
+        try {
+            return doForcePullChanges();
+        } finally {
+            InstanceCoordinator.writeLock().unlock();
+            GitOutbox.refresh();
+        }
+    }
+    
+    private static boolean doForcePullChanges() {
         try {
             File repoDir = new File(UserDataSync.getUserDataDir());
             if (!repoDir.exists()) {
@@ -161,10 +228,17 @@ public class GitUtils {
                 return false;
             }
             
+            // 熔断期间直接失败，避免离线时每次同步都等待超时
+            if (GitRemoteGuard.isOpen()) {
+                System.err.println("远程仓库暂时不可用，跳过强制拉取（" + GitRemoteGuard.describeState() + "）");
+                return false;
+            }
+            
             Git git = Git.open(repoDir);
             
-            String username = AppConfig.getProperty("git.username", "");
-            String password = AppConfig.getProperty("git.password", "");
+            GitSettings settings = Catalogs.current().getGitSettings();
+            String username = settings.getUsername();
+            String password = settings.getPassword();
             
             if (username.isEmpty() || password.isEmpty()) {
                 System.err.println("Git认证信息未配置");
@@ -174,7 +248,7 @@ public class GitUtils {
             UsernamePasswordCredentialsProvider credentialsProvider = 
                 new UsernamePasswordCredentialsProvider(username, password);
             
-            String remoteUrl = AppConfig.getProperty("git.remote.url", "");
+            String remoteUrl = settings.getRemoteUrl();
             
             // 确保使用HTTPS协议，防止JGit错误地尝试使用SSH
             if (!remoteUrl.startsWith("https://")) {
@@ -184,30 +258,39 @@ public class GitUtils {
             
             // 执行fetch操作获取远程更新
             try {
-                git.fetch()
-                    .setCredentialsProvider(credentialsProvider)
-                    .setTimeout(120)
-                    .call();
+                GitRemoteGuard.call("获取远程更新", timeout -> git.fetch()
+                        .setCredentialsProvider(credentialsProvider)
+                        .setProgressMonitor(SyncProgress.monitor())
+                        .setTimeout(timeout)
+                        .call());
                 System.out.println("成功获取远程更新信息");
+            } catch (org.eclipse.jgit.api.errors.TransportException e) {
+                // 重试后仍无法连接远程仓库，后续的拉取也会失败，直接结束
+                System.err.println("获取远程更新信息失败: " + e.getMessage());
+                return false;
             } catch (Exception e) {
                 System.err.println("获取远程更新信息失败: " + e.getMessage());
                 e.printStackTrace();
             }
             
             // 设置Git配置以改善网络连接
-            git.getRepository().getConfig().setInt("http", null, "postBuffer", 524288000); // 设置POST缓冲区为500MB
-            git.getRepository().getConfig().setInt("http", null, "timeout", 60); // 设置HTTP超时为60秒
+            git.getRepository().getConfig().setInt("http", null, "postBuffer", settings.getPostBufferBytes()); // 设置POST缓冲区（默认500MB）
+            git.getRepository().getConfig().setInt("http", null, "timeout", settings.getHttpTimeoutSeconds()); // 设置HTTP超时（默认60秒）
             try {
                 git.getRepository().getConfig().save();
             } catch (IOException e) {
                 System.err.println("保存Git配置失败: " + e.getMessage());
             }
             
-            // 获取所有需要同步的数据文件
-            String[] dataFiles = AppConfig.getProperty("git.data.files", "bangumi.json,current_bangumi.json").split(",");
+            // 获取所有需要同步的数据文件（含远程新增的分片）
+            String[] dataFiles = getPullDataFiles(git);
             
             // 无论本地是否有更改，都强制从远程获取最新内容并覆盖本地文件
             for (String fileName : dataFiles) {
+                if (SyncProgress.isCurrentCancelled()) {
+                    System.out.println("同步已取消");
+                    return false;
+                }
                 fileName = fileName.trim();
                 if (!fileName.isEmpty()) {
                     overwriteLocalFileWithRemoteContent(fileName);
@@ -235,10 +318,11 @@ public class GitUtils {
             // 尝试拉取，以防还有其他更新
             org.eclipse.jgit.api.PullResult result = null;
             try {
-                result = git.pull()
-                    .setCredentialsProvider(credentialsProvider)
-                    .setTimeout(120) // 设置120秒超时
-                    .call();
+                result = GitRemoteGuard.call("拉取", timeout -> git.pull()
+                        .setCredentialsProvider(credentialsProvider)
+                        .setProgressMonitor(SyncProgress.monitor())
+                        .setTimeout(timeout)
+                        .call());
             } catch (org.eclipse.jgit.api.errors.RefNotAdvertisedException e) {
                 System.err.println("RefNotAdvertisedException: " + e.getMessage());
                 System.err.println("远程仓库未公布分支引用，尝试显式指定分支");
@@ -269,12 +353,14 @@ public class GitUtils {
                 
                 if (actualDefaultBranch != null) {
                     System.out.println("检测到远程默认分支: " + actualDefaultBranch + ", 正在拉取...");
-                    result = git.pull()
-                        .setCredentialsProvider(credentialsProvider)
-                        .setRemote("origin")
-                        .setRemoteBranchName(actualDefaultBranch)
-                        .setTimeout(120)
-                        .call();
+                    String remoteBranch = actualDefaultBranch;
+                    result = GitRemoteGuard.call("拉取", timeout -> git.pull()
+                            .setCredentialsProvider(credentialsProvider)
+                            .setRemote("origin")
+                            .setRemoteBranchName(remoteBranch)
+                            .setProgressMonitor(SyncProgress.monitor())
+                            .setTimeout(timeout)
+                            .call());
                     System.out.println("成功拉取最新更改（" + actualDefaultBranch + "分支）");
                 } else {
                     System.err.println("无法找到合适的远程分支");
@@ -284,7 +370,7 @@ public class GitUtils {
                 System.err.println("Git传输异常: " + e.getMessage());
                 System.err.println("这通常是由于网络连接问题或认证失败导致的");
                 // 尝试提供更具体的解决方案
-                String remoteUrlCheck = AppConfig.getProperty("git.remote.url", "");
+                String remoteUrlCheck = settings.getRemoteUrl();
                 if (remoteUrlCheck.contains("github.com")) {
                     System.err.println("GitHub连接问题可能的原因:");
                     System.err.println("1. 网络连接问题");
@@ -303,6 +389,10 @@ public class GitUtils {
                 System.out.println("拉取操作完成，可能没有新更新");
             }
             
+            // 拉取可能合并了远程内容，写入缓存需要失效
+            CatalogCache.invalidateAll();
+            CatalogShards.invalidate();
+            
             // 强制拉取成功后，同步到项目目录
             UserDataSync.syncFromUserToProject();
             return true;
@@ -317,6 +407,24 @@ public class GitUtils {
      * 拉取最新更改
      */
     public static boolean pullChanges() {
+        // 跟随实例的Git操作由写入实例执行
+        if (!InstanceCoordinator.isWriter()) {
+            return InstanceCoordinator.forwardPull(false);
+        }
+        InstanceCoordinator.writeLock().lock();
+        try {
+            // 拉取会用远程内容覆盖本地文件，先推送离线时保存的本地提交
+            if (GitOutbox.countPending() > 0) {
+                GitOutbox.replay();
+            }
+            return doPullChanges();
+        } finally {
+            InstanceCoordinator.writeLock().unlock();
+            GitOutbox.refresh();
+        }
+    }
+    
+    private static boolean doPullChanges() {
         try {
             File repoDir = new File(UserDataSync.getUserDataDir());
             if (!repoDir.exists()) {
@@ -324,10 +432,17 @@ public class GitUtils {
                 return false;
             }
             
+            // 熔断期间直接失败，避免离线时每次同步都等待超时
+            if (GitRemoteGuard.isOpen()) {
+                System.err.println("远程仓库暂时不可用，跳过拉取（" + GitRemoteGuard.describeState() + "）");
+                return false;
+            }
+            
             Git git = Git.open(repoDir);
             
-            String username = AppConfig.getProperty("git.username", "");
-            String password = AppConfig.getProperty("git.password", "");
+            GitSettings settings = Catalogs.current().getGitSettings();
+            String username = settings.getUsername();
+            String password = settings.getPassword();
             
             if (username.isEmpty() || password.isEmpty()) {
                 System.err.println("Git认证信息未配置");
@@ -337,7 +452,7 @@ public class GitUtils {
             UsernamePasswordCredentialsProvider credentialsProvider = 
                 new UsernamePasswordCredentialsProvider(username, password);
             
-            String remoteUrl = AppConfig.getProperty("git.remote.url", "");
+            String remoteUrl = settings.getRemoteUrl();
             
             // 确保使用HTTPS协议，防止JGit错误地尝试使用SSH
             if (!remoteUrl.startsWith("https://")) {
@@ -347,19 +462,24 @@ public class GitUtils {
             
             // 执行fetch操作获取远程更新
             try {
-                git.fetch()
-                    .setCredentialsProvider(credentialsProvider)
-                    .setTimeout(120)
-                    .call();
+                GitRemoteGuard.call("获取远程更新", timeout -> git.fetch()
+                        .setCredentialsProvider(credentialsProvider)
+                        .setProgressMonitor(SyncProgress.monitor())
+                        .setTimeout(timeout)
+                        .call());
                 System.out.println("成功获取远程更新信息");
+            } catch (org.eclipse.jgit.api.errors.TransportException e) {
+                // 重试后仍无法连接远程仓库，后续的拉取也会失败，直接结束
+                System.err.println("获取远程更新信息失败: " + e.getMessage());
+                return false;
             } catch (Exception e) {
                 System.err.println("获取远程更新信息失败: " + e.getMessage());
                 e.printStackTrace();
             }
             
             // 设置Git配置以改善网络连接
-            git.getRepository().getConfig().setInt("http", null, "postBuffer", 524288000); // 设置POST缓冲区为500MB
-            git.getRepository().getConfig().setInt("http", null, "timeout", 60); // 设置HTTP超时为60秒
+            git.getRepository().getConfig().setInt("http", null, "postBuffer", settings.getPostBufferBytes()); // 设置POST缓冲区（默认500MB）
+            git.getRepository().getConfig().setInt("http", null, "timeout", settings.getHttpTimeoutSeconds()); // 设置HTTP超时（默认60秒）
             try {
                 git.getRepository().getConfig().save();
             } catch (IOException e) {
@@ -367,8 +487,8 @@ public class GitUtils {
             }
             
             // 拉取之前，先处理可能存在的冲突
-            // 获取所有需要同步的数据文件
-            String[] dataFiles = AppConfig.getProperty("git.data.files", "bangumi.json,current_bangumi.json").split(",");
+            // 获取所有需要同步的数据文件（含远程新增的分片）
+            String[] dataFiles = getPullDataFiles(git);
             
             // 检查是否本地有未提交的更改
             boolean hasLocalChanges = !git.status().call().isClean();
@@ -380,6 +500,10 @@ public class GitUtils {
             
             // 先直接获取远程最新内容并覆盖本地文件（这是最可靠的同步方式）
             for (String fileName : dataFiles) {
+                if (SyncProgress.isCurrentCancelled()) {
+                    System.out.println("同步已取消");
+                    return false;
+                }
                 fileName = fileName.trim();
                 if (!fileName.isEmpty()) {
                     overwriteLocalFileWithRemoteContent(fileName);
@@ -407,10 +531,11 @@ public class GitUtils {
             // 再次尝试拉取，以确保与远程仓库状态同步
             org.eclipse.jgit.api.PullResult result = null;
             try {
-                result = git.pull()
-                    .setCredentialsProvider(credentialsProvider)
-                    .setTimeout(120) // 设置120秒超时
-                    .call();
+                result = GitRemoteGuard.call("拉取", timeout -> git.pull()
+                        .setCredentialsProvider(credentialsProvider)
+                        .setProgressMonitor(SyncProgress.monitor())
+                        .setTimeout(timeout)
+                        .call());
             } catch (org.eclipse.jgit.api.errors.RefNotAdvertisedException e) {
                 System.err.println("RefNotAdvertisedException: " + e.getMessage());
                 System.err.println("远程仓库未公布分支引用，尝试显式指定分支");
@@ -441,12 +566,14 @@ public class GitUtils {
                 
                 if (actualDefaultBranch != null) {
                     System.out.println("检测到远程默认分支: " + actualDefaultBranch + ", 正在拉取...");
-                    result = git.pull()
-                        .setCredentialsProvider(credentialsProvider)
-                        .setRemote("origin")
-                        .setRemoteBranchName(actualDefaultBranch)
-                        .setTimeout(120)
-                        .call();
+                    String remoteBranch = actualDefaultBranch;
+                    result = GitRemoteGuard.call("拉取", timeout -> git.pull()
+                            .setCredentialsProvider(credentialsProvider)
+                            .setRemote("origin")
+                            .setRemoteBranchName(remoteBranch)
+                            .setProgressMonitor(SyncProgress.monitor())
+                            .setTimeout(timeout)
+                            .call());
                     System.out.println("成功拉取最新更改（" + actualDefaultBranch + "分支）");
                 } else {
                     System.err.println("无法找到合适的远程分支");
@@ -456,7 +583,7 @@ public class GitUtils {
                 System.err.println("Git传输异常: " + e.getMessage());
                 System.err.println("这通常是由于网络连接问题或认证失败导致的");
                 // 尝试提供更具体的解决方案
-                String remoteUrlCheck = AppConfig.getProperty("git.remote.url", "");
+                String remoteUrlCheck = settings.getRemoteUrl();
                 if (remoteUrlCheck.contains("github.com")) {
                     System.err.println("GitHub连接问题可能的原因:");
                     System.err.println("1. 网络连接问题");
@@ -475,6 +602,10 @@ public class GitUtils {
                 System.out.println("拉取操作完成，可能没有新更新");
             }
             
+            // 拉取可能合并了远程内容，写入缓存需要失效
+            CatalogCache.invalidateAll();
+            CatalogShards.invalidate();
+            
             // 拉取成功后，同步到项目目录
             UserDataSync.syncFromUserToProject();
             return true;
@@ -489,6 +620,20 @@ public class GitUtils {
      * 推送更改 - 仅推送JSON数据文件
      */
     public static boolean pushChanges(String commitMessage) {
+        // 跟随实例的Git操作由写入实例执行
+        if (!InstanceCoordinator.isWriter()) {
+            return InstanceCoordinator.forwardPush(commitMessage);
+        }
+        InstanceCoordinator.writeLock().lock();
+        try {
+            return doPushChanges(commitMessage);
+        } finally {
+            InstanceCoordinator.writeLock().unlock();
+            GitOutbox.refresh();
+        }
+    }
+    
+    private static boolean doPushChanges(String commitMessage) {
         try {
             File repoDir = new File(UserDataSync.getUserDataDir());
             if (!repoDir.exists()) {
@@ -502,7 +647,7 @@ public class GitUtils {
             UserDataSync.syncFromProjectToUser();
             
             // 获取配置中定义的数据文件列表
-            String[] dataFiles = AppConfig.getProperty("git.data.files", "bangumi.json,current_bangumi.json").split(",");
+            String[] dataFiles = UserDataSync.getDataFiles();
             
             // 确保用户目录中的所有数据文件都被添加到Git
             for (String file : dataFiles) {
@@ -515,11 +660,18 @@ public class GitUtils {
                         git.add().addFilepattern(file).call();
                         System.out.println("已添加文件到Git索引: " + file);
                     } else {
+                        // 已跟踪的文件被删除（如迁移为分片存储后的单个目录文件）时暂存删除
+                        git.add().setUpdate(true).addFilepattern(file).call();
                         System.out.println("用户目录中未找到文件: " + file);
                     }
                 }
             }
             
+            // 暂存分片目录中被删除的文件（如分片数量减少后删除的旧分片）
+            for (String dir : UserDataSync.getDataDirectories()) {
+                git.add().setUpdate(true).addFilepattern(dir).call();
+            }
+            
             // 检查是否有更改需要提交
             org.eclipse.jgit.api.Status status = git.status().call();
             java.util.Set<String> uncommittedChanges = status.getUncommittedChanges();
@@ -531,75 +683,22 @@ public class GitUtils {
             System.out.println("- 已修改的文件: " + changedFiles);
             System.out.println("- 未跟踪的文件: " + untracked);
             
-            // 如果没有更改，就不需要提交和推送
+            // 没有新的更改时，仍需推送之前离线提交、尚未推送的提交
             if (uncommittedChanges.isEmpty() && changedFiles.isEmpty() && untracked.isEmpty()) {
-                System.out.println("没有JSON数据更改需要推送");
-                return true;
-            }
-            
-            // 提交更改
-            git.commit()
-                .setMessage(commitMessage)
-                .call();
-            System.out.println("已提交更改: " + commitMessage);
-            
-            // 获取配置信息
-            String username = AppConfig.getProperty("git.username", "");
-            String password = AppConfig.getProperty("git.password", "");
-            String remoteUrl = AppConfig.getProperty("git.remote.url", "");
-            
-            if (username.isEmpty() || password.isEmpty() || remoteUrl.isEmpty()) {
-                System.err.println("Git配置信息不完整");
-                return false;
-            }
-            
-            // 确保使用HTTPS协议，防止JGit错误地尝试使用SSH
-            if (!remoteUrl.startsWith("https://")) {
-                System.err.println("远程仓库URL应使用HTTPS协议");
-                return false;
-            }
-            
-            UsernamePasswordCredentialsProvider credentialsProvider = 
-                new UsernamePasswordCredentialsProvider(username, password);
-            
-            PushCommand pushCommand = git.push();
-            pushCommand.setCredentialsProvider(credentialsProvider);
-            
-            // 确保远程URL已设置
-            if (git.getRepository().getConfig().getString("remote", "origin", "url") == null || 
-                !git.getRepository().getConfig().getString("remote", "origin", "url").equals(remoteUrl)) {
-                git.getRepository().getConfig().setString("remote", "origin", "url", remoteUrl);
-                git.getRepository().getConfig().setString("remote", "origin", "fetch", "+refs/heads/*:refs/remotes/origin/*");
-                try {
-                    git.getRepository().getConfig().save();
-                } catch (IOException e) {
-                    System.err.println("保存Git配置失败: " + e.getMessage());
-                    e.printStackTrace();
-                    return false;
-                }
-            }
-            
-            Iterable<org.eclipse.jgit.transport.PushResult> pushResults = pushCommand.setTimeout(120).call();
-            for (org.eclipse.jgit.transport.PushResult pushResult : pushResults) {
-                for (org.eclipse.jgit.transport.RemoteRefUpdate refUpdate : pushResult.getRemoteUpdates()) {
-                    if (refUpdate.getStatus() != org.eclipse.jgit.transport.RemoteRefUpdate.Status.OK) {
-                        if (refUpdate.getStatus() == org.eclipse.jgit.transport.RemoteRefUpdate.Status.REJECTED_OTHER_REASON) {
-                            System.err.println("推送被拒绝: " + refUpdate.getMessage());
-                            System.err.println("这通常是因为远程仓库的保护规则，你可能需要:");
-                            System.err.println("1. 检查你是否有推送权限");
-                            System.err.println("2. 确认你推送的是自己的仓库（而不是他人的仓库）");
-                            System.err.println("3. 检查仓库是否有分支保护规则");
-                            return false;
-                        } else {
-                            System.err.println("推送失败: " + refUpdate.getStatus() + " - " + refUpdate.getMessage());
-                            return false;
-                        }
-                    }
+                if (GitOutbox.countUnpushed(git) == 0) {
+                    System.out.println("没有JSON数据更改需要推送");
+                    return true;
                 }
+                System.out.println("没有新的更改，推送待推送的本地提交");
+            } else {
+                // 提交更改，推送失败时提交保留在本地，由GitOutbox在网络恢复后重放
+                git.commit()
+                    .setMessage(commitMessage)
+                    .call();
+                System.out.println("已提交更改: " + commitMessage);
             }
             
-            System.out.println("成功推送JSON数据更改");
-            return true;
+            return pushCommits(git);
         } catch (GitAPIException e) {
             System.err.println("推送更改失败: " + e.getMessage());
             e.printStackTrace();
@@ -611,6 +710,71 @@ public class GitUtils {
         }
     }
     
+    /**
+     * 将本地分支推送到远程仓库（调用方需持有写入锁）
+     * @return 所有引用都推送成功时返回true
+     */
+    static boolean pushCommits(Git git) throws GitAPIException, IOException {
+        // 获取配置信息
+        GitSettings settings = Catalogs.current().getGitSettings();
+        String username = settings.getUsername();
+        String password = settings.getPassword();
+        String remoteUrl = settings.getRemoteUrl();
+        
+        if (username.isEmpty() || password.isEmpty() || remoteUrl.isEmpty()) {
+            System.err.println("Git配置信息不完整");
+            return false;
+        }
+        
+        // 确保使用HTTPS协议，防止JGit错误地尝试使用SSH
+        if (!remoteUrl.startsWith("https://")) {
+            System.err.println("远程仓库URL应使用HTTPS协议");
+            return false;
+        }
+        
+        UsernamePasswordCredentialsProvider credentialsProvider = 
+            new UsernamePasswordCredentialsProvider(username, password);
+        
+        // 确保远程URL已设置
+        if (git.getRepository().getConfig().getString("remote", "origin", "url") == null || 
+            !git.getRepository().getConfig().getString("remote", "origin", "url").equals(remoteUrl)) {
+            git.getRepository().getConfig().setString("remote", "origin", "url", remoteUrl);
+            git.getRepository().getConfig().setString("remote", "origin", "fetch", "+refs/heads/*:refs/remotes/origin/*");
+            try {
+                git.getRepository().getConfig().save();
+            } catch (IOException e) {
+                System.err.println("保存Git配置失败: " + e.getMessage());
+                e.printStackTrace();
+                return false;
+            }
+        }
+        
+        // 推送被拒绝（远程已有其他人的新提交）时自动获取、整合后重试
+        if (!GitPushLoop.push(git, credentialsProvider)) {
+            return false;
+        }
+        
+        System.out.println("成功推送JSON数据更改");
+        return true;
+    }
+    
+    /**
+     * 拉取成功后重新读取目录文件，与拉取前的内容逐条比较（在同步线程中调用）
+     * 界面据此只更新受影响的条目，而不是替换整个列表
+     * @param fileName 目录文件名（如bangumi.json）
+     * @param before 拉取前的内容，通常是当前的目录快照
+     * @return 变更集，读取失败时返回null，调用方保留内存中的数据
+     */
+    public static CatalogDiff.ChangeSet diffPulledCatalog(String fileName, List<Bangumi> before) {
+        List<Bangumi> fresh = JsonUtils.reloadBangumiList("/" + fileName);
+        if (fresh == null) {
+            return null;
+        }
+        CatalogDiff.ChangeSet changes = CatalogDiff.diff(before, fresh);
+        System.out.println("拉取后 " + fileName + " 的变化: " + changes);
+        return changes;
+    }
+    
     /**
      * 检查是否有本地更改
      */
@@ -0,0 +1,455 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.config.AppConfig;
+import com.bangumimenu.entity.Bangumi;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 多实例协调
+ * 同一台机器上的多个应用实例通过对锁文件加FileChannel锁选出唯一的写入实例：
+ * 只有写入实例会写用户数据目录和执行Git操作，其余实例（跟随实例）把写入、拉取、推送请求
+ * 通过本地回环套接字转发给写入实例，并通过数据目录监视读取写入实例发布的数据。
+ * 写入实例退出后锁由操作系统释放，跟随实例会自动接替。
+ * 选举按配置的数据目录集合区分（协调目录名取数据目录路径的哈希），使用不同数据目录的实例互不影响；
+ * 转发的请求携带目录名和数据目录（见 {@link Catalogs}），写入实例核对数据目录一致后在对应目录的上下文中处理。
+ * 端口文件只有当前用户可读，其中除端口外还有写入实例启动时生成的随机令牌，每个请求都必须携带该令牌。
+ * 转发失败的写入保留在待写入队列中（每个文件只保留最新内容），跟随期间定期重试，本实例接替写入后直接写入本地。
+ * 默认关闭，通过 instance.coordination.enabled 开启
+ */
+public class InstanceCoordinator {
+
+    private static final String COORDINATION_ROOT = System.getProperty("user.home") + "/.bangumi-menu-instances";
+    private static final String LOCK_FILE = "writer.lock";
+    private static final String PORT_FILE = "writer.port";
+    private static final long ELECTION_INTERVAL_MILLIS = 2000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    // 写入实例读取请求的超时，避免一个停滞的连接阻塞后续请求
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+    // 转发写入内容的长度上限
+    private static final int MAX_WRITE_BYTES = 256 * 1024 * 1024;
+
+    private static final String OP_WRITE = "write";
+    private static final String OP_PULL = "pull";
+    private static final String OP_FORCE_PULL = "force-pull";
+    private static final String OP_PUSH = "push";
+
+    // 本进程内写数据文件和执行Git操作的互斥锁（界面线程、目录同步线程与转发请求处理线程之间），每个目录一把
+    private static final Map<String, ReentrantLock> writeLocks = new ConcurrentHashMap<>();
+
+    private static volatile boolean started = false;
+    private static volatile File coordinationDir;
+    private static volatile boolean writer = true;
+    private static volatile Consumer<String> remoteWriteListener;
+    private static FileChannel lockChannel;
+    private static FileLock writerLock;
+    private static ServerSocket serverSocket;
+    private static volatile String token;
+
+    // 转发失败、等待重试的写入，按“目录名/文件名”只保留最新内容；转发写入与重试都持有该对象的锁，保证顺序
+    private static final Map<String, PendingWrite> pendingWrites = new LinkedHashMap<>();
+    private static final List<Consumer<Integer>> pendingWriteListeners = new CopyOnWriteArrayList<>();
+
+    private static final class PendingWrite {
+        final Catalogs.Catalog catalog;
+        final String fileName;
+        final byte[] json;
+
+        PendingWrite(Catalogs.Catalog catalog, String fileName, byte[] json) {
+            this.catalog = catalog;
+            this.fileName = fileName;
+            this.json = json;
+        }
+    }
+
+    /**
+     * 参与写入实例选举；未开启协调时本实例始终视为写入实例
+     * @param listener 写入实例代跟随实例写入数据文件后回调（在请求处理线程中执行），参数为数据文件名
+     */
+    public static synchronized void start(Consumer<String> listener) {
+        if (started || !AppConfig.getBooleanProperty("instance.coordination.enabled", false)) {
+            return;
+        }
+        started = true;
+        remoteWriteListener = listener;
+        File dir = new File(COORDINATION_ROOT, dataDirsKey());
+        coordinationDir = dir;
+        if (!dir.exists()) {
+            dir.mkdirs();
+            restrictToOwner(dir.toPath(), "rwx------");
+        }
+        try {
+            lockChannel = new RandomAccessFile(new File(dir, LOCK_FILE), "rw").getChannel();
+        } catch (IOException e) {
+            System.err.println("无法打开实例锁文件，按单实例运行: " + e.getMessage());
+            return;
+        }
+        if (!tryBecomeWriter()) {
+            writer = false;
+            System.out.println("已有其他实例负责写入，本实例以跟随模式运行");
+            Thread election = new Thread(InstanceCoordinator::electionLoop, "instance-election");
+            election.setDaemon(true);
+            election.start();
+        }
+    }
+
+    /**
+     * 本实例是否为写入实例
+     */
+    public static boolean isWriter() {
+        return writer;
+    }
+
+    /**
+     * 本进程内写当前目录的数据文件和执行Git操作时持有的锁，不同目录可以并发同步
+     */
+    public static ReentrantLock writeLock() {
+        return writeLocks.computeIfAbsent(Catalogs.current().getName(), name -> new ReentrantLock());
+    }
+
+    /**
+     * 添加待写入数量监听器（转发失败的写入加入队列或被保存后在调用线程中回调）
+     */
+    public static void addPendingWriteListener(Consumer<Integer> listener) {
+        pendingWriteListeners.add(listener);
+    }
+
+    /**
+     * 转发失败、尚未保存的写入数量
+     */
+    public static int getPendingWriteCount() {
+        synchronized (pendingWrites) {
+            return pendingWrites.size();
+        }
+    }
+
+    /**
+     * 将数据文件写入请求转发给写入实例；失败时加入待写入队列，稍后重试或在本实例接替写入后写入本地
+     * @param fileName 数据文件名（如bangumi.json）
+     * @param json 序列化后的内容
+     * @return 写入实例处理成功返回true
+     */
+    public static boolean forwardWrite(String fileName, byte[] json) {
+        Catalogs.Catalog catalog = Catalogs.current();
+        int count;
+        boolean success;
+        synchronized (pendingWrites) {
+            success = sendWrite(fileName, json);
+            // 同一文件较早的待写入内容已被这次的完整内容取代
+            pendingWrites.remove(catalog.getName() + "/" + fileName);
+            if (!success) {
+                pendingWrites.put(catalog.getName() + "/" + fileName, new PendingWrite(catalog, fileName, json));
+                System.err.println("转发写入失败，已加入待写入队列（共 " + pendingWrites.size()
+                        + " 个文件），将在写入实例恢复或本实例接替写入后保存: " + fileName);
+            }
+            count = pendingWrites.size();
+        }
+        notifyPendingWrites(count);
+        return success;
+    }
+
+    private static boolean sendWrite(String fileName, byte[] json) {
+        return forward(OP_WRITE, out -> {
+            out.writeUTF(fileName);
+            out.writeInt(json.length);
+            out.write(json);
+        });
+    }
+
+    // 跟随期间重新转发待写入的内容，接替写入后直接写入本地
+    private static void flushPendingWrites() {
+        int count;
+        synchronized (pendingWrites) {
+            if (pendingWrites.isEmpty()) {
+                return;
+            }
+            Iterator<PendingWrite> iterator = pendingWrites.values().iterator();
+            while (iterator.hasNext()) {
+                PendingWrite pending = iterator.next();
+                boolean saved = Catalogs.callIn(pending.catalog, () -> {
+                    if (!writer) {
+                        return sendWrite(pending.fileName, pending.json);
+                    }
+                    try {
+                        JsonUtils.writeBangumiListToUserDir(JsonUtils.parsePlainBangumiList(pending.json), pending.fileName);
+                        return true;
+                    } catch (RuntimeException e) {
+                        System.err.println("保存待写入内容失败: " + pending.fileName + ", " + e);
+                        return false;
+                    }
+                });
+                if (saved) {
+                    iterator.remove();
+                    System.out.println("已保存待写入内容: " + pending.catalog.getName() + "/" + pending.fileName);
+                }
+            }
+            count = pendingWrites.size();
+        }
+        notifyPendingWrites(count);
+    }
+
+    private static void notifyPendingWrites(int count) {
+        for (Consumer<Integer> listener : pendingWriteListeners) {
+            listener.accept(count);
+        }
+    }
+
+    /**
+     * 请求写入实例执行拉取
+     * @param force 是否强制用远程内容覆盖本地
+     */
+    public static boolean forwardPull(boolean force) {
+        return forward(force ? OP_FORCE_PULL : OP_PULL, out -> { });
+    }
+
+    /**
+     * 请求写入实例提交并推送
+     */
+    public static boolean forwardPush(String commitMessage) {
+        return forward(OP_PUSH, out -> out.writeUTF(commitMessage));
+    }
+
+    private interface RequestBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static boolean forward(String op, RequestBody body) {
+        File portFile = new File(coordinationDir, PORT_FILE);
+        try {
+            // 端口文件第一行为端口，第二行为令牌
+            String[] lines = new String(Files.readAllBytes(portFile.toPath()), StandardCharsets.UTF_8).trim().split("\\s+");
+            if (lines.length < 2) {
+                throw new IOException("端口文件格式不正确");
+            }
+            int port = Integer.parseInt(lines[0]);
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeUTF(lines[1]);
+                out.writeUTF(op);
+                out.writeUTF(Catalogs.current().getName());
+                out.writeUTF(canonicalPath(Catalogs.current().getDataDir()));
+                body.write(out);
+                out.flush();
+                boolean success = new DataInputStream(socket.getInputStream()).readBoolean();
+                System.out.println("已转发请求到写入实例: " + op + (success ? "" : "（处理失败）"));
+                return success;
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("无法连接写入实例: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // 配置的全部数据目录（规范化后排序）的哈希，作为协调目录名
+    private static String dataDirsKey() {
+        List<String> dataDirs = new ArrayList<>();
+        for (Catalogs.Catalog catalog : Catalogs.all()) {
+            dataDirs.add(canonicalPath(catalog.getDataDir()));
+        }
+        Collections.sort(dataDirs);
+        CRC32 crc = new CRC32();
+        crc.update(String.join("\n", dataDirs).getBytes(StandardCharsets.UTF_8));
+        return String.format("%08x", crc.getValue());
+    }
+
+    private static String canonicalPath(String path) {
+        try {
+            return new File(path).getCanonicalPath();
+        } catch (IOException e) {
+            return new File(path).getAbsolutePath();
+        }
+    }
+
+    private static synchronized boolean tryBecomeWriter() {
+        try {
+            writerLock = lockChannel.tryLock();
+        } catch (IOException | OverlappingFileLockException e) {
+            writerLock = null;
+        }
+        if (writerLock == null) {
+            return false;
+        }
+        try {
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : secret) {
+                hex.append(String.format("%02x", b));
+            }
+            token = hex.toString();
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            writePortFile(serverSocket.getLocalPort() + "\n" + token + "\n");
+        } catch (IOException e) {
+            System.err.println("无法启动实例协调服务，跟随实例将无法转发请求: " + e.getMessage());
+        }
+        writer = true;
+        if (serverSocket != null) {
+            Thread server = new Thread(InstanceCoordinator::serve, "instance-coordinator");
+            server.setDaemon(true);
+            server.start();
+        }
+        System.out.println("本实例成为写入实例");
+        return true;
+    }
+
+    // 先写入只有当前用户可读写的临时文件再原子替换，端口和令牌不会以其他权限出现在磁盘上
+    private static void writePortFile(String content) throws IOException {
+        Path portFile = new File(coordinationDir, PORT_FILE).toPath();
+        Path temp = Files.createTempFile(coordinationDir.toPath(), PORT_FILE, ".tmp");
+        try {
+            restrictToOwner(temp, "rw-------");
+            Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, portFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // 支持POSIX权限时设置权限，否则退回到只允许所有者读写
+    private static void restrictToOwner(Path path, String posixPermissions) {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(posixPermissions));
+        } catch (UnsupportedOperationException | IOException e) {
+            File file = path.toFile();
+            file.setReadable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(false, false);
+            file.setWritable(true, true);
+        }
+    }
+
+    private static void electionLoop() {
+        while (!writer) {
+            try {
+                Thread.sleep(ELECTION_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (tryBecomeWriter()) {
+                // 接替写入后数据目录的状态以磁盘为准
+                for (Catalogs.Catalog catalog : Catalogs.all()) {
+                    Catalogs.callIn(catalog, () -> {
+                        CatalogCache.invalidateAll();
+                        CatalogShards.invalidate();
+                        return null;
+                    });
+                }
+            }
+            flushPendingWrites();
+        }
+    }
+
+    private static void serve() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+                boolean success;
+                try {
+                    success = serveRequest(new DataInputStream(socket.getInputStream()));
+                } catch (RuntimeException e) {
+                    // 单个请求的异常（如无法解析的内容）不能终止服务线程
+                    System.err.println("处理转发请求失败: " + e);
+                    success = false;
+                }
+                new DataOutputStream(socket.getOutputStream()).writeBoolean(success);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("处理转发请求失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static boolean serveRequest(DataInputStream in) throws IOException {
+        byte[] presented = in.readUTF().getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(presented, token.getBytes(StandardCharsets.UTF_8))) {
+            System.err.println("拒绝令牌不正确的转发请求");
+            return false;
+        }
+        String op = in.readUTF();
+        Catalogs.Catalog catalog = Catalogs.find(in.readUTF());
+        String dataDir = in.readUTF();
+        if (catalog == null) {
+            System.err.println("转发请求的目录未在本实例配置: " + op);
+            return false;
+        }
+        if (!canonicalPath(catalog.getDataDir()).equals(dataDir)) {
+            // 同名目录指向不同的数据目录时拒绝，避免写入其他实例的数据
+            System.err.println("转发请求的数据目录与本实例不一致: " + dataDir);
+            return false;
+        }
+        return Catalogs.callIn(catalog, () -> {
+            try {
+                return handle(op, in);
+            } catch (IOException e) {
+                System.err.println("处理转发请求失败: " + e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    // 请求按连接顺序逐个处理，数据文件写入与Git操作都在写入锁内执行
+    private static boolean handle(String op, DataInputStream in) throws IOException {
+        switch (op) {
+            case OP_WRITE: {
+                String fileName = in.readUTF();
+                int length = in.readInt();
+                if (length < 0 || length > MAX_WRITE_BYTES) {
+                    throw new IOException("转发的写入内容长度无效: " + length);
+                }
+                byte[] json = new byte[length];
+                in.readFully(json);
+                if (fileName.contains("/") || fileName.contains("\\")) {
+                    return false;
+                }
+                List<Bangumi> bangumis = JsonUtils.parsePlainBangumiList(json);
+                JsonUtils.writeBangumiListToUserDir(bangumis, fileName);
+                Consumer<String> listener = remoteWriteListener;
+                // 界面只显示活动目录，其他目录的数据在切换时重新读取
+                if (listener != null && Catalogs.current().getName().equals(Catalogs.active().getName())) {
+                    listener.accept(fileName);
+                }
+                return true;
+            }
+            case OP_PULL:
+                return GitUtils.pullChanges();
+            case OP_FORCE_PULL:
+                return GitUtils.forcePullChanges();
+            case OP_PUSH:
+                return GitUtils.pushChanges(in.readUTF());
+            default:
+                System.err.println("未知的转发请求: " + op);
+                return false;
+        }
+    }
+}
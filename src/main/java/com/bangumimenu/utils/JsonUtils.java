@@ -1,9 +1,14 @@
 package com.bangumimenu.utils;
 
+import com.bangumimenu.config.AppConfig;
 import com.bangumimenu.entity.Bangumi;
 import com.google.gson.*;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.lang.reflect.Type;
@@ -18,6 +23,8 @@ import java.util.List;
  */
 public class JsonUtils {
 
+    private static final Logger logger = LoggerFactory.getLogger(JsonUtils.class);
+
     private static final Gson gson = new GsonBuilder()
             .registerTypeAdapter(LocalDateTime.class, new JsonSerializer<LocalDateTime>() {
                 @Override
@@ -44,9 +51,76 @@ public class JsonUtils {
                     }
                 }
             })
+            .registerTypeAdapterFactory(new TypeAdapterFactory() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+                    if (type.getRawType() != Bangumi.class) {
+                        return null;
+                    }
+                    TypeAdapter<Bangumi> delegate = gson.getDelegateAdapter(this, TypeToken.get(Bangumi.class));
+                    return (TypeAdapter<T>) new TypeAdapter<Bangumi>() {
+                        @Override
+                        public void write(JsonWriter out, Bangumi value) throws IOException {
+                            if (value != null) {
+                                value.getWatcher(); // 将想要观看人ID集合回写为逗号分隔的字符串
+                                if (value.getDescriptionLoader() != null) {
+                                    writeWithLazyDescription(out, value, delegate);
+                                    return;
+                                }
+                            }
+                            delegate.write(out, value);
+                        }
+
+                        @Override
+                        public Bangumi read(JsonReader in) throws IOException {
+                            Bangumi bangumi = delegate.read(in);
+                            if (bangumi != null) {
+                                // 每读完一个条目立即合并重复字符串，重复的实例随即成为垃圾，不会在整个列表读完前一直占用堆
+                                internRepeatedFields(bangumi);
+                            }
+                            return bangumi;
+                        }
+                    };
+                }
+            })
             .setPrettyPrinting() // 格式化输出，便于阅读
             .create();
 
+    /**
+     * 序列化简介处于延迟加载状态的条目：简介按原字段顺序写在title之后，
+     * 未读取过的简介按偏移直接从副本复制，不经过简介缓存
+     */
+    private static void writeWithLazyDescription(JsonWriter out, Bangumi value, TypeAdapter<Bangumi> delegate)
+            throws IOException {
+        JsonObject tree = delegate.toJsonTree(value).getAsJsonObject();
+        TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+        out.beginObject();
+        boolean written = false;
+        for (java.util.Map.Entry<String, JsonElement> entry : tree.entrySet()) {
+            if (entry.getKey().equals("description")) {
+                continue;
+            }
+            out.name(entry.getKey());
+            elementAdapter.write(out, entry.getValue());
+            if (entry.getKey().equals("title")) {
+                writeLazyDescription(out, value);
+                written = true;
+            }
+        }
+        if (!written) {
+            writeLazyDescription(out, value);
+        }
+        out.endObject();
+    }
+
+    private static void writeLazyDescription(JsonWriter out, Bangumi value) throws IOException {
+        out.name("description");
+        if (!LazyDescriptions.copyDescription(value.getDescriptionLoader(), out)) {
+            out.value(value.getDescription());
+        }
+    }
+
     /**
      * 从JSON文件读取Bangumi列表
      * @param filePath 文件路径
@@ -54,28 +128,13 @@ public class JsonUtils {
      */
     public static List<Bangumi> readBangumiList(String filePath) {
         try {
-            InputStream inputStream = null;
-            
-            // 首先尝试从用户数据目录读取
-            String userDataPath = GitUtils.getUserDataDir() + "/" + filePath.replaceFirst("^/", "");
-            File userFile = new File(userDataPath);
-            if (userFile.exists()) {
-                inputStream = new FileInputStream(userFile);
-            } else {
-                // 如果用户目录中不存在，则从资源文件读取
-                inputStream = JsonUtils.class.getResourceAsStream(filePath);
-            }
-            
-            if (inputStream != null) {
-                try (InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
-                    Type listType = new TypeToken<List<Bangumi>>(){}.getType();
-                    return gson.fromJson(reader, listType);
-                }
-            } else {
+            List<Bangumi> bangumis = loadBangumiList(filePath);
+            if (bangumis == null) {
                 System.err.println("无法找到文件: " + filePath);
                 // 返回空列表而不是null，以确保程序可以正常启动
                 return new java.util.ArrayList<>();
             }
+            return bangumis;
         } catch (IOException e) {
             e.printStackTrace();
             return new java.util.ArrayList<>();
@@ -85,27 +144,320 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * 重新读取被外部修改的数据文件
+     * 与 {@link #readBangumiList(String)} 不同，文件不存在、读取失败或内容不完整（例如另一进程正在写入）时返回null，
+     * 调用方据此保留内存中的数据，而不是把空列表当作全部删除
+     * @param filePath 文件路径
+     * @return Bangumi对象列表，失败时返回null
+     */
+    public static List<Bangumi> reloadBangumiList(String filePath) {
+        try {
+            return loadBangumiList(filePath);
+        } catch (IOException | JsonParseException e) {
+            System.err.println("重新读取数据文件失败: " + filePath + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<Bangumi> loadBangumiList(String filePath) throws IOException {
+        InputStream inputStream;
+        
+        // 分片存储的目录文件从分片目录并行读取
+        String logicalName = filePath.replaceFirst("^/", "");
+        if (CatalogShards.hasShards(logicalName)) {
+            List<Bangumi> bangumis = CatalogShards.read(logicalName);
+            logStringPoolStats();
+            return bangumis;
+        }
+        
+        // 首先尝试从用户数据目录读取（开启压缩存储时读取.gz文件）
+        String fileName = UserDataSync.getStoredFileName(logicalName);
+        File userFile = new File(GitUtils.getUserDataDir(), fileName);
+        if (userFile.exists() && AppConfig.getBooleanProperty("data.lazy.descriptions", false)) {
+            return readBangumiListWithLazyDescriptions(userFile);
+        } else if (userFile.exists()) {
+            inputStream = UserDataSync.openDataFile(userFile);
+        } else {
+            // 如果用户目录中不存在，则从资源文件读取
+            inputStream = JsonUtils.class.getResourceAsStream(filePath);
+        }
+        
+        if (inputStream == null) {
+            return null;
+        }
+        try (InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+            Type listType = new TypeToken<List<Bangumi>>(){}.getType();
+            List<Bangumi> bangumis = gson.fromJson(reader, listType);
+            if (bangumis == null) {
+                return new java.util.ArrayList<>();
+            }
+            logStringPoolStats();
+            return bangumis;
+        }
+    }
+
+    /**
+     * 逐条流式读取用户数据目录中的目录文件，内存中同时只保留一个条目（用于导出和报表）
+     * 分片存储时依次读取各分片文件，条目按分片顺序而不是目录顺序给出
+     * @param fileName 数据文件名（如bangumi.json）
+     * @param consumer 接收每个条目
+     * @return 读取的条目数
+     */
+    public static long streamBangumiList(String fileName, java.util.function.Consumer<Bangumi> consumer) throws IOException {
+        List<File> files = new java.util.ArrayList<>();
+        if (CatalogShards.hasShards(fileName)) {
+            files.addAll(java.util.Arrays.asList(CatalogShards.listShardFiles(fileName)));
+        } else {
+            File userFile = new File(GitUtils.getUserDataDir(), UserDataSync.getStoredFileName(fileName));
+            if (userFile.exists()) {
+                files.add(userFile);
+            }
+        }
+        TypeAdapter<Bangumi> adapter = gson.getAdapter(Bangumi.class);
+        long count = 0;
+        for (File file : files) {
+            try (JsonReader reader = new JsonReader(new BufferedReader(
+                    new InputStreamReader(UserDataSync.openDataFile(file), StandardCharsets.UTF_8), 65536))) {
+                if (reader.peek() == com.google.gson.stream.JsonToken.NULL) {
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Bangumi bangumi = adapter.read(reader);
+                    if (bangumi != null) {
+                        consumer.accept(bangumi);
+                        count++;
+                    }
+                }
+                reader.endArray();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 把条目写成一行紧凑的JSON（JSON Lines导出）
+     */
+    static void writeJsonLine(Bangumi bangumi, Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        gson.toJson(bangumi, Bangumi.class, writer);
+        writer.flush();
+        out.write('\n');
+    }
+
+    /**
+     * 延迟加载模式读取：简介只记录在副本文件中的偏移，需要显示时再从磁盘读取
+     * @param file 用户数据目录中的数据文件
+     * @return Bangumi对象列表
+     */
+    private static List<Bangumi> readBangumiListWithLazyDescriptions(File file) throws IOException {
+        List<Bangumi> bangumis;
+        try (Reader reader = new BufferedReader(
+                new InputStreamReader(UserDataSync.openDataFile(file), StandardCharsets.UTF_8), 65536)) {
+            bangumis = LazyDescriptions.read(reader, UserDataSync.getLogicalFileName(file.getName()),
+                    bangumiAdapter());
+        }
+        logStringPoolStats();
+        return bangumis;
+    }
+
+    /**
+     * 解析内存中的JSON数组内容，开启简介延迟加载时简介写入副本文件
+     * @param json 数据文件内容（已解压）
+     * @param fileName 数据文件名，用于日志和简介副本命名
+     * @return Bangumi对象列表，内容为空时返回空列表
+     */
+    static List<Bangumi> parseBangumiList(byte[] json, String fileName) throws IOException {
+        if (AppConfig.getBooleanProperty("data.lazy.descriptions", false)) {
+            try (Reader reader = new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8)) {
+                return LazyDescriptions.read(reader, UserDataSync.getLogicalFileName(fileName), bangumiAdapter());
+            }
+        }
+        return parsePlainBangumiList(json);
+    }
+
+    /**
+     * 数据文件格式的番剧条目反序列化器（含字段驻留）
+     */
+    static TypeAdapter<Bangumi> bangumiAdapter() {
+        return gson.getAdapter(Bangumi.class);
+    }
+
+    /**
+     * 解析JSON数组内容，不建立简介延迟加载（用于合并Git历史中的版本）
+     */
+    static List<Bangumi> parsePlainBangumiList(byte[] json) {
+        Type listType = new TypeToken<List<Bangumi>>(){}.getType();
+        List<Bangumi> bangumis = gson.fromJson(
+                new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), listType);
+        return bangumis != null ? bangumis : new java.util.ArrayList<>();
+    }
+
+    /**
+     * 解析字符串数组
+     */
+    static String[] parseStringArray(byte[] json) {
+        String[] values = gson.fromJson(new String(json, StandardCharsets.UTF_8), String[].class);
+        return values != null ? values : new String[0];
+    }
+
+    /**
+     * 按数据文件的格式序列化对象
+     */
+    static byte[] toJsonBytes(Object value) {
+        return gson.toJson(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 合并低基数字段的重复字符串，使相同的编剧、原作、导演、提议人共享同一实例
+     * @param bangumi 刚读取的条目
+     */
+    private static void internRepeatedFields(Bangumi bangumi) {
+        bangumi.setWriter(StringPool.intern(bangumi.getWriter()));
+        bangumi.setOriginal(StringPool.intern(bangumi.getOriginal()));
+        bangumi.setDirector(StringPool.intern(bangumi.getDirector()));
+        bangumi.setProposer(StringPool.intern(bangumi.getProposer()));
+    }
+
+    private static void logStringPoolStats() {
+        if (logger.isDebugEnabled()) {
+            logger.debug(StringPool.getStats());
+        }
+    }
+
     /**
      * 将Bangumi列表写入JSON文件
      * @param bangumis Bangumi对象列表
      * @param filePath 文件路径（绝对路径或相对路径）
      */
     public static void writeBangumiList(List<Bangumi> bangumis, String filePath) {
-        String json = gson.toJson(bangumis);
-        try (OutputStreamWriter writer = new OutputStreamWriter(
-                new FileOutputStream(filePath), StandardCharsets.UTF_8)) {
-            writer.write(json);
+        byte[] json = gson.toJson(bangumis).getBytes(StandardCharsets.UTF_8);
+        String userDataDir = GitUtils.getUserDataDir();
+        boolean inUserDir = filePath.startsWith(userDataDir);
+        String fileName = new File(filePath).getName();
+        
+        if (inUserDir && !InstanceCoordinator.isWriter()) {
+            // 跟随实例不直接写用户数据目录，交给写入实例；记录内容以便忽略随后的文件变化事件
+            CatalogCache.put(fileName, json);
+            if (!InstanceCoordinator.forwardWrite(fileName, json)) {
+                // 内容已进入待写入队列，磁盘上仍是旧内容
+                CatalogCache.invalidate(fileName);
+            }
+            return;
+        }
+        
+        if (inUserDir) {
+            InstanceCoordinator.writeLock().lock();
+            try {
+                writeLocalBangumiList(bangumis, filePath, fileName, json, true);
+            } finally {
+                InstanceCoordinator.writeLock().unlock();
+            }
+        } else {
+            writeLocalBangumiList(bangumis, filePath, fileName, json, false);
+        }
+    }
+    
+    private static void writeLocalBangumiList(List<Bangumi> bangumis, String filePath, String fileName,
+                                              byte[] json, boolean inUserDir) {
+        if (inUserDir && CatalogShards.isSharded(fileName)) {
+            writeShards(bangumis, fileName, json);
+            return;
+        }
+        
+        // 用户目录中的数据文件在开启压缩存储时以.gz格式保存
+        String storedName = inUserDir ? UserDataSync.getStoredFileName(fileName) : fileName;
+        boolean compressed = UserDataSync.isCompressed(storedName);
+        File file = new File(new File(filePath).getParentFile(), storedName);
+        
+        // 内容与缓存一致且磁盘文件仍是上次写入后的状态（修改时间和长度不变）时跳过写入
+        if (inUserDir && CatalogCache.isUnchanged(fileName, json) && CatalogCache.isWritten(fileName, file)) {
+            return;
+        }
+        
+        // 用新内容替换缓存，压缩格式直接复用缓存中的gzip内容
+        CatalogCache.Payload payload = inUserDir ? CatalogCache.put(fileName, json) : null;
+        try (OutputStream out = new FileOutputStream(file)) {
+            if (compressed) {
+                out.write(payload != null ? payload.getGzip() : CatalogCache.compress(json));
+            } else {
+                out.write(json);
+            }
         } catch (IOException e) {
             e.printStackTrace();
+            if (inUserDir) {
+                CatalogCache.invalidate(fileName);
+            }
+            return;
         }
         
         // 如果写入的是用户目录中的文件，也需要确保同步到项目资源目录（仅在开发环境）
-        String userDataDir = GitUtils.getUserDataDir();
-        if (filePath.startsWith(userDataDir)) {
+        if (inUserDir) {
+            CatalogCache.markWritten(fileName, file);
             // 这是写入用户目录的文件，如果是开发环境，也要同步到项目目录
-            String fileName = new File(filePath).getName();
-            UserDataSync.syncFromUserToProjectFile(fileName);
+            UserDataSync.syncFromUserToProjectFile(storedName);
+        }
+    }
+    
+    /**
+     * 分片写入目录文件：整体内容未变化时直接跳过，否则只重写发生变化的分片
+     */
+    private static void writeShards(List<Bangumi> bangumis, String fileName, byte[] json) {
+        if (CatalogCache.isUnchanged(fileName, json) && CatalogShards.hasShards(fileName)) {
+            return;
+        }
+        CatalogCache.put(fileName, json);
+        try {
+            for (String shardName : CatalogShards.write(bangumis, fileName)) {
+                UserDataSync.syncFromUserToProjectFile(shardName);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            CatalogCache.invalidate(fileName);
+            CatalogShards.invalidate();
+        }
+    }
+    
+    /**
+     * 读取数据文件的已序列化内容（带ETag和gzip缓存），用于目录读取接口
+     * 内容直接取自磁盘上的JSON，不经过反序列化和重新序列化；压缩存储时.gz文件的内容直接作为缓存的gzip结果
+     * @param fileName 数据文件名（相对于用户数据目录，如bangumi.json）
+     * @return 缓存内容，文件不存在、已分片存储或读取失败时返回null
+     */
+    public static CatalogCache.Payload readCatalogPayload(String fileName) {
+        fileName = fileName.replaceFirst("^/", "");
+        CatalogCache.Payload cached = CatalogCache.get(fileName);
+        if (cached != null) {
+            return cached;
+        }
+        
+        File userFile = new File(GitUtils.getUserDataDir(), UserDataSync.getStoredFileName(fileName));
+        if (!userFile.exists()) {
+            return null;
+        }
+        try {
+            byte[] stored = java.nio.file.Files.readAllBytes(userFile.toPath());
+            if (!UserDataSync.isCompressed(userFile.getName())) {
+                return CatalogCache.put(fileName, stored);
+            }
+            try (InputStream in = new java.util.zip.GZIPInputStream(new ByteArrayInputStream(stored))) {
+                return CatalogCache.put(fileName, readFully(in), stored);
+            }
+        } catch (IOException e) {
+            System.err.println("读取数据文件失败: " + userFile + ", " + e.getMessage());
+            return null;
+        }
+    }
+    
+    static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
         }
+        return out.toByteArray();
     }
     
     /**
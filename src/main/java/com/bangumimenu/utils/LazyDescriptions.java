@@ -0,0 +1,324 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.entity.Bangumi;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 番剧简介延迟加载
+ * 以JsonReader单次流式解析数据文件：读到的简介逐条写入临时目录中的简介副本，条目中只保留其在副本中的偏移，
+ * 内存中不会同时持有全部简介；选中条目需要显示简介时再按偏移从磁盘读取，并用一个小的LRU缓存保存最近读取的内容。
+ * 副本只在加载时写入，数据文件之后被重写或被远程拉取覆盖都不会使偏移失效；
+ * 保存时未读取过的简介按偏移直接从副本复制，不经过缓存。
+ * 不再有条目引用的副本在下次加载时删除，退出时删除全部副本
+ */
+public class LazyDescriptions {
+
+    private static final int CACHE_SIZE = 64;
+
+    private static final Map<Position, String> cache = new LinkedHashMap<Position, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Position, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    // 简介副本被回收后（没有条目再引用）由此得知并删除文件
+    private static final ReferenceQueue<Sidecar> releasedSidecars = new ReferenceQueue<>();
+    private static final Set<SidecarReference> liveSidecars = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(LazyDescriptions::deleteAllSidecars, "lazy-descriptions-cleanup"));
+    }
+
+    /**
+     * 一次加载写出的简介副本，所有指向它的 {@link DescriptionRef} 都不可达后文件被删除
+     * 副本在存活期间保持一个只读通道，按偏移读取时不必每次重新打开文件
+     */
+    private static final class Sidecar {
+        private final File file;
+        private final FileChannel channel;
+
+        Sidecar(File file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+
+        byte[] read(Position position) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(position.length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position.offset + buffer.position()) < 0) {
+                    throw new EOFException("简介副本被截断: " + file);
+                }
+            }
+            return buffer.array();
+        }
+    }
+
+    private static final class SidecarReference extends PhantomReference<Sidecar> {
+        private final File file;
+        private final FileChannel channel;
+
+        SidecarReference(Sidecar sidecar) {
+            super(sidecar, releasedSidecars);
+            this.file = sidecar.file;
+            this.channel = sidecar.channel;
+        }
+
+        // 先关闭通道，部分系统上打开中的文件无法删除
+        void delete() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 副本已不再使用
+            }
+            if (!file.delete() && file.exists()) {
+                System.err.println("删除简介副本失败: " + file);
+            }
+        }
+    }
+
+    /**
+     * 简介在副本文件中的位置，也作为缓存的键（不引用副本，缓存不会阻止副本文件被删除）
+     */
+    private static final class Position {
+        private final File file;
+        private final long offset;
+        private final int length;
+
+        Position(File file, long offset, int length) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Position)) {
+                return false;
+            }
+            Position other = (Position) o;
+            return offset == other.offset && length == other.length && file.equals(other.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, offset, length);
+        }
+    }
+
+    /**
+     * 按位置从副本文件读取简介的加载器，持有副本使其在条目存活期间不被删除
+     */
+    private static final class DescriptionRef implements Supplier<String> {
+        private final Sidecar sidecar;
+        private final Position position;
+
+        DescriptionRef(Sidecar sidecar, long offset, int length) {
+            this.sidecar = sidecar;
+            this.position = new Position(sidecar.file, offset, length);
+        }
+
+        @Override
+        public String get() {
+            synchronized (cache) {
+                String cached = cache.get(position);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            String description;
+            try {
+                description = new String(sidecar.read(position), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.err.println("读取简介失败: " + e.getMessage());
+                return null;
+            }
+            synchronized (cache) {
+                cache.put(position, description);
+            }
+            return description;
+        }
+
+        // 保存时使用：已缓存的直接写出，否则按偏移从副本读取后写出，不放入缓存也不挤出最近查看的简介
+        void copyTo(JsonWriter out) throws IOException {
+            String cached;
+            synchronized (cache) {
+                cached = cache.get(position);
+            }
+            out.value(cached != null ? cached : new String(sidecar.read(position), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof DescriptionRef && position.equals(((DescriptionRef) o).position));
+        }
+
+        @Override
+        public int hashCode() {
+            return position.hashCode();
+        }
+    }
+
+    /**
+     * 把延迟加载的简介作为JSON字符串写出，保存数据文件时使用
+     * @param loader 条目的简介加载器
+     * @param out 输出
+     * @return 加载器不是简介副本的加载器时返回false，由调用方自行取值写出
+     */
+    static boolean copyDescription(Supplier<String> loader, JsonWriter out) throws IOException {
+        if (!(loader instanceof DescriptionRef)) {
+            return false;
+        }
+        ((DescriptionRef) loader).copyTo(out);
+        return true;
+    }
+
+    /**
+     * 流式读取番剧列表，简介写入副本文件，条目只保留延迟加载器
+     * 副本文件无法创建或写入时，之后的简介直接保存在条目中
+     * @param in 数据文件内容
+     * @param fileName 数据文件名，用于日志和副本命名
+     * @param adapter 条目的反序列化器
+     * @return 番剧列表，内容为空时返回空列表
+     */
+    static List<Bangumi> read(Reader in, String fileName, TypeAdapter<Bangumi> adapter) throws IOException {
+        deleteReleasedSidecars();
+        List<Bangumi> bangumis = new ArrayList<>();
+        JsonReader reader = new JsonReader(in);
+        try {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return bangumis;
+            }
+        } catch (EOFException e) {
+            // 空文件
+            return bangumis;
+        }
+
+        Sidecar sidecar = null;
+        OutputStream out = null;
+        try {
+            File file = File.createTempFile("bangumi-" + fileName + "-", ".txt");
+            out = new BufferedOutputStream(Files.newOutputStream(file.toPath()), 65536);
+            try {
+                sidecar = new Sidecar(file);
+            } catch (IOException e) {
+                closeQuietly(out);
+                out = null;
+                file.delete();
+                throw e;
+            }
+            liveSidecars.add(new SidecarReference(sidecar));
+        } catch (IOException e) {
+            System.err.println("创建简介副本失败，简介将完整加载: " + e.getMessage());
+        }
+
+        long offset = 0;
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    bangumis.add(null);
+                    continue;
+                }
+                // 简介以外的字段组成一个小的JSON对象交给条目的反序列化器
+                JsonObject fields = new JsonObject();
+                String description = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (name.equals("description") && reader.peek() == JsonToken.STRING) {
+                        description = reader.nextString();
+                    } else {
+                        fields.add(name, JsonParser.parseReader(reader));
+                    }
+                }
+                reader.endObject();
+                Bangumi bangumi = adapter.fromJsonTree(fields);
+                if (description != null) {
+                    if (out != null) {
+                        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+                        try {
+                            out.write(bytes);
+                            bangumi.setDescriptionLoader(new DescriptionRef(sidecar, offset, bytes.length));
+                            offset += bytes.length;
+                        } catch (IOException e) {
+                            System.err.println("写入简介副本失败，其余简介将完整加载: " + e.getMessage());
+                            closeQuietly(out);
+                            out = null;
+                            bangumi.setDescription(description);
+                        }
+                    } else {
+                        bangumi.setDescription(description);
+                    }
+                }
+                bangumis.add(bangumi);
+            }
+            reader.endArray();
+        } finally {
+            if (out != null) {
+                // 加载器读取前副本内容必须已经落盘
+                out.close();
+            }
+        }
+        return bangumis;
+    }
+
+    // 删除已没有条目引用的简介副本
+    private static void deleteReleasedSidecars() {
+        Reference<? extends Sidecar> released;
+        while ((released = releasedSidecars.poll()) != null) {
+            SidecarReference reference = (SidecarReference) released;
+            liveSidecars.remove(reference);
+            reference.delete();
+        }
+    }
+
+    // 退出时删除全部副本
+    private static void deleteAllSidecars() {
+        for (SidecarReference reference : liveSidecars) {
+            reference.delete();
+        }
+        liveSidecars.clear();
+    }
+
+    private static void closeQuietly(OutputStream out) {
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // 副本已不再使用
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.bangumimenu.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 字符串去重池
+ * 用于加载时合并编剧、原作、导演、提议人等取值重复度高的字段，使相同内容只保留一个String实例
+ */
+public class StringPool {
+
+    // 池容量上限，防止高基数字段意外撑大池
+    private static final int MAX_SIZE = 65536;
+    // 估算的String对象开销：对象头+字段+char[]/byte[]数组头
+    private static final int STRING_OVERHEAD_BYTES = 40;
+    // Java 9起只含Latin-1字符的字符串以每字符1字节保存（紧凑字符串），Java 8始终每字符2字节
+    private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version", "1.8").startsWith("1.");
+
+    private static final Map<String, String> pool = new ConcurrentHashMap<>();
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * 返回池中与给定字符串内容相同的实例，池中不存在时放入
+     * @param value 字符串
+     * @return 池中的共享实例，null原样返回
+     */
+    public static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = pool.get(value);
+        if (pooled != null) {
+            if (pooled != value) {
+                hits.increment();
+                bytesSaved.add(estimateSize(value));
+            }
+            return pooled;
+        }
+        misses.increment();
+        if (pool.size() >= MAX_SIZE) {
+            return value;
+        }
+        pooled = pool.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+
+    /**
+     * 估算一个String实例占用的堆内存字节数
+     */
+    static long estimateSize(String value) {
+        return STRING_OVERHEAD_BYTES + (long) value.length() * (COMPACT_STRINGS && isLatin1(value) ? 1 : 2);
+    }
+
+    private static boolean isLatin1(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 命中率（0~1）
+     */
+    public static double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * 估算节省的堆内存字节数
+     */
+    public static long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * 池中不同字符串的数量
+     */
+    public static int size() {
+        return pool.size();
+    }
+
+    /**
+     * 统计信息摘要
+     */
+    public static String getStats() {
+        return String.format("字符串池: %d个不同值, 命中率 %.1f%%, 约节省 %d 字节",
+                size(), getHitRate() * 100, getBytesSaved());
+    }
+
+    /**
+     * 清空池和统计信息
+     */
+    public static void clear() {
+        pool.clear();
+        hits.reset();
+        misses.reset();
+        bytesSaved.reset();
+    }
+}
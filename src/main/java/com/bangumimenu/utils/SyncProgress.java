@@ -0,0 +1,215 @@
+package com.bangumimenu.utils;
+
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 同步进度与取消
+ * 实现JGit的ProgressMonitor，把fetch、pull、push过程中的任务名和对象数转发给界面，
+ * 界面点击取消后JGit在下一次检查时中止网络操作。进度对象通过 {@link #run} 绑定到执行同步的线程，
+ * GitUtils等在创建Git命令时用 {@link #monitor()} 取得；同步结束后按阶段（协商、接收对象、解析增量、检出文件等）输出耗时
+ */
+public class SyncProgress implements ProgressMonitor {
+
+    /**
+     * 进度监听器（在同步线程中回调）
+     */
+    public interface Listener {
+        /**
+         * @param task 当前任务名
+         * @param completed 已完成的数量（对象数）
+         * @param total 总数量，未知时为 {@link ProgressMonitor#UNKNOWN}
+         */
+        void onProgress(String task, int completed, int total);
+    }
+
+    private static final ThreadLocal<SyncProgress> current = new ThreadLocal<>();
+    // JGit每处理一个对象都会调用update，限制通知界面的频率
+    private static final long NOTIFY_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // JGit任务名对应的阶段名称
+    private static final Map<String, String> PHASE_NAMES = new HashMap<>();
+
+    static {
+        PHASE_NAMES.put("Finding sources", "查找对象");
+        PHASE_NAMES.put("Counting objects", "统计对象");
+        PHASE_NAMES.put("Compressing objects", "压缩对象");
+        PHASE_NAMES.put("Writing objects", "发送对象");
+        PHASE_NAMES.put("Receiving objects", "接收对象");
+        PHASE_NAMES.put("Resolving deltas", "解析增量");
+        PHASE_NAMES.put("Updating references", "更新引用");
+        PHASE_NAMES.put("Checking out files", "检出文件");
+    }
+
+    private final String operation;
+    private final Listener listener;
+    private final long startedAt = System.nanoTime();
+    // 各阶段累计耗时（纳秒）和处理的对象数，按首次出现的顺序
+    private final Map<String, long[]> phases = new LinkedHashMap<>();
+    private volatile boolean cancelled;
+
+    private String task;
+    private int total;
+    private int completed;
+    private long taskStartedAt;
+    private long remoteStartedAt;
+    private long taskNanosInRemoteCall;
+    private long lastNotifiedAt;
+
+    /**
+     * @param operation 操作名称，用于日志
+     * @param listener 进度监听器，可以为null
+     */
+    public SyncProgress(String operation, Listener listener) {
+        this.operation = operation;
+        this.listener = listener;
+    }
+
+    /**
+     * 在绑定了该进度对象的上下文中执行同步操作，结束后输出各阶段耗时
+     */
+    public <T> T run(Supplier<T> action) {
+        SyncProgress previous = current.get();
+        current.set(this);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                current.set(previous);
+            } else {
+                current.remove();
+            }
+            System.out.println(getTimings());
+        }
+    }
+
+    /**
+     * 当前线程上用于JGit命令的进度监视器，没有绑定进度对象时返回不做任何事的监视器
+     */
+    public static ProgressMonitor monitor() {
+        SyncProgress progress = current.get();
+        return progress != null ? progress : NullProgressMonitor.INSTANCE;
+    }
+
+    /**
+     * 当前线程上的同步是否已被取消
+     */
+    public static boolean isCurrentCancelled() {
+        SyncProgress progress = current.get();
+        return progress != null && progress.isCancelled();
+    }
+
+    /**
+     * 请求取消同步（在界面线程中调用），正在进行的网络操作会在JGit下一次检查时中止
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 一次远程调用开始（由GitRemoteGuard调用），用于统计协商耗时
+     */
+    static void remoteCallStarted() {
+        SyncProgress progress = current.get();
+        if (progress != null) {
+            synchronized (progress) {
+                progress.remoteStartedAt = System.nanoTime();
+                progress.taskNanosInRemoteCall = 0;
+            }
+        }
+    }
+
+    /**
+     * 一次远程调用结束：调用期间不属于任何任务的时间计为连接与协商
+     */
+    static void remoteCallFinished() {
+        SyncProgress progress = current.get();
+        if (progress != null) {
+            synchronized (progress) {
+                progress.endTask();
+                long elapsed = System.nanoTime() - progress.remoteStartedAt;
+                progress.addPhase("连接与协商", Math.max(0, elapsed - progress.taskNanosInRemoteCall), 0);
+            }
+        }
+    }
+
+    @Override
+    public void start(int totalTasks) {
+    }
+
+    @Override
+    public synchronized void beginTask(String title, int totalWork) {
+        endTask();
+        task = title;
+        total = totalWork;
+        completed = 0;
+        taskStartedAt = System.nanoTime();
+        notifyListener(true);
+    }
+
+    @Override
+    public synchronized void update(int delta) {
+        completed += delta;
+        notifyListener(completed == total);
+    }
+
+    @Override
+    public synchronized void endTask() {
+        if (task == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - taskStartedAt;
+        taskNanosInRemoteCall += elapsed;
+        addPhase(PHASE_NAMES.getOrDefault(task, task), elapsed, completed);
+        task = null;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 各阶段耗时摘要，远程调用以外的时间计为本地处理
+     */
+    public synchronized String getTimings() {
+        long totalNanos = System.nanoTime() - startedAt;
+        long remoteNanos = 0;
+        StringBuilder sb = new StringBuilder(operation).append("阶段耗时: ");
+        for (Map.Entry<String, long[]> entry : phases.entrySet()) {
+            long[] phase = entry.getValue();
+            remoteNanos += phase[0];
+            sb.append(entry.getKey()).append(' ').append(TimeUnit.NANOSECONDS.toMillis(phase[0])).append("ms");
+            if (phase[1] > 0) {
+                sb.append('(').append(phase[1]).append("个对象)");
+            }
+            sb.append(", ");
+        }
+        sb.append("本地处理 ").append(TimeUnit.NANOSECONDS.toMillis(Math.max(0, totalNanos - remoteNanos))).append("ms");
+        sb.append(", 总计 ").append(TimeUnit.NANOSECONDS.toMillis(totalNanos)).append("ms");
+        if (cancelled) {
+            sb.append("（已取消）");
+        }
+        return sb.toString();
+    }
+
+    private void addPhase(String name, long nanos, int objects) {
+        long[] phase = phases.computeIfAbsent(name, key -> new long[2]);
+        phase[0] += nanos;
+        phase[1] += objects;
+    }
+
+    private void notifyListener(boolean force) {
+        long now = System.nanoTime();
+        if (listener != null && (force || now - lastNotifiedAt >= NOTIFY_INTERVAL_NANOS)) {
+            lastNotifiedAt = now;
+            listener.onProgress(PHASE_NAMES.getOrDefault(task, task), completed, total);
+        }
+    }
+}
@@ -3,7 +3,31 @@ package com.bangumimenu.utils;
 import com.bangumimenu.config.AppConfig;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 用户数据同步工具类
@@ -12,8 +36,10 @@ import java.nio.file.Files;
 public class UserDataSync {
     
     public static final String USER_NAME = System.getProperty("user.name");
-    private static final String USER_HOME_DIR = System.getProperty("user.home");
-    private static final String APP_DATA_DIR = USER_HOME_DIR + "/.bangumi-menu";
+    private static final String GZIP_SUFFIX = ".gz";
+    
+    // 同步清单：文件绝对路径到最近一次观察到的大小、修改时间和校验值
+    private static final Map<String, FileState> manifest = new ConcurrentHashMap<>();
     
     /**
      * 同步数据文件到用户目录（如果用户目录不存在文件）
@@ -21,27 +47,46 @@ public class UserDataSync {
     public static void initializeUserData() {
         try {
             // 确保用户数据目录存在
-            File appDataDir = new File(APP_DATA_DIR);
+            File appDataDir = new File(getUserDataDir());
             if (!appDataDir.exists()) {
                 appDataDir.mkdirs();
-                System.out.println("创建用户数据目录: " + APP_DATA_DIR);
+                System.out.println("创建用户数据目录: " + getUserDataDir());
             }
             
             // 获取配置中定义的数据文件列表
-            String[] dataFiles = AppConfig.getProperty("git.data.files", "bangumi.json,current_bangumi.json").split(",");
+            String[] dataFiles = getDataFiles();
             
             for (String fileName : dataFiles) {
                 fileName = fileName.trim();
                 if (!fileName.isEmpty()) {
                     // 检查用户目录中是否已存在该文件
-                    File userFile = new File(APP_DATA_DIR, fileName);
+                    File userFile = new File(getUserDataDir(), fileName);
                     if (!userFile.exists()) {
+                        String logicalName = getLogicalFileName(fileName);
+                        if (CatalogShards.hasShards(logicalName)) {
+                            // 已迁移为分片存储，不再恢复单个目录文件
+                            continue;
+                        }
+                        File plainFile = new File(getUserDataDir(), logicalName);
+                        if (isCompressed(fileName) && plainFile.exists()) {
+                            // 开启压缩存储后，将已有的未压缩文件迁移为压缩格式
+                            try (InputStream in = Files.newInputStream(plainFile.toPath())) {
+                                writeCompressed(in, userFile);
+                            }
+                            System.out.println("已将数据文件转换为压缩格式: " + fileName);
+                            continue;
+                        }
                         // 如果用户目录中不存在该文件，则从资源文件复制
-                        java.io.InputStream resourceStream = UserDataSync.class.getResourceAsStream("/" + fileName);
-                        if (resourceStream != null) {
-                            Files.copy(resourceStream, userFile.toPath(), 
-                                java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                            System.out.println("已复制初始数据文件到用户目录: " + fileName);
+                        try (InputStream resourceStream = UserDataSync.class.getResourceAsStream("/" + logicalName)) {
+                            if (resourceStream != null) {
+                                if (isCompressed(fileName)) {
+                                    writeCompressed(resourceStream, userFile);
+                                } else {
+                                    Files.copy(resourceStream, userFile.toPath(),
+                                        java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+                                }
+                                System.out.println("已复制初始数据文件到用户目录: " + fileName);
+                            }
                         }
                     }
                 }
@@ -58,14 +103,14 @@ public class UserDataSync {
      */
     public static void syncFromUserToProject() {
         try {
-            String[] dataFiles = AppConfig.getProperty("git.data.files", "bangumi.json,current_bangumi.json").split(",");
+            String[] dataFiles = getDataFiles();
             
-            for (String fileName : dataFiles) {
+            forEachDataFile(dataFiles, fileName -> {
                 fileName = fileName.trim();
                 if (!fileName.isEmpty()) {
                     syncFromUserToProjectFile(fileName);
                 }
-            }
+            });
         } catch (Exception e) {
             System.err.println("从用户目录同步到项目目录失败: " + e.getMessage());
             e.printStackTrace();
@@ -78,7 +123,7 @@ public class UserDataSync {
     public static void syncFromUserToProjectFile(String fileName) {
         try {
             // 从用户数据目录复制到项目资源目录
-            File userFile = new File(APP_DATA_DIR, fileName);
+            File userFile = new File(getUserDataDir(), fileName);
             if (userFile.exists()) {
                 // 获取项目资源目录路径 - 仅在开发环境下才同步到项目目录
                 // 在JAR运行时，不创建src/main/resources目录
@@ -93,9 +138,9 @@ public class UserDataSync {
                     
                     // 检查文件是否允许同步（仅限JSON文件）
                     if (isValidSyncFile(fileName)) {
-                        Files.copy(userFile.toPath(), destFile.toPath(),
-                            java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                        System.out.println("已同步文件到项目目录: " + fileName);
+                        if (copyIfChanged(userFile, destFile)) {
+                            System.out.println("已同步文件到项目目录: " + fileName);
+                        }
                     } else {
                         System.err.println("不允许同步非JSON文件: " + fileName);
                     }
@@ -131,9 +176,9 @@ public class UserDataSync {
      */
     public static void syncFromProjectToUser() {
         try {
-            String[] dataFiles = AppConfig.getProperty("git.data.files", "bangumi.json,current_bangumi.json").split(",");
+            String[] dataFiles = getDataFiles();
             
-            for (String fileName : dataFiles) {
+            forEachDataFile(dataFiles, fileName -> {
                 fileName = fileName.trim();
                 if (!fileName.isEmpty()) {
                     // 从项目资源目录复制到用户数据目录
@@ -141,7 +186,7 @@ public class UserDataSync {
                     if (projectResourcesPath != null) {
                         File sourceFile = new File(projectResourcesPath, fileName);
                         if (sourceFile.exists()) {
-                            File destFile = new File(APP_DATA_DIR, fileName);
+                            File destFile = new File(getUserDataDir(), fileName);
                             
                             // 确保目标目录存在
                             if (!destFile.getParentFile().exists()) {
@@ -150,34 +195,305 @@ public class UserDataSync {
                             
                             // 检查文件是否允许同步（仅限JSON文件）
                             if (isValidSyncFile(fileName)) {
-                                Files.copy(sourceFile.toPath(), destFile.toPath(),
-                                    java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                                System.out.println("已同步文件从项目目录: " + fileName);
+                                try {
+                                    if (copyIfChanged(sourceFile, destFile)) {
+                                        System.out.println("已同步文件从项目目录: " + fileName);
+                                    }
+                                } catch (IOException e) {
+                                    System.err.println("同步文件失败: " + fileName + ", " + e.getMessage());
+                                }
                             } else {
                                 System.err.println("不允许同步非JSON文件: " + fileName);
                             }
                         }
                     }
                 }
-            }
+            });
         } catch (Exception e) {
             System.err.println("从项目目录同步到用户目录失败: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
+    /**
+     * 文件状态记录（大小、修改时间、内容的SHA-256摘要）
+     */
+    private static class FileState {
+        final long size;
+        final long lastModified;
+        final byte[] digest;
+        
+        FileState(long size, long lastModified, byte[] digest) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+    }
+    
+    /**
+     * 逐个（或在开启data.sync.parallel时并行）处理数据文件
+     */
+    private static void forEachDataFile(String[] dataFiles, Consumer<String> action) {
+        if (dataFiles.length > 1 && AppConfig.getBooleanProperty("data.sync.parallel", false)) {
+            // 并行线程不继承调用线程的目录上下文，显式传递
+            Catalogs.Catalog catalog = Catalogs.current();
+            Arrays.stream(dataFiles).parallel().forEach(fileName -> Catalogs.callIn(catalog, () -> {
+                action.accept(fileName);
+                return null;
+            }));
+        } else {
+            for (String fileName : dataFiles) {
+                action.accept(fileName);
+            }
+        }
+    }
+    
+    /**
+     * 仅在内容不同时复制文件，复制使用FileChannel.transferTo在内核中完成
+     * @return 实际发生复制时返回true，内容相同跳过时返回false
+     */
+    private static boolean copyIfChanged(File source, File dest) throws IOException {
+        FileState sourceState = stateOf(source);
+        if (dest.exists()) {
+            FileState destState = stateOf(dest);
+            if (destState.size == sourceState.size && MessageDigest.isEqual(destState.digest, sourceState.digest)) {
+                return false;
+            }
+        }
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.WRITE,
+                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+        manifest.put(dest.getAbsolutePath(), new FileState(dest.length(), lastModifiedNanos(dest), sourceState.digest));
+        return true;
+    }
+    
+    /**
+     * 获取文件状态，大小和修改时间与清单中的记录一致时直接复用已计算的摘要
+     */
+    private static FileState stateOf(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        long size = file.length();
+        long lastModified = lastModifiedNanos(file);
+        FileState cached = manifest.get(key);
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            return cached;
+        }
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        FileState state = new FileState(size, lastModified, digest.digest());
+        manifest.put(key, state);
+        return state;
+    }
+    
+    /**
+     * 内容的SHA-256摘要，用于判断两份内容是否相同（CRC32的碰撞足以让不同内容被当作相同而跳过写入）
+     */
+    static byte[] digestOf(byte[] content) {
+        return newDigest().digest(content);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // 每个Java平台都必须提供SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    // 使用文件系统提供的最高精度修改时间，避免同一毫秒内的两次写入被误判为未变化
+    private static long lastModifiedNanos(File file) throws IOException {
+        return Files.getLastModifiedTime(file.toPath()).to(TimeUnit.NANOSECONDS);
+    }
+    
     /**
      * 验证文件是否允许同步（仅允许JSON文件）
      */
     private static boolean isValidSyncFile(String fileName) {
-        // 仅允许同步bangumi.json和settings.json文件，根据项目规范
-        return fileName.equals("bangumi.json") || fileName.equals("current_bangumi.json") || fileName.equals("settings.json");
+        // 仅允许同步bangumi.json和settings.json文件（及其压缩格式），根据项目规范
+        fileName = getLogicalFileName(fileName);
+        return fileName.equals("bangumi.json") || fileName.equals("current_bangumi.json") || fileName.equals("settings.json")
+            || CatalogShards.isShardFile(fileName);
+    }
+    
+    /**
+     * 是否开启压缩存储（数据文件以.json.gz格式保存和同步）
+     */
+    public static boolean isCompressionEnabled() {
+        return AppConfig.getBooleanProperty("data.compress", false);
+    }
+    
+    /**
+     * 获取数据文件在磁盘和Git仓库中的实际文件名，开启压缩存储时为 xxx.json.gz
+     * @param fileName 数据文件名（如bangumi.json）
+     */
+    public static String getStoredFileName(String fileName) {
+        if (isCompressionEnabled() && !isCompressed(fileName)) {
+            return fileName + GZIP_SUFFIX;
+        }
+        return fileName;
+    }
+    
+    /**
+     * 获取去掉压缩后缀的数据文件名
+     */
+    public static String getLogicalFileName(String fileName) {
+        return isCompressed(fileName) ? fileName.substring(0, fileName.length() - GZIP_SUFFIX.length()) : fileName;
+    }
+    
+    /**
+     * 另一种存储格式的文件名（压缩与未压缩互换），如bangumi.json与bangumi.json.gz
+     */
+    public static String getAlternateFileName(String fileName) {
+        return isCompressed(fileName) ? getLogicalFileName(fileName) : fileName + GZIP_SUFFIX;
+    }
+    
+    /**
+     * 判断是否为压缩格式的文件名
+     */
+    public static boolean isCompressed(String fileName) {
+        return fileName.endsWith(GZIP_SUFFIX);
+    }
+    
+    /**
+     * 获取需要同步的数据文件列表（实际存储的文件名，相对于用户数据目录）
+     * git.data.files中的条目可以是文件名、目录（如bangumi/）或通配符（如bangumi/shard-*.json），
+     * 目录和通配符按用户数据目录中已存在的文件展开
+     */
+    public static String[] getDataFiles() {
+        return getDataFiles(Collections.emptyList());
+    }
+    
+    /**
+     * 获取需要同步的数据文件列表，目录和通配符同时按给定的远程文件展开（拉取时使用，远程新增的分片也会被拉取）
+     * @param remotePaths 远程分支中的文件路径（相对于仓库根目录）
+     */
+    public static String[] getDataFiles(Collection<String> remotePaths) {
+        List<String> dataFiles = new ArrayList<>();
+        for (String entry : getConfiguredDataFiles()) {
+            if (isPattern(entry)) {
+                expandPattern(entry, remotePaths, dataFiles);
+            } else {
+                dataFiles.add(getStoredFileName(entry));
+            }
+        }
+        return dataFiles.toArray(new String[0]);
+    }
+    
+    /**
+     * 获取数据文件名（不含压缩后缀）：git.data.files中直接列出的文件，以及分片存储的目录文件
+     */
+    public static Set<String> getLogicalDataFiles() {
+        Set<String> fileNames = new LinkedHashSet<>();
+        for (String entry : getConfiguredDataFiles()) {
+            if (!isPattern(entry)) {
+                fileNames.add(getLogicalFileName(entry));
+            }
+        }
+        if (CatalogShards.getShardCount() > 0) {
+            fileNames.addAll(AppConfig.getListProperty("data.shard.files", "bangumi.json"));
+        }
+        return fileNames;
+    }
+    
+    /**
+     * 获取git.data.files中以目录或通配符方式配置的条目所在目录，用于在Git中暂存被删除的文件
+     */
+    public static String[] getDataDirectories() {
+        List<String> directories = new ArrayList<>();
+        for (String entry : getConfiguredDataFiles()) {
+            if (isPattern(entry)) {
+                String dir = patternBaseDir(entry);
+                if (!dir.isEmpty() && !directories.contains(dir)) {
+                    directories.add(dir);
+                }
+            }
+        }
+        return directories.toArray(new String[0]);
+    }
+    
+    private static List<String> getConfiguredDataFiles() {
+        return Catalogs.current().getGitSettings().getDataFiles();
+    }
+    
+    private static boolean isPattern(String entry) {
+        return entry.endsWith("/") || entry.indexOf('*') >= 0 || entry.indexOf('?') >= 0
+            || new File(getUserDataDir(), entry).isDirectory();
+    }
+    
+    // 通配符之前的目录部分，如 bangumi/shard-*.json 对应 bangumi
+    private static String patternBaseDir(String entry) {
+        int wildcard = entry.length();
+        for (int i = 0; i < entry.length(); i++) {
+            char c = entry.charAt(i);
+            if (c == '*' || c == '?') {
+                wildcard = i;
+                break;
+            }
+        }
+        int slash = entry.lastIndexOf('/', wildcard - 1);
+        return slash > 0 ? entry.substring(0, slash) : (wildcard == entry.length() ? entry : "");
+    }
+    
+    private static void expandPattern(String entry, Collection<String> remotePaths, List<String> dataFiles) {
+        String glob = entry.indexOf('*') >= 0 || entry.indexOf('?') >= 0
+            ? entry
+            : entry.replaceFirst("/*$", "") + "/*";
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        String baseDir = patternBaseDir(entry);
+        File dir = baseDir.isEmpty() ? new File(getUserDataDir()) : new File(getUserDataDir(), baseDir);
+        File[] files = dir.listFiles(File::isFile);
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                String relative = baseDir.isEmpty() ? file.getName() : baseDir + "/" + file.getName();
+                if (matcher.matches(Paths.get(relative)) && !dataFiles.contains(relative)) {
+                    dataFiles.add(relative);
+                }
+            }
+        }
+        for (String remotePath : remotePaths) {
+            if (matcher.matches(Paths.get(remotePath)) && !dataFiles.contains(remotePath)) {
+                dataFiles.add(remotePath);
+            }
+        }
+    }
+    
+    /**
+     * 打开数据文件的输入流，压缩格式的文件会自动解压
+     */
+    public static InputStream openDataFile(File file) throws IOException {
+        InputStream in = Files.newInputStream(file.toPath());
+        return isCompressed(file.getName()) ? new GZIPInputStream(in, 8192) : in;
+    }
+    
+    private static void writeCompressed(InputStream in, File target) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(target.toPath()), 8192)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
     }
     
     /**
-     * 获取用户数据目录路径
+     * 获取当前目录（见 {@link Catalogs#current()}）的用户数据目录路径
      */
     public static String getUserDataDir() {
-        return APP_DATA_DIR;
+        return Catalogs.current().getDataDir();
     }
 }
\ No newline at end of file
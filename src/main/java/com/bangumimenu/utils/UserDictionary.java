@@ -0,0 +1,78 @@
+package com.bangumimenu.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 用户字典
+ * 为目录中出现的用户名分配紧凑的整数ID，番剧的想要观看人以ID集合的形式保存，成员判断为O(1)。
+ * 每个目录（见 {@link Catalogs}）有自己的字典，ID只在所属目录内有意义
+ */
+public class UserDictionary {
+
+    private static final Map<String, UserDictionary> byCatalog = new ConcurrentHashMap<>();
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * 获取当前目录（见 {@link Catalogs#current()}）的用户字典
+     */
+    public static UserDictionary current() {
+        return forCatalog(Catalogs.current().getName());
+    }
+
+    /**
+     * 获取指定目录的用户字典
+     * @param catalogName 目录名
+     */
+    public static UserDictionary forCatalog(String catalogName) {
+        return byCatalog.computeIfAbsent(catalogName, name -> new UserDictionary());
+    }
+
+    /**
+     * 获取用户名对应的ID，不存在时分配新ID
+     */
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (names) {
+            id = ids.get(name);
+            if (id == null) {
+                id = names.size();
+                names.add(name);
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * 查找用户名对应的ID，不分配新ID
+     * @return ID，不存在时返回-1
+     */
+    public int lookup(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * 获取ID对应的用户名
+     */
+    public String nameOf(int id) {
+        synchronized (names) {
+            return names.get(id);
+        }
+    }
+
+    /**
+     * 字典中的用户数
+     */
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,72 @@
+package com.bangumimenu.entity;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 想要观看人判断基准：按ID集合判断与每次拆分逗号分隔字符串判断的耗时对比
+ * 不在默认的 mvn test 中运行，使用 mvn test -Dtest=BangumiWatcherBenchmark 运行
+ */
+public class BangumiWatcherBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(BangumiWatcherBenchmark.class);
+
+    @Test
+    public void idSetVersusSplitting() {
+        List<Bangumi> bangumis = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder watchers = new StringBuilder();
+            for (int u = 0; u < 20; u++) {
+                if (u > 0) {
+                    watchers.append(',');
+                }
+                watchers.append("用户").append((i + u * 7) % 200);
+            }
+            Bangumi bangumi = new Bangumi();
+            bangumi.setWatcher(watchers.toString());
+            bangumis.add(bangumi);
+        }
+
+        // 首次访问时解析为ID集合，只发生一次，不计入比较
+        for (Bangumi bangumi : bangumis) {
+            bangumi.getWatcherCount();
+        }
+
+        long start = System.nanoTime();
+        long found = 0;
+        for (int round = 0; round < 10; round++) {
+            String user = "用户" + (round * 13 % 200);
+            for (Bangumi bangumi : bangumis) {
+                if (bangumi.hasWatcher(user)) {
+                    found++;
+                }
+            }
+        }
+        long idNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long scanned = 0;
+        for (int round = 0; round < 10; round++) {
+            String user = "用户" + (round * 13 % 200);
+            for (Bangumi bangumi : bangumis) {
+                for (String name : bangumi.getWatcher().split(",")) {
+                    if (name.equals(user)) {
+                        scanned++;
+                        break;
+                    }
+                }
+            }
+        }
+        long scanNanos = System.nanoTime() - start;
+
+        assertEquals(scanned, found);
+        logger.info(String.format("想要观看人判断 %d 次: ID集合 %.1fms, 拆分字符串 %.1fms",
+                bangumis.size() * 10, idNanos / 1e6, scanNanos / 1e6));
+    }
+}
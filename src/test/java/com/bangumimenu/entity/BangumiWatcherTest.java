@@ -0,0 +1,68 @@
+package com.bangumimenu.entity;
+
+import com.bangumimenu.utils.UserDictionary;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 想要观看人ID集合测试：按目录区分字典、并发复制时状态一致
+ */
+public class BangumiWatcherTest {
+
+    @Test
+    public void dictionariesArePerCatalog() {
+        UserDictionary first = UserDictionary.forCatalog("watcher-test-a");
+        UserDictionary second = UserDictionary.forCatalog("watcher-test-b");
+        first.idOf("甲");
+        first.idOf("乙");
+        assertEquals(0, second.idOf("乙"));
+        assertEquals(1, first.lookup("乙"));
+        assertEquals(-1, second.lookup("甲"));
+    }
+
+    @Test
+    public void watchersRoundTrip() {
+        Bangumi bangumi = new Bangumi();
+        bangumi.setWatcher("甲, 乙,甲");
+        assertEquals(2, bangumi.getWatcherCount());
+        assertTrue(bangumi.hasWatcher("乙"));
+        assertFalse(bangumi.addWatcher("甲"));
+        assertTrue(bangumi.addWatcher("丙"));
+        assertEquals("甲,乙,丙", bangumi.getWatcher());
+        assertEquals("甲,乙,丙", new Bangumi(bangumi).getWatcher());
+    }
+
+    @Test
+    public void copiesSeeConsistentWatchersWhileAdding() throws Exception {
+        Bangumi bangumi = new Bangumi();
+        bangumi.setTitle("番剧");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> writer = executor.submit(() -> {
+            for (int i = 0; i < 20000; i++) {
+                bangumi.addWatcher("user" + i);
+            }
+        });
+        Future<?> reader = executor.submit(() -> {
+            int previous = 0;
+            while (!writer.isDone()) {
+                String watchers = new Bangumi(bangumi).getWatcher();
+                int count = watchers == null || watchers.isEmpty() ? 0 : watchers.split(",").length;
+                assertTrue("复制时想要观看人减少", count >= previous);
+                previous = count;
+            }
+        });
+        writer.get(60, TimeUnit.SECONDS);
+        reader.get(60, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertEquals(20000, bangumi.getWatcherCount());
+        assertEquals(20000, new Bangumi(bangumi).getWatcherCount());
+    }
+}
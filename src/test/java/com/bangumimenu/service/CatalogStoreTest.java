@@ -0,0 +1,133 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 快照发布测试：按记录顺序应用变更，结果与直接修改列表一致，增量派生的列式视图与全量构建的一致，切换回目录时重新发布的快照沿用已构建的视图
+ */
+public class CatalogStoreTest {
+
+    @Test
+    public void batchAppliesChangesInOrder() {
+        ChangeFeed feed = new ChangeFeed();
+        CatalogStore store = new CatalogStore(feed);
+        store.publish(Arrays.asList(bangumi("甲", 1), bangumi("乙", 2)));
+
+        feed.recordBatch(Collections.singletonList(bangumi("甲", 5)), Collections.singletonList("甲"));
+
+        CatalogSnapshot snapshot = store.snapshot();
+        assertEquals(1, snapshot.size());
+        assertEquals("乙", snapshot.get(0).getTitle());
+        assertEquals(-1, snapshot.indexOfTitle("甲"));
+        assertNull(snapshot.findByTitle("甲"));
+    }
+
+    @Test
+    public void restoredSnapshotKeepsDerivedViews() {
+        ChangeFeed feed = new ChangeFeed();
+        CatalogStore store = new CatalogStore(feed);
+        CatalogSnapshot first = store.publish(Arrays.asList(bangumi("甲", 1), bangumi("乙", 2)));
+        ColumnarCatalog columns = first.columns();
+        store.publish(Collections.singletonList(bangumi("丙", 3)));
+
+        CatalogSnapshot restored = store.restore(first);
+        assertTrue(restored.getVersion() > first.getVersion());
+        assertEquals("乙", restored.findByTitle("乙").getTitle());
+        assertTrue("切换回目录后应沿用已构建的列式视图", columns == restored.columns());
+    }
+
+    @Test
+    public void randomChangesMatchList() {
+        ChangeFeed feed = new ChangeFeed();
+        CatalogStore store = new CatalogStore(feed);
+        List<Bangumi> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            expected.add(bangumi("番剧" + i, i));
+        }
+        store.publish(expected);
+
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            String title = "番剧" + random.nextInt(300);
+            int votes = random.nextInt(100);
+            int index = indexOf(expected, title);
+            switch (random.nextInt(4)) {
+                case 0:
+                    feed.recordRemoved(title);
+                    if (index != -1) {
+                        expected.remove(index);
+                    }
+                    break;
+                case 1:
+                    // 同一批中先修改后删除
+                    feed.recordBatch(Collections.singletonList(bangumi(title, votes)), Collections.singletonList(title));
+                    if (index != -1) {
+                        expected.remove(index);
+                    }
+                    break;
+                default:
+                    feed.recordUpdated(bangumi(title, votes));
+                    if (index != -1) {
+                        expected.set(index, bangumi(title, votes));
+                    } else {
+                        expected.add(bangumi(title, votes));
+                    }
+                    break;
+            }
+            // 每轮都访问列式视图，使下一批变更从它派生
+            store.snapshot().columns();
+            if (round % 100 == 0) {
+                assertSame(expected, store.snapshot());
+            }
+        }
+        assertSame(expected, store.snapshot());
+    }
+
+    private static void assertSame(List<Bangumi> expected, CatalogSnapshot snapshot) {
+        assertEquals(expected.size(), snapshot.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Bangumi bangumi = snapshot.get(i);
+            assertEquals(expected.get(i).getTitle(), bangumi.getTitle());
+            assertEquals(expected.get(i).getVotes(), bangumi.getVotes());
+            assertEquals(i, snapshot.indexOfTitle(bangumi.getTitle()));
+        }
+        ColumnarCatalog columns = snapshot.columns();
+        ColumnarCatalog rebuilt = ColumnarCatalog.of(snapshot);
+        assertEquals(rebuilt.size(), columns.size());
+        for (int i = 0; i < rebuilt.size(); i++) {
+            assertEquals(rebuilt.title(i), columns.title(i));
+            assertEquals(rebuilt.votes(i), columns.votes(i));
+            assertEquals(rebuilt.isWatched(i), columns.isWatched(i));
+            assertEquals(rebuilt.proposers().valueAt(i), columns.proposers().valueAt(i));
+        }
+    }
+
+    private static int indexOf(List<Bangumi> bangumis, String title) {
+        for (int i = 0; i < bangumis.size(); i++) {
+            if (bangumis.get(i).getTitle().equals(title)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Bangumi bangumi(String title, int votes) {
+        Bangumi bangumi = new Bangumi();
+        bangumi.setTitle(title);
+        bangumi.setVotes(votes);
+        bangumi.setWatched(votes % 3 == 0);
+        bangumi.setProposer("提议人" + votes % 7);
+        return bangumi;
+    }
+}
@@ -0,0 +1,107 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 列式视图基准：100万条目录上按List&lt;Bangumi&gt;逐个访问对象与按列扫描的耗时
+ * （未观看条目的权重求和、按提议人筛选），以及一次投票后全量重建与增量派生列式视图的耗时
+ * 不在默认的 mvn test 中运行，使用 mvn test -Dtest=ColumnarCatalogBenchmark 运行（建议 -Xmx2g）
+ */
+public class ColumnarCatalogBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarCatalogBenchmark.class);
+
+    private static final int ENTRIES = 1000000;
+    private static final int ROUNDS = 20;
+    private static final String[] PROPOSERS = {"甲", "乙", "丙", "丁", "戊", "己", "庚"};
+
+    @Test
+    public void scanListVersusColumns() {
+        List<Bangumi> bangumis = new ArrayList<>(ENTRIES);
+        LocalDateTime watchTime = LocalDateTime.of(2024, 1, 1, 20, 0);
+        for (int i = 0; i < ENTRIES; i++) {
+            Bangumi bangumi = new Bangumi();
+            bangumi.setTitle("番剧" + i);
+            bangumi.setVotes(i % 50);
+            bangumi.setWatched(i % 4 == 0);
+            bangumi.setWatchTime(i % 4 == 0 ? watchTime.plusHours(i) : null);
+            bangumi.setProposer(PROPOSERS[i % PROPOSERS.length]);
+            bangumis.add(bangumi);
+        }
+        // 打乱对象在堆中的访问顺序，接近长期运行后逐条修改过的目录
+        List<Bangumi> shuffled = new ArrayList<>(bangumis);
+        Collections.shuffle(shuffled, new java.util.Random(1));
+        ColumnarCatalog columns = ColumnarCatalog.of(shuffled);
+
+        long listWeight = 0;
+        long listNanos = 0;
+        long columnWeight = 0;
+        long columnNanos = 0;
+        int listMatches = 0;
+        int columnMatches = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (Bangumi bangumi : shuffled) {
+                if (!bangumi.isWatched()) {
+                    listWeight += 1 + bangumi.getVotes();
+                }
+                if ("丙".equals(bangumi.getProposer())) {
+                    listMatches++;
+                }
+            }
+            listNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int code = columns.proposers().codeOf("丙");
+            for (int i = columns.nextUnwatched(0); i != -1; i = columns.nextUnwatched(i + 1)) {
+                columnWeight += 1 + columns.votes(i);
+            }
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.proposers().code(i) == code) {
+                    columnMatches++;
+                }
+            }
+            columnNanos += System.nanoTime() - start;
+        }
+        assertEquals(listWeight, columnWeight);
+        assertEquals(listMatches, columnMatches);
+
+        // 投票之后：全量重建与从上一个快照的视图派生（番剧名索引和列式视图已在之前的读取中构建）
+        ChangeFeed feed = new ChangeFeed();
+        CatalogStore store = new CatalogStore(feed);
+        CatalogSnapshot snapshot = store.publish(shuffled);
+        snapshot.columns();
+        snapshot.findByTitle(shuffled.get(0).getTitle());
+        long rebuildNanos = 0;
+        long deriveNanos = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            ColumnarCatalog rebuilt = ColumnarCatalog.of(store.snapshot());
+            rebuildNanos += System.nanoTime() - start;
+
+            Bangumi voted = new Bangumi(shuffled.get(round * 997));
+            voted.setVotes(voted.getVotes() + 1);
+            start = System.nanoTime();
+            feed.recordUpdated(voted);
+            ColumnarCatalog derived = store.snapshot().columns();
+            deriveNanos += System.nanoTime() - start;
+            assertEquals(rebuilt.size(), derived.size());
+            assertEquals(voted.getVotes(), derived.votes(round * 997));
+            shuffled.set(round * 997, voted);
+        }
+
+        logger.info(String.format("%d 条目录扫描（权重求和+按提议人筛选）: List<Bangumi> %.1f ms/次, 列式 %.1f ms/次; "
+                        + "投票后列式视图: 全量重建 %.1f ms/次, 增量派生（含快照发布） %.1f ms/次",
+                ENTRIES, listNanos / 1e6 / ROUNDS, columnNanos / 1e6 / ROUNDS, rebuildNanos / 1e6 / ROUNDS, deriveNanos / 1e6 / ROUNDS));
+    }
+}
@@ -0,0 +1,70 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 并发投票吞吐量基准：所有线程投同一部番剧（同一分段锁）与各线程投不同番剧时的每秒票数
+ * 不在默认的 mvn test 中运行，使用 mvn test -Dtest=MutationEngineBenchmark 运行
+ */
+public class MutationEngineBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(MutationEngineBenchmark.class);
+
+    private static final int THREADS = 8;
+    private static final int VOTES_PER_THREAD = 200000;
+
+    @Test
+    public void votesPerSecond() throws Exception {
+        measure("同一番剧", 1);
+        measure("不同番剧", THREADS);
+    }
+
+    private static void measure(String label, int shows) throws Exception {
+        MutationEngine engine = new MutationEngine(null);
+        List<Bangumi> bangumis = new ArrayList<>();
+        for (int i = 0; i < shows; i++) {
+            Bangumi bangumi = new Bangumi();
+            bangumi.setTitle("番剧" + i);
+            bangumis.add(bangumi);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            Bangumi bangumi = bangumis.get(t % shows);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int v = 0; v < VOTES_PER_THREAD; v++) {
+                    engine.vote(bangumi, "user-" + thread + "-" + v);
+                }
+                return null;
+            }));
+        }
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        executor.shutdown();
+
+        assertEquals((long) THREADS * VOTES_PER_THREAD, engine.getAcceptedVotes());
+        logger.info(String.format("%d 个线程并发投票（%s）: %d 票, %.0f 票/秒", THREADS, label,
+                engine.getAcceptedVotes(), engine.getAcceptedVotes() * 1e9 / elapsedNanos));
+    }
+}
@@ -0,0 +1,93 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 修改引擎并发压力测试：多个线程同时投票，票数不丢失、同一用户不重复计票
+ */
+public class MutationEngineTest {
+
+    private static final int THREADS = 8;
+    private static final int SHOWS = 16;
+    private static final int USERS_PER_THREAD = 500;
+
+    @Test
+    public void concurrentVotesAreNotLost() throws Exception {
+        MutationEngine engine = new MutationEngine(null);
+        List<Bangumi> shows = new ArrayList<>();
+        for (int i = 0; i < SHOWS; i++) {
+            Bangumi bangumi = new Bangumi();
+            bangumi.setTitle("番剧" + i);
+            shows.add(bangumi);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                // 每个用户给每部番剧投两次，第二次应被拒绝
+                for (int u = 0; u < USERS_PER_THREAD; u++) {
+                    String user = "user-" + thread + "-" + u;
+                    for (Bangumi show : shows) {
+                        engine.vote(show, user);
+                        engine.vote(show, user);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int voters = THREADS * USERS_PER_THREAD;
+        for (Bangumi show : shows) {
+            assertEquals("票数丢失: " + show.getTitle(), voters, show.getVotes());
+            assertTrue(show.hasWatcher("user-0-0"));
+        }
+        assertEquals((long) voters * SHOWS, engine.getAcceptedVotes());
+        assertEquals((long) voters * SHOWS, engine.getDuplicateVotes());
+    }
+
+    @Test
+    public void updateAllSkipsUnchangedEntries() {
+        MutationEngine engine = new MutationEngine(null);
+        Bangumi first = new Bangumi();
+        first.setTitle("甲");
+        Bangumi second = new Bangumi();
+        second.setTitle("乙");
+        second.setWatched(true);
+
+        List<Bangumi> changed = engine.updateAll(java.util.Arrays.asList(first, second), bangumi -> {
+            if (bangumi.isWatched()) {
+                return false;
+            }
+            bangumi.setWatched(true);
+            return true;
+        });
+
+        assertEquals(1, changed.size());
+        assertTrue(first.isWatched());
+        assertTrue(engine.vote(first, "someone"));
+        assertFalse(engine.vote(first, "someone"));
+        assertEquals(1, first.getVotes());
+    }
+}
@@ -0,0 +1,76 @@
+package com.bangumimenu.service;
+
+import com.bangumimenu.entity.Bangumi;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 排行榜基准：10万条目录上每次投票后增量更新排行榜并取前20名，与复制未观看条目后重新排序取前20名的耗时对比
+ * 不在默认的 mvn test 中运行，使用 mvn test -Dtest=VoteLeaderboardBenchmark 运行
+ */
+public class VoteLeaderboardBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteLeaderboardBenchmark.class);
+
+    private static final int ENTRIES = 100000;
+    private static final int VOTES = 2000;
+    private static final int TOP = 20;
+
+    private static final Comparator<Bangumi> RANKING =
+            Comparator.comparingInt(Bangumi::getVotes).reversed().thenComparing(Bangumi::getTitle);
+
+    @Test
+    public void incrementalUpdateVersusResort() {
+        Random random = new Random(1);
+        List<Bangumi> bangumis = new ArrayList<>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            Bangumi bangumi = new Bangumi();
+            bangumi.setTitle("番剧" + i);
+            bangumi.setVotes(random.nextInt(100));
+            bangumi.setWatched(i % 5 == 0);
+            bangumis.add(bangumi);
+        }
+        VoteLeaderboard leaderboard = new VoteLeaderboard(null);
+        leaderboard.rebuild(bangumis);
+
+        long incrementalNanos = 0;
+        long resortNanos = 0;
+        List<VoteLeaderboard.Entry> top = null;
+        List<Bangumi> sorted = null;
+        for (int i = 0; i < VOTES; i++) {
+            Bangumi bangumi = bangumis.get(random.nextInt(ENTRIES));
+            bangumi.setVotes(bangumi.getVotes() + 1);
+
+            long start = System.nanoTime();
+            leaderboard.update(bangumi);
+            top = leaderboard.top(TOP);
+            incrementalNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            sorted = new ArrayList<>();
+            for (Bangumi candidate : bangumis) {
+                if (!candidate.isWatched()) {
+                    sorted.add(candidate);
+                }
+            }
+            sorted.sort(RANKING);
+            sorted = sorted.subList(0, TOP);
+            resortNanos += System.nanoTime() - start;
+        }
+        for (int i = 0; i < TOP; i++) {
+            assertEquals(sorted.get(i).getTitle(), top.get(i).getTitle());
+            assertEquals(sorted.get(i).getVotes(), top.get(i).getVotes());
+        }
+
+        logger.info(String.format("%d 条目录每次投票后取前%d名: 增量更新 %.1f µs/次, 复制并重新排序 %.1f µs/次",
+                ENTRIES, TOP, incrementalNanos / 1e3 / VOTES, resortNanos / 1e3 / VOTES));
+    }
+}
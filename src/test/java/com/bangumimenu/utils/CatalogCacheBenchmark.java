@@ -0,0 +1,76 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.entity.Bangumi;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 目录读取基准：每次读取都重新序列化并压缩（无缓存）与从缓存取已压缩内容（含If-None-Match命中）的每秒请求数
+ * 不在默认的 mvn test 中运行，使用 mvn test -Dtest=CatalogCacheBenchmark 运行
+ */
+public class CatalogCacheBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogCacheBenchmark.class);
+
+    private static final String FILE_NAME = "cache-benchmark.json";
+    private static final int ENTRIES = 5000;
+    private static final int UNCACHED_REQUESTS = 50;
+    private static final int CACHED_REQUESTS = 50000;
+
+    private static TemporaryCatalog catalog;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        catalog = TemporaryCatalog.create("cache-benchmark");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        catalog.close();
+    }
+
+    @Test
+    public void cachedVersusUncachedReads() {
+        List<Bangumi> bangumis = CatalogCacheTest.createCatalog(ENTRIES);
+        JsonUtils.writeBangumiListToUserDir(bangumis, FILE_NAME);
+        CatalogCache.Payload payload = JsonUtils.readCatalogPayload(FILE_NAME);
+
+        long start = System.nanoTime();
+        byte[] uncached = null;
+        for (int i = 0; i < UNCACHED_REQUESTS; i++) {
+            uncached = CatalogCache.compress(JsonUtils.toJsonBytes(bangumis));
+        }
+        long uncachedNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long bytes = 0;
+        for (int i = 0; i < CACHED_REQUESTS; i++) {
+            bytes += JsonUtils.readCatalogPayload(FILE_NAME).getGzip().length;
+        }
+        long cachedNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int notModified = 0;
+        for (int i = 0; i < CACHED_REQUESTS; i++) {
+            if (CatalogCache.isNotModified(FILE_NAME, payload.getEtag())) {
+                notModified++;
+            }
+        }
+        long conditionalNanos = System.nanoTime() - start;
+
+        assertArrayEquals(payload.getJson(), JsonUtils.toJsonBytes(bangumis));
+        assertTrue(uncached.length > 0 && bytes > 0);
+        assertTrue(notModified == CACHED_REQUESTS);
+        logger.info(String.format("读取 %d 条的目录（gzip %d 字节）: 无缓存 %.1f 次/秒, 有缓存 %.1f 次/秒, If-None-Match命中 %.1f 次/秒",
+                ENTRIES, payload.getGzip().length, UNCACHED_REQUESTS * 1e9 / uncachedNanos,
+                CACHED_REQUESTS * 1e9 / cachedNanos, CACHED_REQUESTS * 1e9 / conditionalNanos));
+    }
+}
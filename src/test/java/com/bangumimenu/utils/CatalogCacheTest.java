@@ -0,0 +1,112 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.entity.Bangumi;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 目录缓存测试：内容未变化的保存不写盘，被外部改动的文件重新写入，读取按ETag判断是否变化
+ */
+public class CatalogCacheTest {
+
+    private static final String FILE_NAME = "cache-test.json";
+
+    private static TemporaryCatalog catalog;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        catalog = TemporaryCatalog.create("cache-test");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        catalog.close();
+    }
+
+    @Test
+    public void unchangedSaveSkipsWrite() throws Exception {
+        List<Bangumi> bangumis = createCatalog(200);
+        JsonUtils.writeBangumiListToUserDir(bangumis, FILE_NAME);
+        File file = new File(catalog.getDataDir(), FILE_NAME);
+        byte[] written = Files.readAllBytes(file.toPath());
+        long modified = file.lastModified();
+
+        JsonUtils.writeBangumiListToUserDir(bangumis, FILE_NAME);
+        assertEquals("内容未变化时不应重写文件", modified, file.lastModified());
+
+        bangumis.get(0).setVotes(bangumis.get(0).getVotes() + 1);
+        JsonUtils.writeBangumiListToUserDir(bangumis, FILE_NAME);
+        assertFalse("内容变化后应重写文件", Arrays.equals(written, Files.readAllBytes(file.toPath())));
+    }
+
+    @Test
+    public void externallyModifiedFileIsRewritten() throws Exception {
+        List<Bangumi> bangumis = createCatalog(200);
+        JsonUtils.writeBangumiListToUserDir(bangumis, FILE_NAME);
+        File file = new File(catalog.getDataDir(), FILE_NAME);
+        byte[] written = Files.readAllBytes(file.toPath());
+
+        // 长度相同的外部修改也不能被当作未改动
+        byte[] modified = written.clone();
+        int index = new String(modified, "UTF-8").indexOf("\"votes\": 0") + "\"votes\": ".length();
+        modified[index] = '9';
+        Files.write(file.toPath(), modified);
+        assertTrue(file.setLastModified(file.lastModified() - 5000));
+
+        JsonUtils.writeBangumiListToUserDir(bangumis, FILE_NAME);
+        assertArrayEquals(written, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void etagChangesOnlyWithContent() throws Exception {
+        List<Bangumi> bangumis = createCatalog(50);
+        JsonUtils.writeBangumiListToUserDir(bangumis, FILE_NAME);
+        CatalogCache.Payload payload = JsonUtils.readCatalogPayload(FILE_NAME);
+        assertArrayEquals(Files.readAllBytes(new File(catalog.getDataDir(), FILE_NAME).toPath()), payload.getJson());
+        assertTrue(CatalogCache.isNotModified(FILE_NAME, payload.getEtag()));
+        assertTrue(CatalogCache.isNotModified(FILE_NAME, "\"other\", W/" + payload.getEtag()));
+
+        // 重复保存相同内容不改变版本
+        JsonUtils.writeBangumiListToUserDir(bangumis, FILE_NAME);
+        assertSame(payload, JsonUtils.readCatalogPayload(FILE_NAME));
+
+        bangumis.get(1).setVotes(7);
+        JsonUtils.writeBangumiListToUserDir(bangumis, FILE_NAME);
+        CatalogCache.Payload changed = JsonUtils.readCatalogPayload(FILE_NAME);
+        assertTrue(changed.getVersion() > payload.getVersion());
+        assertNotEquals(payload.getEtag(), changed.getEtag());
+        assertFalse(CatalogCache.isNotModified(FILE_NAME, payload.getEtag()));
+
+        // 失效后从磁盘重新读取
+        CatalogCache.invalidate(FILE_NAME);
+        assertArrayEquals(changed.getJson(), JsonUtils.readCatalogPayload(FILE_NAME).getJson());
+        assertNull(JsonUtils.readCatalogPayload("missing.json"));
+    }
+
+    static List<Bangumi> createCatalog(int size) {
+        List<Bangumi> bangumis = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Bangumi bangumi = new Bangumi();
+            bangumi.setTitle("番剧" + i);
+            bangumi.setDescription("简介" + i);
+            bangumi.setProposer("提议人" + (i % 7));
+            bangumis.add(bangumi);
+        }
+        return bangumis;
+    }
+}
@@ -0,0 +1,119 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.config.AppConfig;
+import com.bangumimenu.entity.Bangumi;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分片存储测试：迁移后删除单个目录文件，切换压缩存储后只保留一种格式，通配符按远程文件展开
+ */
+public class CatalogShardsTest {
+
+    private static final String FILE_NAME = "bangumi.json";
+    private static final int SHARDS = 4;
+
+    private static TemporaryCatalog catalog;
+    private static File dataDir;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        catalog = TemporaryCatalog.create("shards-test",
+                "catalog.shards-test.git.data.files", "current_bangumi.json,bangumi/shard-*.json*",
+                "data.shard.count", String.valueOf(SHARDS));
+        dataDir = catalog.getDataDir();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        catalog.close();
+    }
+
+    @After
+    public void cleanUp() {
+        System.clearProperty("data.compress");
+        AppConfig.reload();
+        CatalogShards.invalidate();
+        catalog.clear();
+    }
+
+    @Test
+    public void legacyFileIsRemovedAfterSharding() throws Exception {
+        List<Bangumi> bangumis = createCatalog(20);
+        File legacy = new File(dataDir, FILE_NAME);
+        Files.write(legacy.toPath(), JsonUtils.toJsonBytes(bangumis));
+
+        CatalogShards.write(bangumis, FILE_NAME);
+
+        assertFalse(legacy.exists());
+        assertTrue(CatalogShards.hasShards(FILE_NAME));
+        assertEquals(titles(bangumis), titles(CatalogShards.read(FILE_NAME)));
+    }
+
+    @Test
+    public void switchingCompressionKeepsOneVariant() throws Exception {
+        List<Bangumi> bangumis = createCatalog(20);
+        CatalogShards.write(bangumis, FILE_NAME);
+        assertEquals(SHARDS, CatalogShards.listShardFiles(FILE_NAME).length);
+
+        System.setProperty("data.compress", "true");
+        AppConfig.reload();
+        bangumis.get(0).setDescription("修改后的简介");
+        CatalogShards.write(bangumis, FILE_NAME);
+
+        File[] shardFiles = CatalogShards.listShardFiles(FILE_NAME);
+        assertEquals(SHARDS, shardFiles.length);
+        for (File shardFile : shardFiles) {
+            assertTrue(shardFile.getName(), shardFile.getName().endsWith(".json.gz"));
+        }
+        assertFalse(new File(dataDir, "bangumi/index.json").exists());
+        List<Bangumi> read = CatalogShards.read(FILE_NAME);
+        assertEquals(titles(bangumis), titles(read));
+        assertEquals("修改后的简介", read.get(0).getDescription());
+    }
+
+    @Test
+    public void patternsExpandAgainstRemoteFiles() throws Exception {
+        CatalogShards.write(createCatalog(20), FILE_NAME);
+
+        List<String> dataFiles = Arrays.asList(UserDataSync.getDataFiles(
+                Arrays.asList("bangumi/shard-09.json", "bangumi/shard-01.json", "other.txt")));
+
+        assertTrue(dataFiles.contains("current_bangumi.json"));
+        assertTrue(dataFiles.contains("bangumi/shard-09.json"));
+        assertEquals(1, dataFiles.stream().filter("bangumi/shard-01.json"::equals).count());
+        assertFalse(dataFiles.contains("other.txt"));
+        assertFalse(Arrays.asList(UserDataSync.getDataFiles()).contains("bangumi/shard-09.json"));
+    }
+
+    private static List<Bangumi> createCatalog(int size) {
+        List<Bangumi> bangumis = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Bangumi bangumi = new Bangumi();
+            bangumi.setTitle("番剧" + i);
+            bangumi.setDescription("简介" + i);
+            bangumis.add(bangumi);
+        }
+        return bangumis;
+    }
+
+    private static List<String> titles(List<Bangumi> bangumis) {
+        List<String> titles = new ArrayList<>();
+        for (Bangumi bangumi : bangumis) {
+            titles.add(bangumi.getTitle());
+        }
+        return titles;
+    }
+}
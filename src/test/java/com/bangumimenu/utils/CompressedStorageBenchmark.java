@@ -0,0 +1,95 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.entity.Bangumi;
+import org.eclipse.jgit.api.Git;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 压缩存储基准：同一目录以JSON与.json.gz存储时的文件大小、连续投票提交后Git仓库（即克隆下载）的大小，以及加载耗时
+ * 不在默认的 mvn test 中运行，使用 mvn test -Dtest=CompressedStorageBenchmark 运行
+ */
+public class CompressedStorageBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompressedStorageBenchmark.class);
+
+    private static final String FILE_NAME = "bangumi.json";
+    private static final int ENTRIES = 20000;
+    private static final int COMMITS = 30;
+    private static final int LOADS = 5;
+
+    @Test
+    public void plainVersusCompressed() throws Exception {
+        measure(false);
+        measure(true);
+    }
+
+    private static void measure(boolean compress) throws Exception {
+        try (TemporaryCatalog catalog = TemporaryCatalog.create("compress-" + compress,
+                "data.compress", String.valueOf(compress))) {
+            File dataDir = catalog.getDataDir();
+            List<Bangumi> bangumis = createCatalog();
+            String storedName = UserDataSync.getStoredFileName(FILE_NAME);
+            try (Git git = Git.init().setDirectory(dataDir).call()) {
+                for (int i = 0; i < COMMITS; i++) {
+                    // 每次提交对应一轮投票
+                    for (int j = 0; j < 10; j++) {
+                        Bangumi bangumi = bangumis.get((i * 7919 + j * 104729) % ENTRIES);
+                        bangumi.setVotes(bangumi.getVotes() + 1);
+                    }
+                    JsonUtils.writeBangumiListToUserDir(bangumis, FILE_NAME);
+                    git.add().addFilepattern(storedName).call();
+                    git.commit().setMessage("投票 " + i).call();
+                }
+                git.gc().setAggressive(false).call();
+            }
+            long fileSize = new File(dataDir, storedName).length();
+            long repositorySize = sizeOf(new File(dataDir, ".git/objects"));
+
+            CatalogCache.invalidateAll();
+            long start = System.nanoTime();
+            for (int i = 0; i < LOADS; i++) {
+                assertEquals(ENTRIES, JsonUtils.readBangumiList("/" + FILE_NAME).size());
+            }
+            long loadNanos = System.nanoTime() - start;
+
+            logger.info(String.format("%s 存储 %d 条: 文件 %d 字节, %d 次投票提交后仓库对象 %d 字节, 加载 %.1f ms/次",
+                    compress ? ".json.gz" : "JSON", ENTRIES, fileSize, COMMITS, repositorySize,
+                    loadNanos / 1e6 / LOADS));
+        }
+    }
+
+    private static List<Bangumi> createCatalog() {
+        String[] people = {"新房昭之", "宫崎骏", "今敏", "押井守", "渡边信一郎", "细田守"};
+        List<Bangumi> bangumis = new ArrayList<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            Bangumi bangumi = new Bangumi();
+            bangumi.setTitle("番剧" + i);
+            bangumi.setDescription("第" + i + "部作品的简介，讲述了少年与少女在小镇上相遇的故事。");
+            bangumi.setWriter(people[i % people.length]);
+            bangumi.setDirector(people[(i / 3) % people.length]);
+            bangumi.setProposer("提议人" + (i % 5));
+            bangumis.add(bangumi);
+        }
+        return bangumis;
+    }
+
+    private static long sizeOf(File file) {
+        File[] children = file.listFiles();
+        if (children == null) {
+            return file.length();
+        }
+        long size = 0;
+        for (File child : children) {
+            size += sizeOf(child);
+        }
+        return size;
+    }
+}
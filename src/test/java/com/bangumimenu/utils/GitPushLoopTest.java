@@ -0,0 +1,113 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.entity.Bangumi;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 推送竞争测试：变基冲突时生成双亲合并提交，双方的提交都保留在历史中
+ */
+public class GitPushLoopTest {
+
+    private static final String FILE_NAME = "bangumi.json";
+
+    private File root;
+    private Git ours;
+    private Git theirs;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("bangumi-push-test").toFile();
+        File remote = new File(root, "remote.git");
+        Git.init().setBare(true).setDirectory(remote).call().close();
+
+        ours = Git.cloneRepository().setURI(remote.toURI().toString()).setDirectory(new File(root, "ours")).call();
+        commit(ours, catalog(0, 0), "初始目录");
+        ours.push().call();
+        theirs = Git.cloneRepository().setURI(remote.toURI().toString()).setDirectory(new File(root, "theirs")).call();
+    }
+
+    @After
+    public void tearDown() {
+        ours.close();
+        theirs.close();
+        delete(root);
+    }
+
+    @Test
+    public void conflictingVotesProduceMergeCommit() throws Exception {
+        // 双方给同一条目投票，按行变基会冲突，按条目合并时票数累加
+        RevCommit theirCommit = commit(theirs, catalog(5, 1), "对方投票");
+        theirs.push().call();
+        RevCommit ourCommit = commit(ours, catalog(3, 0), "本地投票");
+
+        ours.fetch().call();
+        assertTrue(GitPushLoop.integrateRemote(ours));
+
+        try (RevWalk walk = new RevWalk(ours.getRepository())) {
+            RevCommit head = walk.parseCommit(ours.getRepository().resolve(Constants.HEAD));
+            assertEquals(2, head.getParentCount());
+            assertEquals(ourCommit, head.getParent(0));
+            assertEquals(theirCommit, head.getParent(1));
+        }
+        assertNull(ours.getRepository().readMergeHeads());
+        assertTrue(ours.status().call().isClean());
+
+        Map<String, Integer> votes = new HashMap<>();
+        for (Bangumi bangumi : JsonUtils.parsePlainBangumiList(
+                Files.readAllBytes(new File(ours.getRepository().getWorkTree(), FILE_NAME).toPath()))) {
+            votes.put(bangumi.getTitle(), bangumi.getVotes());
+        }
+        assertEquals(Integer.valueOf(8), votes.get("番剧0"));
+        assertEquals(Integer.valueOf(1), votes.get("番剧1"));
+
+        // 合并提交以远程分支为祖先，可以快进推送
+        ours.push().call();
+        theirs.pull().call();
+        assertEquals(ours.getRepository().resolve(Constants.HEAD), theirs.getRepository().resolve(Constants.HEAD));
+    }
+
+    private static List<Bangumi> catalog(int firstVotes, int secondVotes) {
+        List<Bangumi> bangumis = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Bangumi bangumi = new Bangumi();
+            bangumi.setTitle("番剧" + i);
+            bangumis.add(bangumi);
+        }
+        bangumis.get(0).setVotes(firstVotes);
+        bangumis.get(1).setVotes(secondVotes);
+        return bangumis;
+    }
+
+    private static RevCommit commit(Git git, List<Bangumi> bangumis, String message) throws Exception {
+        Files.write(new File(git.getRepository().getWorkTree(), FILE_NAME).toPath(), JsonUtils.toJsonBytes(bangumis));
+        git.add().addFilepattern(FILE_NAME).call();
+        return git.commit().setMessage(message).call();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
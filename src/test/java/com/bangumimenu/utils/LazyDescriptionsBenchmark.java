@@ -0,0 +1,97 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.entity.Bangumi;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.io.InputStreamReader;
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 简介延迟加载基准：10万条带简介的目录完整加载与延迟加载时的加载耗时、加载后存活的堆内存、
+ * 选中条目时读取简介的延迟，以及保存时序列化的耗时
+ * 不在默认的 mvn test 中运行，使用 mvn test -Dtest=LazyDescriptionsBenchmark 运行（需要HotSpot虚拟机）
+ */
+public class LazyDescriptionsBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(LazyDescriptionsBenchmark.class);
+
+    private static final int ENTRIES = 100000;
+    private static final int LOOKUPS = 2000;
+
+    @Test
+    public void eagerVersusLazyLoading() throws Exception {
+        byte[] json = JsonUtils.toJsonBytes(createCatalog());
+        long baseBytes = heapBytes();
+
+        long start = System.nanoTime();
+        List<Bangumi> eager = JsonUtils.parsePlainBangumiList(json);
+        long eagerLoadNanos = System.nanoTime() - start;
+        long eagerBytes = heapBytes() - baseBytes;
+        start = System.nanoTime();
+        int eagerSavedLength = JsonUtils.toJsonBytes(eager).length;
+        long eagerSaveNanos = System.nanoTime() - start;
+        String expected = eager.get(ENTRIES / 2).getDescription();
+        eager = null;
+
+        start = System.nanoTime();
+        List<Bangumi> lazy = LazyDescriptions.read(
+                new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8),
+                "lazy-benchmark.json", JsonUtils.bangumiAdapter());
+        long lazyLoadNanos = System.nanoTime() - start;
+        long lazyBytes = heapBytes() - baseBytes;
+
+        Random random = new Random(1);
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            lazy.get(random.nextInt(ENTRIES)).getDescription();
+        }
+        long lookupNanos = System.nanoTime() - start;
+        assertEquals(expected, lazy.get(ENTRIES / 2).getDescription());
+
+        start = System.nanoTime();
+        int lazySavedLength = JsonUtils.toJsonBytes(lazy).length;
+        long lazySaveNanos = System.nanoTime() - start;
+        assertEquals(eagerSavedLength, lazySavedLength);
+
+        logger.info(String.format("%d 条（JSON %d 字节）: 完整加载 %.0f ms、存活堆 %d 字节、保存 %.0f ms; "
+                        + "延迟加载 %.0f ms、存活堆 %d 字节、保存 %.0f ms; 未缓存的简介读取 %.1f µs/次",
+                ENTRIES, json.length, eagerLoadNanos / 1e6, eagerBytes, eagerSaveNanos / 1e6,
+                lazyLoadNanos / 1e6, lazyBytes, lazySaveNanos / 1e6, lookupNanos / 1e3 / LOOKUPS));
+    }
+
+    private static List<Bangumi> createCatalog() {
+        StringBuilder paragraph = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            paragraph.append("在一个平凡的小镇上，少年偶然遇见了来自异世界的少女。");
+        }
+        List<Bangumi> bangumis = new ArrayList<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            Bangumi bangumi = new Bangumi();
+            bangumi.setTitle("番剧" + i);
+            bangumi.setDescription(i + paragraph.toString());
+            bangumi.setProposer("提议人" + (i % 5));
+            bangumis.add(bangumi);
+        }
+        return bangumis;
+    }
+
+    // 堆直方图的总字节数，直方图会先触发一次完整GC
+    private static long heapBytes() throws Exception {
+        String histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                new Object[]{null}, new String[]{String[].class.getName()});
+        String[] lines = histogram.trim().split("\n");
+        String[] columns = lines[lines.length - 1].trim().split("\\s+");
+        return Long.parseLong(columns[2]);
+    }
+}
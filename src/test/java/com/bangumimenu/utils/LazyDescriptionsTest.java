@@ -0,0 +1,103 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.entity.Bangumi;
+import com.google.gson.TypeAdapter;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 简介延迟加载测试：简介从副本文件按偏移读取，不再被引用的副本在下次加载时删除
+ */
+public class LazyDescriptionsTest {
+
+    private static final String FILE_NAME = "lazy-test.json";
+    private static final TypeAdapter<Bangumi> ADAPTER = JsonUtils.bangumiAdapter();
+
+    @Test
+    public void descriptionsAreReadFromSidecar() throws Exception {
+        String json = "[{\"title\":\"甲\",\"description\":\"第一段简介\\n含\\\"转义\\\"\",\"writer\":\"作者\"},"
+                + "{\"title\":\"乙\"},"
+                + "{\"description\":\"日本語の説明 ✓\",\"title\":\"丙\"}]";
+        List<Bangumi> bangumis = LazyDescriptions.read(new StringReader(json), FILE_NAME, ADAPTER);
+
+        assertEquals(3, bangumis.size());
+        assertEquals("甲", bangumis.get(0).getTitle());
+        assertEquals("作者", bangumis.get(0).getWriter());
+        assertNotNull(bangumis.get(0).getDescriptionLoader());
+        assertEquals("第一段简介\n含\"转义\"", bangumis.get(0).getDescription());
+        assertNull(bangumis.get(1).getDescription());
+        assertEquals("丙", bangumis.get(2).getTitle());
+        assertEquals("日本語の説明 ✓", bangumis.get(2).getDescription());
+        // 同一位置的加载器相等，不同条目不相等
+        assertEquals(bangumis.get(0).getDescriptionLoader(), bangumis.get(0).getDescriptionLoader());
+        assertFalse(bangumis.get(0).getDescriptionLoader().equals(bangumis.get(2).getDescriptionLoader()));
+    }
+
+    @Test
+    public void unreadDescriptionsAreCopiedOnSave() throws Exception {
+        String json = "[{\"title\":\"甲\",\"description\":\"简介\\n含\\\"转义\\\"\",\"votes\":3},"
+                + "{\"description\":\"日本語の説明 ✓\",\"title\":\"乙\"}]";
+        List<Bangumi> bangumis = LazyDescriptions.read(new StringReader(json), FILE_NAME, ADAPTER);
+
+        List<Bangumi> saved = JsonUtils.parsePlainBangumiList(JsonUtils.toJsonBytes(bangumis));
+        assertEquals("简介\n含\"转义\"", saved.get(0).getDescription());
+        assertEquals(3, saved.get(0).getVotes());
+        assertEquals("日本語の説明 ✓", saved.get(1).getDescription());
+        // 保存不会把简介读入条目
+        assertNotNull(bangumis.get(0).getDescriptionLoader());
+        assertNotNull(bangumis.get(1).getDescriptionLoader());
+    }
+
+    @Test
+    public void emptyContentGivesEmptyList() throws Exception {
+        assertTrue(LazyDescriptions.read(new StringReader(""), FILE_NAME, ADAPTER).isEmpty());
+        assertTrue(LazyDescriptions.read(new StringReader("null"), FILE_NAME, ADAPTER).isEmpty());
+        assertTrue(LazyDescriptions.read(new StringReader("[]"), FILE_NAME, ADAPTER).isEmpty());
+    }
+
+    @Test
+    public void releasedSidecarsAreDeleted() throws Exception {
+        List<File> before = listSidecars();
+        String json = "[{\"title\":\"甲\",\"description\":\"简介\"}]";
+        List<Bangumi> bangumis = LazyDescriptions.read(new StringReader(json), FILE_NAME, ADAPTER);
+        List<File> created = listSidecars();
+        created.removeAll(before);
+        assertEquals(1, created.size());
+        File sidecar = created.get(0);
+        assertEquals("简介", bangumis.get(0).getDescription());
+
+        // 仍被条目引用的副本不会被删除
+        LazyDescriptions.read(new StringReader(json), FILE_NAME, ADAPTER);
+        assertTrue(sidecar.exists());
+
+        bangumis = null;
+        for (int i = 0; i < 50 && sidecar.exists(); i++) {
+            System.gc();
+            Thread.sleep(20);
+            LazyDescriptions.read(new StringReader("[]"), FILE_NAME, ADAPTER);
+        }
+        assertFalse(sidecar.exists());
+    }
+
+    private static List<File> listSidecars() {
+        List<File> sidecars = new ArrayList<>();
+        File[] files = new File(System.getProperty("java.io.tmpdir"))
+                .listFiles((dir, name) -> name.startsWith("bangumi-" + FILE_NAME + "-"));
+        if (files != null) {
+            for (File file : files) {
+                sidecars.add(file);
+            }
+        }
+        return sidecars;
+    }
+}
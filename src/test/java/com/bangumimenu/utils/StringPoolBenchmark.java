@@ -0,0 +1,91 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.entity.Bangumi;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 字符串去重的堆内存基准：加载大目录后按堆直方图（GC.class_histogram）比较去重与每次出现都是新实例时
+ * String及其字符数组占用的字节数，并与字符串池估算的节省量对照
+ * 不在默认的 mvn test 中运行，使用 mvn test -Dtest=StringPoolBenchmark 运行（需要HotSpot虚拟机）
+ */
+public class StringPoolBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(StringPoolBenchmark.class);
+
+    private static final int ENTRIES = 100000;
+    private static final String[] PEOPLE = {"无", "新房昭之", "宫崎骏", "今敏", "押井守", "Shinichiro Watanabe", "Mamoru Hosoda"};
+
+    @Test
+    public void retainedHeapWithAndWithoutPool() throws Exception {
+        byte[] json = JsonUtils.toJsonBytes(createCatalog());
+        // 只有序列化内容存活时的基线
+        long baseBytes = stringBytes();
+
+        StringPool.clear();
+        List<Bangumi> pooled = JsonUtils.parsePlainBangumiList(json);
+        long estimated = StringPool.getBytesSaved();
+        assertSame(pooled.get(0).getWriter(), pooled.get(PEOPLE.length).getWriter());
+        long pooledBytes = stringBytes() - baseBytes;
+        assertEquals(ENTRIES, pooled.size());
+        pooled = null;
+
+        List<Bangumi> copies = JsonUtils.parsePlainBangumiList(json);
+        // 模拟不去重时Gson为每次出现分配的新实例（复制字符数组，new String(String)会共享原数组）
+        for (Bangumi bangumi : copies) {
+            bangumi.setWriter(copy(bangumi.getWriter()));
+            bangumi.setOriginal(copy(bangumi.getOriginal()));
+            bangumi.setDirector(copy(bangumi.getDirector()));
+            bangumi.setProposer(copy(bangumi.getProposer()));
+        }
+        long copiedBytes = stringBytes() - baseBytes;
+        assertEquals(ENTRIES, copies.size());
+
+        // 序列化内容在三次测量中都存活，差值只反映条目中的字符串
+        logger.info(String.format("加载 %d 条（JSON %d 字节）: 不去重时字符串占用 %d 字节, 去重后 %d 字节, 实测节省 %d 字节, 字符串池估算节省 %d 字节",
+                ENTRIES, json.length, copiedBytes, pooledBytes, copiedBytes - pooledBytes, estimated));
+    }
+
+    private static List<Bangumi> createCatalog() {
+        List<Bangumi> bangumis = new ArrayList<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            Bangumi bangumi = new Bangumi();
+            bangumi.setTitle("番剧" + i);
+            bangumi.setWriter(PEOPLE[i % PEOPLE.length]);
+            bangumi.setOriginal(PEOPLE[(i / 2) % PEOPLE.length]);
+            bangumi.setDirector(PEOPLE[(i / 3) % PEOPLE.length]);
+            bangumi.setProposer("提议人" + (i % 5));
+            bangumis.add(bangumi);
+        }
+        return bangumis;
+    }
+
+    private static String copy(String value) {
+        return new String(value.toCharArray());
+    }
+
+    // 堆直方图中String实例与字符数组（Java 9起为byte[]，Java 8为char[]）的字节数，直方图会先触发一次完整GC
+    private static long stringBytes() throws Exception {
+        String histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                new Object[]{null}, new String[]{String[].class.getName()});
+        long bytes = 0;
+        for (String line : histogram.split("\n")) {
+            String[] columns = line.trim().split("\\s+");
+            if (columns.length >= 4 && (columns[3].equals("java.lang.String") || columns[3].equals("[B")
+                    || columns[3].equals("[C"))) {
+                bytes += Long.parseLong(columns[2]);
+            }
+        }
+        return bytes;
+    }
+}
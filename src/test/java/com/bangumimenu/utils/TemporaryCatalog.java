@@ -0,0 +1,82 @@
+package com.bangumimenu.utils;
+
+import com.bangumimenu.config.AppConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 测试用的临时目录：在新建的临时数据目录上配置一个只含该目录的目录列表，
+ * 当前目录也指向数据目录，避免把测试文件同步到项目资源目录；关闭时恢复配置并删除数据目录
+ */
+final class TemporaryCatalog implements AutoCloseable {
+
+    private final File dataDir;
+    private final String previousUserDir;
+    private final List<String> properties = new ArrayList<>();
+
+    private TemporaryCatalog(String name, String... settings) throws IOException {
+        dataDir = Files.createTempDirectory("bangumi-" + name + "-").toFile();
+        previousUserDir = System.getProperty("user.dir");
+        System.setProperty("user.dir", dataDir.getAbsolutePath());
+        set("catalogs", name);
+        set("catalog." + name + ".dir", dataDir.getAbsolutePath());
+        for (int i = 0; i + 1 < settings.length; i += 2) {
+            set(settings[i], settings[i + 1]);
+        }
+        AppConfig.reload();
+    }
+
+    /**
+     * 创建临时目录
+     * @param name 目录名
+     * @param settings 额外的配置项，按键、值交替给出
+     */
+    static TemporaryCatalog create(String name, String... settings) throws IOException {
+        return new TemporaryCatalog(name, settings);
+    }
+
+    File getDataDir() {
+        return dataDir;
+    }
+
+    /**
+     * 删除数据目录中的全部文件，保留目录本身
+     */
+    void clear() {
+        File[] files = dataDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                delete(file);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        System.setProperty("user.dir", previousUserDir);
+        for (String key : properties) {
+            System.clearProperty(key);
+        }
+        AppConfig.reload();
+        delete(dataDir);
+    }
+
+    private void set(String key, String value) {
+        System.setProperty(key, value);
+        properties.add(key);
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}